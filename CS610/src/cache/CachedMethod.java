@@ -0,0 +1,79 @@
+package cache;
+
+import util.CompactDirectedGraph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finished analysis results of a single method, as stored within {@link CfgCache}.
+ */
+public class CachedMethod {
+    private final String signature;
+    private final CompactDirectedGraph<String> graph;
+    private final Map<String, Set<String>> definedVariables;
+    private final Map<String, Set<String>> usesDefined;
+    private final Set<String> selfLoopLines;
+    private final Set<String> criticalLines;
+    private final Set<String> escapingVariables;
+    private final Map<String, Map<String, String>> assignedValues;
+
+    public CachedMethod(String signature, CompactDirectedGraph<String> graph,
+                        Map<String, Set<String>> definedVariables, Map<String, Set<String>> usesDefined,
+                        Set<String> selfLoopLines, Set<String> criticalLines, Set<String> escapingVariables,
+                        Map<String, Map<String, String>> assignedValues) {
+        this.signature = signature;
+        this.graph = graph;
+        this.definedVariables = definedVariables;
+        this.usesDefined = usesDefined;
+        this.selfLoopLines = selfLoopLines;
+        this.criticalLines = criticalLines;
+        this.escapingVariables = escapingVariables;
+        this.assignedValues = assignedValues;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public CompactDirectedGraph<String> getGraph() {
+        return graph;
+    }
+
+    public Map<String, Set<String>> getDefinedVariables() {
+        return definedVariables;
+    }
+
+    public Map<String, Set<String>> getUsesDefined() {
+        return usesDefined;
+    }
+
+    /**
+     * @return lines whose self edge is due to a jump, or {@code null} if they are unknown.
+     */
+    public Set<String> getSelfLoopLines() {
+        return selfLoopLines;
+    }
+
+    /**
+     * @return lines with effects beyond assigning named variables, or {@code null} if they are unknown.
+     */
+    public Set<String> getCriticalLines() {
+        return criticalLines;
+    }
+
+    /**
+     * @return defined variables naming fields and array elements, or {@code null} if they are unknown.
+     */
+    public Set<String> getEscapingVariables() {
+        return escapingVariables;
+    }
+
+    /**
+     * @return constants and copies assigned to variables per line, as encoded by the CFG, or {@code null} if they
+     *         are unknown.
+     */
+    public Map<String, Map<String, String>> getAssignedValues() {
+        return assignedValues;
+    }
+}
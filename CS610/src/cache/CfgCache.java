@@ -0,0 +1,450 @@
+package cache;
+
+import util.CompactDirectedGraph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Persistent, content-addressed cache of finished CFGs.
+ * <p>
+ * An entry holds all the methods of one class and is keyed by the SHA-256 hash of the class file together with
+ * the analysis options, so a changed class or a change of options never hits a stale entry. Entries are
+ * memory-mapped on lookup; a method is decoded only when it is read, through an index at the start of the file.
+ * <p>
+ * Entry layout: magic, version, number of methods, (signature, offset) per method, then a record per method:
+ * node names, entry node id, edge labels, (source, target, label) per edge, variable names, the defined and used
+ * variables as (node id, variable ids) rows, then the node ids of the lines with a self edge due to a jump, the
+ * node ids of the critical lines and the ids of the escaping variables, each count being -1 if unknown, and the
+ * values assigned per line as (node id, variable, encoded value), the count being -1 if unknown. Strings are a
+ * UTF-8 length followed by UTF-8 bytes.
+ */
+public class CfgCache {
+    private static final int MAGIC = 0x43464743;
+    private static final int VERSION = 4;
+    private static final String SUFFIX = ".cfgc";
+
+    private final Path directory;
+    private final byte[] options;
+
+    /**
+     * Constructor.
+     *
+     * @param directory directory with cache entries, created if it does not exist.
+     * @param options   analysis options which affect the stored results.
+     */
+    public CfgCache(Path directory, String options) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.options = options.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param classFile bytes of the class file.
+     * @return key of the cache entry of the class.
+     */
+    public String key(byte[] classFile) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(options);
+        digest.update((byte) 0);
+        digest.update(classFile);
+
+        return ClassFileMethods.toHex(digest.digest());
+    }
+
+    /**
+     * Opens a cache entry.
+     *
+     * @param key key of the entry.
+     * @return {@link Entry}, or {@code null} if there is no valid entry for the key.
+     */
+    public Entry open(String key) throws IOException {
+        return read(directory.resolve(key + SUFFIX));
+    }
+
+    /**
+     * Stores all the methods of a class.
+     *
+     * @param key     key of the entry.
+     * @param methods all the methods of the class.
+     */
+    public void store(String key, Collection<CachedMethod> methods) throws IOException {
+        write(directory.resolve(key + SUFFIX), methods);
+    }
+
+    /**
+     * Memory-maps a file in the entry format.
+     *
+     * @param file file written by {@link #write(Path, Collection)}.
+     * @return {@link Entry}, or {@code null} if the file does not exist or is not valid.
+     */
+    public static Entry read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        try {
+            return new Entry(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Truncated or corrupted entry is treated as missing.
+            return null;
+        }
+    }
+
+    /**
+     * Writes methods into a file in the entry format. The file is written into a temporary file and moved into
+     * place, so concurrent readers never observe a partial file.
+     *
+     * @param file    output file.
+     * @param methods methods to be written.
+     */
+    public static void write(Path file, Collection<CachedMethod> methods) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordOutput = new DataOutputStream(records);
+        List<String> signatures = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        for (CachedMethod method : methods) {
+            signatures.add(method.getSignature());
+            offsets.add(recordOutput.size());
+            writeRecord(recordOutput, method);
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOutput = new DataOutputStream(header);
+        headerOutput.writeInt(MAGIC);
+        headerOutput.writeInt(VERSION);
+        headerOutput.writeInt(signatures.size());
+        int headerSize = 12;
+        for (String signature : signatures) {
+            headerSize += 4 + signature.getBytes(StandardCharsets.UTF_8).length + 4;
+        }
+        for (int i = 0; i < signatures.size(); i++) {
+            writeString(headerOutput, signatures.get(i));
+            headerOutput.writeInt(headerSize + offsets.get(i));
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                header.writeTo(out);
+                records.writeTo(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, CachedMethod method) throws IOException {
+        CompactDirectedGraph<String> graph = method.getGraph();
+        out.writeInt(graph.size());
+        for (int node = 0; node < graph.size(); node++) {
+            writeString(out, graph.getNode(node));
+        }
+        out.writeInt(graph.getEntry());
+
+        String[] labels = graph.getLabels();
+        out.writeInt(labels.length);
+        for (String label : labels) {
+            writeString(out, label);
+        }
+
+        out.writeInt(graph.getEdgeCount());
+        for (int from = 0; from < graph.size(); from++) {
+            for (int j = 0; j < graph.getSuccessorCount(from); j++) {
+                out.writeInt(from);
+                out.writeInt(graph.getSuccessor(from, j));
+                out.writeInt(graph.getSuccessorLabelId(from, j));
+            }
+        }
+
+        Map<String, Integer> variableIds = new LinkedHashMap<>();
+        for (Map<String, Set<String>> rows : Arrays.asList(method.getDefinedVariables(), method.getUsesDefined())) {
+            for (Set<String> variables : rows.values()) {
+                for (String variable : variables) {
+                    variableIds.putIfAbsent(variable, variableIds.size());
+                }
+            }
+        }
+        if (method.getEscapingVariables() != null) {
+            for (String variable : method.getEscapingVariables()) {
+                variableIds.putIfAbsent(variable, variableIds.size());
+            }
+        }
+        out.writeInt(variableIds.size());
+        for (String variable : variableIds.keySet()) {
+            writeString(out, variable);
+        }
+        writeRows(out, graph, method.getDefinedVariables(), variableIds);
+        writeRows(out, graph, method.getUsesDefined(), variableIds);
+        writeNodes(out, graph, method.getSelfLoopLines());
+        writeNodes(out, graph, method.getCriticalLines());
+        writeVariables(out, method.getEscapingVariables(), variableIds);
+        writeValues(out, graph, method.getAssignedValues());
+    }
+
+    private static void writeValues(DataOutputStream out, CompactDirectedGraph<String> graph,
+                                    Map<String, Map<String, String>> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        int count = 0;
+        for (Map.Entry<String, Map<String, String>> line : values.entrySet()) {
+            if (graph.getId(line.getKey()) >= 0) {
+                count += line.getValue().size();
+            }
+        }
+        out.writeInt(count);
+        for (Map.Entry<String, Map<String, String>> line : values.entrySet()) {
+            int node = graph.getId(line.getKey());
+            if (node < 0) {
+                continue;
+            }
+            for (Map.Entry<String, String> value : line.getValue().entrySet()) {
+                out.writeInt(node);
+                writeString(out, value.getKey());
+                writeString(out, value.getValue());
+            }
+        }
+    }
+
+    private static void writeVariables(DataOutputStream out, Set<String> variables, Map<String, Integer> variableIds)
+            throws IOException {
+        if (variables == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(variables.size());
+        for (String variable : variables) {
+            out.writeInt(variableIds.get(variable));
+        }
+    }
+
+    private static void writeNodes(DataOutputStream out, CompactDirectedGraph<String> graph, Set<String> nodes)
+            throws IOException {
+        if (nodes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        int count = 0;
+        for (String node : nodes) {
+            if (graph.getId(node) >= 0) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (String node : nodes) {
+            int id = graph.getId(node);
+            if (id >= 0) {
+                out.writeInt(id);
+            }
+        }
+    }
+
+    private static void writeRows(DataOutputStream out, CompactDirectedGraph<String> graph,
+                                  Map<String, Set<String>> rows, Map<String, Integer> variableIds) throws IOException {
+        int count = 0;
+        for (String node : rows.keySet()) {
+            if (graph.getId(node) >= 0) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (Map.Entry<String, Set<String>> row : rows.entrySet()) {
+            int node = graph.getId(row.getKey());
+            if (node < 0) {
+                continue;
+            }
+            out.writeInt(node);
+            out.writeInt(row.getValue().size());
+            for (String variable : row.getValue()) {
+                out.writeInt(variableIds.get(variable));
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String text;
+        if (buffer.hasArray()) {
+            text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+
+    /**
+     * Memory-mapped cache entry of a class.
+     */
+    public static class Entry {
+        private final ByteBuffer buffer;
+        private final Map<String, Integer> offsets = new LinkedHashMap<>();
+
+        private Entry(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String signature = readString(buffer);
+                offsets.put(signature, buffer.getInt());
+            }
+        }
+
+        /**
+         * @return signatures of the cached methods, in the order in which they were stored.
+         */
+        public Set<String> getMethodSignatures() {
+            return Collections.unmodifiableSet(offsets.keySet());
+        }
+
+        /**
+         * Decodes a cached method.
+         *
+         * @param signature signature of the method.
+         * @return {@link CachedMethod}, or {@code null} if the method is not within the entry or its record is
+         *         truncated or corrupted.
+         */
+        public CachedMethod read(String signature) {
+            Integer offset = offsets.get(signature);
+            if (offset == null) {
+                return null;
+            }
+            try {
+                return readRecord(signature, offset);
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                    | NegativeArraySizeException e) {
+                // Treated as missing, like a truncated or corrupted entry.
+                return null;
+            }
+        }
+
+        private CachedMethod readRecord(String signature, int offset) {
+            ByteBuffer record = buffer.duplicate();
+            record.position(offset);
+
+            CompactDirectedGraph.Builder<String> builder = new CompactDirectedGraph.Builder<>();
+            String[] nodes = new String[record.getInt()];
+            for (int node = 0; node < nodes.length; node++) {
+                nodes[node] = readString(record);
+                builder.addNode(nodes[node]);
+            }
+            int entry = record.getInt();
+
+            String[] labels = new String[record.getInt()];
+            for (int label = 0; label < labels.length; label++) {
+                labels[label] = readString(record);
+            }
+
+            int edgeCount = record.getInt();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                int from = record.getInt();
+                int to = record.getInt();
+                int label = record.getInt();
+                builder.addEdge(nodes[from], nodes[to], label < 0 ? null : labels[label]);
+            }
+            builder.setEntryNode(entry < 0 ? null : nodes[entry]);
+
+            String[] variables = new String[record.getInt()];
+            for (int variable = 0; variable < variables.length; variable++) {
+                variables[variable] = readString(record);
+            }
+            Map<String, Set<String>> definedVariables = readRows(record, nodes, variables);
+            Map<String, Set<String>> usesDefined = readRows(record, nodes, variables);
+            Set<String> selfLoopLines = readNames(record, nodes);
+            Set<String> criticalLines = readNames(record, nodes);
+            Set<String> escapingVariables = readNames(record, variables);
+            Map<String, Map<String, String>> assignedValues = readValues(record, nodes);
+
+            return new CachedMethod(signature, builder.build(), definedVariables, usesDefined, selfLoopLines,
+                    criticalLines, escapingVariables, assignedValues);
+        }
+
+        /**
+         * @return values per node name and variable, or {@code null} if they are unknown.
+         */
+        private static Map<String, Map<String, String>> readValues(ByteBuffer record, String[] nodes) {
+            int count = record.getInt();
+            if (count < 0) {
+                return null;
+            }
+            Map<String, Map<String, String>> result = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String node = nodes[record.getInt()];
+                String variable = readString(record);
+                result.computeIfAbsent(node, key -> new HashMap<>()).put(variable, readString(record));
+            }
+            return result;
+        }
+
+        /**
+         * @param names names of the nodes or variables of the record.
+         * @return named set, or {@code null} if it is unknown.
+         */
+        private static Set<String> readNames(ByteBuffer record, String[] names) {
+            int count = record.getInt();
+            if (count < 0) {
+                return null;
+            }
+            Set<String> result = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                result.add(names[record.getInt()]);
+            }
+            return result;
+        }
+
+        private static Map<String, Set<String>> readRows(ByteBuffer record, String[] nodes, String[] variables) {
+            int count = record.getInt();
+            Map<String, Set<String>> rows = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String node = nodes[record.getInt()];
+                int size = record.getInt();
+                Set<String> row = new HashSet<>();
+                for (int j = 0; j < size; j++) {
+                    row.add(variables[record.getInt()]);
+                }
+                rows.put(node, row);
+            }
+            return rows;
+        }
+    }
+}
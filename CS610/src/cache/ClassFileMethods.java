@@ -0,0 +1,395 @@
+package cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-method bytecode hashes of a class file, computed without Soot.
+ * <p>
+ * A hash covers everything a line-level CFG depends on: the instructions, the exception table, line numbers
+ * and local variable names. Constant pool indices are replaced by the constants they refer to, so that
+ * unrelated changes of the constant pool do not change the hashes of untouched methods.
+ */
+public class ClassFileMethods {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final String className;
+    private final Map<String, String> methodHashes = new LinkedHashMap<>();
+
+    // Constant pool, tags and raw values (strings for Utf8, references as packed indices).
+    private int[] tags;
+    private Object[] constants;
+
+    private ClassFileMethods(byte[] classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        readConstantPool(in);
+
+        in.readUnsignedShort();
+        className = constantToString(in.readUnsignedShort()).replace('/', '.');
+        in.readUnsignedShort();
+        in.skipBytes(2 * in.readUnsignedShort());
+
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            in.skipBytes(6);
+            skipAttributes(in);
+        }
+
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            in.readUnsignedShort();
+            String name = (String) constants[in.readUnsignedShort()];
+            String descriptor = (String) constants[in.readUnsignedShort()];
+
+            MessageDigest digest = newDigest();
+            update(digest, name);
+            update(digest, descriptor);
+
+            boolean hasCode = false;
+            int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = (String) constants[in.readUnsignedShort()];
+                byte[] attribute = new byte[in.readInt()];
+                in.readFully(attribute);
+                if ("Code".equals(attributeName)) {
+                    hasCode = true;
+                    hashCode(digest, attribute);
+                }
+            }
+            if (hasCode) {
+                methodHashes.put(sootSignature(className, name, descriptor), toHex(digest.digest()));
+            }
+        }
+    }
+
+    /**
+     * Parses a class file.
+     *
+     * @param classFile bytes of the class file.
+     * @return {@code ClassFileMethods} of the class.
+     * @throws IOException if the bytes are not a valid class file.
+     */
+    public static ClassFileMethods parse(byte[] classFile) throws IOException {
+        try {
+            return new ClassFileMethods(classFile);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed class file", e);
+        }
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return hashes of the methods with a body, keyed by Soot method signature, in class file order.
+     */
+    public Map<String, String> getMethodHashes() {
+        return Collections.unmodifiableMap(methodHashes);
+    }
+
+    private void readConstantPool(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        tags = new int[count];
+        constants = new Object[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag) {
+                case 1: // Utf8
+                    constants[i] = in.readUTF();
+                    break;
+                case 3: // Integer
+                    constants[i] = in.readInt();
+                    break;
+                case 4: // Float
+                    constants[i] = in.readFloat();
+                    break;
+                case 5: // Long
+                    constants[i] = in.readLong();
+                    i++;
+                    break;
+                case 6: // Double
+                    constants[i] = in.readDouble();
+                    i++;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    constants[i] = in.readUnsignedShort();
+                    break;
+                case 15: // MethodHandle
+                    constants[i] = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+                    break;
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    constants[i] = (in.readUnsignedShort() << 16) | in.readUnsignedShort();
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private String constantToString(int index) {
+        Object value = constants[index];
+        switch (tags[index]) {
+            case 1:
+                return (String) value;
+            case 7:
+            case 16:
+            case 19:
+            case 20:
+                return constantToString((Integer) value);
+            case 8:
+                return "\"" + constantToString((Integer) value) + "\"";
+            case 15:
+                return "handle " + ((Integer) value >>> 16) + " " + constantToString((Integer) value & 0xFFFF);
+            case 9:
+            case 10:
+            case 11:
+                return constantToString((Integer) value >>> 16) + "." + constantToString((Integer) value & 0xFFFF);
+            case 12:
+                return constantToString((Integer) value >>> 16) + ":" + constantToString((Integer) value & 0xFFFF);
+            case 17:
+            case 18:
+                // Bootstrap method index refers to the BootstrapMethods attribute, hashed as a number.
+                return "bootstrap " + ((Integer) value >>> 16) + " " + constantToString((Integer) value & 0xFFFF);
+            default:
+                return tags[index] + ":" + value;
+        }
+    }
+
+    private void hashCode(MessageDigest digest, byte[] attribute) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(attribute));
+        digest.update(attribute, 0, 4); // max_stack, max_locals
+
+        in.skipBytes(4);
+        byte[] code = new byte[in.readInt()];
+        in.readFully(code);
+        hashInstructions(digest, code);
+
+        int exceptionCount = in.readUnsignedShort();
+        for (int i = 0; i < exceptionCount; i++) {
+            update(digest, in.readUnsignedShort() + ":" + in.readUnsignedShort() + ":" + in.readUnsignedShort());
+            int catchType = in.readUnsignedShort();
+            update(digest, catchType == 0 ? "any" : constantToString(catchType));
+        }
+
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = (String) constants[in.readUnsignedShort()];
+            byte[] nested = new byte[in.readInt()];
+            in.readFully(nested);
+            if ("LineNumberTable".equals(attributeName)) {
+                update(digest, attributeName);
+                digest.update(nested);
+            } else if ("LocalVariableTable".equals(attributeName)) {
+                update(digest, attributeName);
+                DataInputStream table = new DataInputStream(new ByteArrayInputStream(nested));
+                int length = table.readUnsignedShort();
+                for (int j = 0; j < length; j++) {
+                    update(digest, table.readUnsignedShort() + ":" + table.readUnsignedShort() + ":"
+                            + constantToString(table.readUnsignedShort()) + ":"
+                            + constantToString(table.readUnsignedShort()) + ":" + table.readUnsignedShort());
+                }
+            }
+        }
+    }
+
+    private void hashInstructions(MessageDigest digest, byte[] code) {
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc] & 0xFF;
+            int length;
+            int constantIndex = -1;
+            switch (opcode) {
+                case 0x12: // ldc
+                    constantIndex = code[pc + 1] & 0xFF;
+                    length = 2;
+                    break;
+                case 0x13: // ldc_w
+                case 0x14: // ldc2_w
+                case 0xb2: // getstatic
+                case 0xb3: // putstatic
+                case 0xb4: // getfield
+                case 0xb5: // putfield
+                case 0xb6: // invokevirtual
+                case 0xb7: // invokespecial
+                case 0xb8: // invokestatic
+                case 0xbb: // new
+                case 0xbd: // anewarray
+                case 0xc0: // checkcast
+                case 0xc1: // instanceof
+                    constantIndex = u2(code, pc + 1);
+                    length = 3;
+                    break;
+                case 0xc5: // multianewarray
+                    constantIndex = u2(code, pc + 1);
+                    length = 4;
+                    break;
+                case 0xb9: // invokeinterface
+                case 0xba: // invokedynamic
+                    constantIndex = u2(code, pc + 1);
+                    length = 5;
+                    break;
+                case 0xaa: { // tableswitch
+                    int base = (pc + 4) & ~3;
+                    int low = s4(code, base + 4);
+                    int high = s4(code, base + 8);
+                    length = base + 12 + 4 * (high - low + 1) - pc;
+                    break;
+                }
+                case 0xab: { // lookupswitch
+                    int base = (pc + 4) & ~3;
+                    length = base + 8 + 8 * s4(code, base + 4) - pc;
+                    break;
+                }
+                case 0xc4: // wide
+                    length = (code[pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+                    break;
+                default:
+                    length = 1 + operandLength(opcode);
+            }
+
+            if (constantIndex < 0) {
+                digest.update(code, pc, length);
+            } else {
+                digest.update((byte) opcode);
+                update(digest, constantToString(constantIndex));
+                // Remaining operands, e.g. dimensions of multianewarray, carry no constant pool index.
+                int operands = opcode == 0x12 ? 2 : 3;
+                digest.update(code, pc + operands, length - operands);
+            }
+            pc += length;
+        }
+    }
+
+    private static int operandLength(int opcode) {
+        if (opcode == 0x10 || opcode == 0xbc || opcode == 0xa9
+                || (opcode >= 0x15 && opcode <= 0x19) || (opcode >= 0x36 && opcode <= 0x3a)) {
+            return 1; // bipush, newarray, ret, loads and stores with an index
+        }
+        if (opcode == 0x11 || opcode == 0x84 || (opcode >= 0x99 && opcode <= 0xa8)
+                || opcode == 0xc6 || opcode == 0xc7) {
+            return 2; // sipush, iinc, branches
+        }
+        if (opcode == 0xc8 || opcode == 0xc9) {
+            return 4; // goto_w, jsr_w
+        }
+        return 0;
+    }
+
+    private static int u2(byte[] code, int offset) {
+        return ((code[offset] & 0xFF) << 8) | (code[offset + 1] & 0xFF);
+    }
+
+    private static int s4(byte[] code, int offset) {
+        return (code[offset] << 24) | ((code[offset + 1] & 0xFF) << 16)
+                | ((code[offset + 2] & 0xFF) << 8) | (code[offset + 3] & 0xFF);
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.readUnsignedShort();
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Converts a method descriptor into a method signature in Soot format,
+     * e.g. {@code <a.B: void main(java.lang.String[])>}.
+     */
+    static String sootSignature(String className, String name, String descriptor) {
+        StringBuilder parameters = new StringBuilder();
+        int position = 1;
+        while (descriptor.charAt(position) != ')') {
+            int end = typeEnd(descriptor, position);
+            if (parameters.length() > 0) {
+                parameters.append(',');
+            }
+            parameters.append(typeName(descriptor, position, end));
+            position = end;
+        }
+        String returnType = typeName(descriptor, position + 1, descriptor.length());
+        return "<" + className + ": " + returnType + " " + name + "(" + parameters + ")>";
+    }
+
+    private static int typeEnd(String descriptor, int start) {
+        int position = start;
+        while (descriptor.charAt(position) == '[') {
+            position++;
+        }
+        if (descriptor.charAt(position) == 'L') {
+            position = descriptor.indexOf(';', position);
+        }
+        return position + 1;
+    }
+
+    private static String typeName(String descriptor, int start, int end) {
+        int dimensions = 0;
+        while (descriptor.charAt(start + dimensions) == '[') {
+            dimensions++;
+        }
+        String base;
+        char c = descriptor.charAt(start + dimensions);
+        switch (c) {
+            case 'B': base = "byte"; break;
+            case 'C': base = "char"; break;
+            case 'D': base = "double"; break;
+            case 'F': base = "float"; break;
+            case 'I': base = "int"; break;
+            case 'J': base = "long"; break;
+            case 'S': base = "short"; break;
+            case 'Z': base = "boolean"; break;
+            case 'V': base = "void"; break;
+            default: base = descriptor.substring(start + dimensions + 1, end - 1).replace('/', '.');
+        }
+        StringBuilder name = new StringBuilder(base);
+        for (int i = 0; i < dimensions; i++) {
+            name.append("[]");
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads class files of a directory or a jar, without loading them into Soot.
+ */
+public class ClassFileScanner {
+    private static final String CLASS_SUFFIX = ".class";
+
+    private ClassFileScanner() {}
+
+    /**
+     * Reads all the class files, except {@code module-info} and {@code package-info}.
+     *
+     * @param location directory or jar with class binaries.
+     * @param consumer receives fully qualified class name and class file bytes.
+     */
+    public static void scan(Path location, BiConsumer<String, byte[]> consumer) throws IOException {
+        if (Files.isDirectory(location)) {
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(location)) {
+                classFiles = files.filter(file -> file.toString().endsWith(CLASS_SUFFIX)).collect(Collectors.toList());
+            }
+            for (Path classFile : classFiles) {
+                String className = className(location.relativize(classFile).toString().replace('\\', '/'));
+                if (className != null) {
+                    consumer.accept(className, Files.readAllBytes(classFile));
+                }
+            }
+            return;
+        }
+
+        try (ZipFile jar = new ZipFile(location.toFile())) {
+            List<ZipEntry> entries = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(CLASS_SUFFIX)) {
+                    entries.add(entry);
+                }
+            }
+            for (ZipEntry entry : entries) {
+                String className = className(entry.getName());
+                if (className == null) {
+                    continue;
+                }
+                try (InputStream in = jar.getInputStream(entry)) {
+                    consumer.accept(className, readAll(in));
+                }
+            }
+        }
+    }
+
+    private static String className(String path) {
+        String name = path.substring(0, path.length() - CLASS_SUFFIX.length());
+        if (name.endsWith("module-info") || name.endsWith("package-info") || name.startsWith("META-INF/")) {
+            return null;
+        }
+        return name.replace('/', '.');
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
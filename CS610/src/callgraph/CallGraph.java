@@ -0,0 +1,156 @@
+package callgraph;
+
+import cfg.CFG;
+import soot.SootMethod;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Call graph over the methods reachable from a set of entry points, with lazily constructed CFGs.
+ * <p>
+ * Methods are numbered densely. Every edge is a call from a line of the caller to one of the possible callees;
+ * a call site with several possible callees has an edge per callee. Outgoing edges are ordered by caller, and both
+ * outgoing and incoming edges are kept in compressed sparse row form.
+ */
+public class CallGraph {
+    private final SootMethod[] methods;
+    private final Map<SootMethod, Integer> ids = new HashMap<>();
+    private final int[] entryPoints;
+
+    private final int[] edgeCallers;
+    private final int[] edgeLines;
+    private final int[] edgeCallees;
+
+    private final int[] outgoingOffsets;
+    private final int[] incomingOffsets;
+    private final int[] incomingEdges;
+
+    private final MethodCFGs cfgs;
+
+    /**
+     * Constructor.
+     *
+     * @param methods     methods, indexed by their ids.
+     * @param entryPoints ids of the entry points.
+     * @param edgeCallers id of the caller per edge, in non-decreasing order.
+     * @param edgeLines   line of the call per edge, {@code -1} if the call has no line number.
+     * @param edgeCallees id of the callee per edge.
+     * @param cfgs        CFGs of the methods, possibly already partially constructed.
+     */
+    CallGraph(SootMethod[] methods, int[] entryPoints, int[] edgeCallers, int[] edgeLines, int[] edgeCallees,
+              MethodCFGs cfgs) {
+        this.methods = methods;
+        this.entryPoints = entryPoints;
+        this.edgeCallers = edgeCallers;
+        this.edgeLines = edgeLines;
+        this.edgeCallees = edgeCallees;
+        this.cfgs = cfgs;
+        for (int id = 0; id < methods.length; id++) {
+            ids.put(methods[id], id);
+        }
+
+        int n = methods.length;
+        outgoingOffsets = new int[n + 1];
+        incomingOffsets = new int[n + 1];
+        for (int edge = 0; edge < edgeCallers.length; edge++) {
+            outgoingOffsets[edgeCallers[edge] + 1]++;
+            incomingOffsets[edgeCallees[edge] + 1]++;
+        }
+        for (int method = 0; method < n; method++) {
+            outgoingOffsets[method + 1] += outgoingOffsets[method];
+            incomingOffsets[method + 1] += incomingOffsets[method];
+        }
+        incomingEdges = new int[edgeCallers.length];
+        int[] fill = Arrays.copyOf(incomingOffsets, n);
+        for (int edge = 0; edge < edgeCallers.length; edge++) {
+            incomingEdges[fill[edgeCallees[edge]]++] = edge;
+        }
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    public SootMethod getMethod(int method) {
+        return methods[method];
+    }
+
+    /**
+     * @param method method of a class loaded within the {@code Scene}.
+     * @return id of the method, or {@code -1} if it is not reachable.
+     */
+    public int getId(SootMethod method) {
+        Integer id = ids.get(method);
+        return id == null ? -1 : id;
+    }
+
+    public int getEntryPointCount() {
+        return entryPoints.length;
+    }
+
+    public int getEntryPoint(int index) {
+        return entryPoints[index];
+    }
+
+    public int getEdgeCount() {
+        return edgeCallers.length;
+    }
+
+    public int getEdgeCaller(int edge) {
+        return edgeCallers[edge];
+    }
+
+    /**
+     * @param edge id of the edge.
+     * @return line of the call within the caller, or {@code -1} if the call has no line number.
+     */
+    public int getEdgeLine(int edge) {
+        return edgeLines[edge];
+    }
+
+    public int getEdgeCallee(int edge) {
+        return edgeCallees[edge];
+    }
+
+    public int getOutgoingEdgeCount(int method) {
+        return outgoingOffsets[method + 1] - outgoingOffsets[method];
+    }
+
+    /**
+     * @param method id of the caller.
+     * @param index  index among the outgoing edges.
+     * @return id of the edge.
+     */
+    public int getOutgoingEdge(int method, int index) {
+        return outgoingOffsets[method] + index;
+    }
+
+    public int getIncomingEdgeCount(int method) {
+        return incomingOffsets[method + 1] - incomingOffsets[method];
+    }
+
+    /**
+     * @param method id of the callee.
+     * @param index  index among the incoming edges.
+     * @return id of the edge.
+     */
+    public int getIncomingEdge(int method, int index) {
+        return incomingEdges[incomingOffsets[method] + index];
+    }
+
+    /**
+     * Returns CFG of a method, constructing it on the first request. Safe to be called from multiple threads.
+     *
+     * @param method id of the method.
+     * @return CFG in compact mode, or {@code null} if the method has no body or the construction failed.
+     */
+    public CFG getCFG(int method) {
+        return cfgs.get(methods[method]);
+    }
+
+    public MethodCFGs getCFGs() {
+        return cfgs;
+    }
+}
@@ -0,0 +1,298 @@
+package callgraph;
+
+import cfg.CFG;
+import export.DotGraphWriter;
+import soot.*;
+import soot.jimple.*;
+import util.CompactDirectedGraph;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds a {@link CallGraph} by class hierarchy analysis (CHA), exploring the methods reachable from the entry
+ * points in parallel.
+ * <p>
+ * Every reached method is handed to a pool of workers, which retrieves its body, resolves the targets of its
+ * call sites and hands over the callees not reached before. Static and special calls have a single target;
+ * virtual and interface calls target every concrete implementation within the subtypes of the declared type.
+ * Dynamic invokes are not followed. Resolved targets are cached per called method, so the hierarchy is queried
+ * once per distinct callee rather than once per call site.
+ * <p>
+ * CFGs are not constructed while exploring unless requested by {@link #setConstructCFGs(boolean)}; otherwise
+ * they are constructed on demand through {@link CallGraph#getCFG(int)}.
+ */
+public class CallGraphBuilder {
+    private static final SootMethod[] NO_TARGETS = new SootMethod[0];
+
+    private final int threads;
+    private boolean constructCFGs = false;
+
+    private final ConcurrentHashMap<String, SootMethod[]> targets = new ConcurrentHashMap<>();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param threads number of workers exploring methods.
+     */
+    public CallGraphBuilder(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads has to be positive, was " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param constructCFGs if {@code true}, workers construct the CFG of every method they explore.
+     */
+    public void setConstructCFGs(boolean constructCFGs) {
+        this.constructCFGs = constructCFGs;
+    }
+
+    /**
+     * @return number of methods which could not be explored during the last build.
+     */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Entry points of the application classes loaded within the {@code Scene}: their {@code main} methods, or,
+     * for a library without any, all of their concrete methods.
+     *
+     * @return {@code List} of entry points.
+     */
+    public static List<SootMethod> applicationEntryPoints() {
+        List<SootMethod> mainMethods = new ArrayList<>();
+        List<SootMethod> allMethods = new ArrayList<>();
+        for (SootClass sootClass : new ArrayList<>(Scene.v().getApplicationClasses())) {
+            if (sootClass.isPhantom()) {
+                continue;
+            }
+            for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+                if (!method.isConcrete()) {
+                    continue;
+                }
+                allMethods.add(method);
+                if (method.isStatic() && "void main(java.lang.String[])".equals(method.getSubSignature())) {
+                    mainMethods.add(method);
+                }
+            }
+        }
+        return mainMethods.isEmpty() ? allMethods : mainMethods;
+    }
+
+    /**
+     * Explores all the methods reachable from the entry points.
+     *
+     * @param entryPoints methods of classes loaded within the {@code Scene}.
+     * @return {@link CallGraph} of the reachable methods.
+     */
+    public CallGraph build(Collection<SootMethod> entryPoints) throws InterruptedException {
+        failed.set(0);
+        synchronized (CFG.SCENE_LOCK) {
+            Scene.v().getOrMakeFastHierarchy();
+        }
+
+        Exploration exploration = new Exploration();
+        try {
+            for (SootMethod entryPoint : entryPoints) {
+                exploration.reach(entryPoint);
+            }
+            exploration.await();
+        } finally {
+            exploration.workers.shutdownNow();
+        }
+
+        int n = exploration.nextId.get();
+        SootMethod[] methods = new SootMethod[n];
+        for (Map.Entry<SootMethod, Integer> entry : exploration.ids.entrySet()) {
+            methods[entry.getValue()] = entry.getKey();
+        }
+        int[] entryIds = new int[entryPoints.size()];
+        int i = 0;
+        for (SootMethod entryPoint : entryPoints) {
+            entryIds[i++] = exploration.ids.get(entryPoint);
+        }
+
+        int edgeCount = 0;
+        for (int[] calls : exploration.calls.values()) {
+            edgeCount += calls.length / 2;
+        }
+        int[] edgeCallers = new int[edgeCount];
+        int[] edgeLines = new int[edgeCount];
+        int[] edgeCallees = new int[edgeCount];
+        int edge = 0;
+        for (int caller = 0; caller < n; caller++) {
+            int[] calls = exploration.calls.get(caller);
+            for (int j = 0; calls != null && j < calls.length; j += 2) {
+                edgeCallers[edge] = caller;
+                edgeLines[edge] = calls[j];
+                edgeCallees[edge] = calls[j + 1];
+                edge++;
+            }
+        }
+        return new CallGraph(methods, entryIds, edgeCallers, edgeLines, edgeCallees, exploration.cfgs);
+    }
+
+    /**
+     * State of a single build.
+     */
+    private class Exploration {
+        private final ExecutorService workers = Executors.newFixedThreadPool(threads);
+        private final ConcurrentHashMap<SootMethod, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        // Pairs of (line, callee id) per caller id.
+        private final ConcurrentHashMap<Integer, int[]> calls = new ConcurrentHashMap<>();
+        private final MethodCFGs cfgs = new MethodCFGs();
+
+        // Methods reached but not explored yet, plus one while entry points are being reached.
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * @return id of the method; the method is explored if it was not reached before.
+         */
+        int reach(SootMethod method) {
+            int[] created = {-1};
+            int id = ids.computeIfAbsent(method, key -> created[0] = nextId.getAndIncrement());
+            if (created[0] >= 0) {
+                pending.incrementAndGet();
+                workers.execute(() -> {
+                    try {
+                        explore(method, id);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        release();
+                    }
+                });
+            }
+            return id;
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Waits until all the methods reached from the entry points are explored.
+         */
+        void await() throws InterruptedException {
+            release();
+            done.await();
+        }
+
+        private void explore(SootMethod method, int id) {
+            // Library methods are leaves of the call graph.
+            if (!MethodCFGs.hasBody(method)) {
+                return;
+            }
+            Body body;
+            synchronized (CFG.SCENE_LOCK) {
+                body = method.retrieveActiveBody();
+            }
+
+            List<int[]> callSites = new ArrayList<>();
+            for (Unit unit : body.getUnits()) {
+                Stmt stmt = (Stmt) unit;
+                if (!stmt.containsInvokeExpr()) {
+                    continue;
+                }
+                int line = unit.getJavaSourceStartLineNumber();
+                for (SootMethod target : resolve(stmt.getInvokeExpr())) {
+                    callSites.add(new int[]{line, reach(target)});
+                }
+            }
+            int[] pairs = new int[callSites.size() * 2];
+            for (int i = 0; i < callSites.size(); i++) {
+                pairs[2 * i] = callSites.get(i)[0];
+                pairs[2 * i + 1] = callSites.get(i)[1];
+            }
+            calls.put(id, pairs);
+
+            if (constructCFGs) {
+                cfgs.get(method);
+            }
+        }
+    }
+
+    private SootMethod[] resolve(InvokeExpr invoke) {
+        if (invoke instanceof DynamicInvokeExpr) {
+            return NO_TARGETS;
+        }
+        SootMethodRef ref = invoke.getMethodRef();
+        boolean dispatched = invoke instanceof VirtualInvokeExpr || invoke instanceof InterfaceInvokeExpr;
+        String key = (dispatched ? "v" : "s") + ref.getDeclaringClass().getName() + '.' + ref.getSubSignature();
+        SootMethod[] resolved = targets.get(key);
+        if (resolved != null) {
+            return resolved;
+        }
+
+        // Resolution may create phantom methods and fills hierarchy caches.
+        synchronized (CFG.SCENE_LOCK) {
+            resolved = targets.get(key);
+            if (resolved == null) {
+                resolved = dispatched ? dispatch(ref) : single(ref.tryResolve());
+                targets.put(key, resolved);
+            }
+        }
+        return resolved;
+    }
+
+    private static SootMethod[] dispatch(SootMethodRef ref) {
+        try {
+            Set<SootMethod> implementations = Scene.v().getOrMakeFastHierarchy()
+                    .resolveAbstractDispatch(ref.getDeclaringClass(), ref);
+            return implementations.toArray(NO_TARGETS);
+        } catch (RuntimeException e) {
+            // Hierarchy of phantom classes is unknown; fall back to the declared method.
+            return single(ref.tryResolve());
+        }
+    }
+
+    private static SootMethod[] single(SootMethod method) {
+        return method == null ? NO_TARGETS : new SootMethod[]{method};
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: CallGraphBuilder <class directory or jar> [threads] [output .dot file]");
+            return;
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        CFG.loadScene(args[0]);
+        List<SootMethod> entryPoints = applicationEntryPoints();
+        System.out.printf("Loaded %d entry points in %.2f s%n", entryPoints.size(), (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        CallGraphBuilder builder = new CallGraphBuilder(threads);
+        CallGraph callGraph = builder.build(entryPoints);
+        System.out.printf("Call graph of %d methods and %d edges (%d failed) in %.2f s%n", callGraph.size(),
+                callGraph.getEdgeCount(), builder.getFailedCount(), (System.nanoTime() - start) / 1e9);
+
+        if (args.length > 2) {
+            CompactDirectedGraph.Builder<String> graph = new CompactDirectedGraph.Builder<>();
+            for (int method = 0; method < callGraph.size(); method++) {
+                graph.addNode(callGraph.getMethod(method).getSignature());
+            }
+            for (int edge = 0; edge < callGraph.getEdgeCount(); edge++) {
+                int line = callGraph.getEdgeLine(edge);
+                graph.addEdge(callGraph.getMethod(callGraph.getEdgeCaller(edge)).getSignature(),
+                        callGraph.getMethod(callGraph.getEdgeCallee(edge)).getSignature(),
+                        line < 0 ? null : Integer.toString(line));
+            }
+            try (DotGraphWriter writer = new DotGraphWriter(Paths.get(args[2]))) {
+                writer.writeGraph("call_graph", graph.build());
+            }
+        }
+    }
+}
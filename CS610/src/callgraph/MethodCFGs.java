@@ -0,0 +1,65 @@
+package callgraph;
+
+import cfg.CFG;
+import soot.SootClass;
+import soot.SootMethod;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * CFGs of methods, constructed on the first request and shared afterwards.
+ * <p>
+ * Concurrent requests for the same method wait for a single construction; requests for different methods
+ * construct in parallel. CFGs are constructed in compact mode.
+ */
+public class MethodCFGs {
+    private final ConcurrentHashMap<SootMethod, FutureTask<CFG>> cfgs = new ConcurrentHashMap<>();
+
+    /**
+     * @param method method of a class loaded within the {@code Scene}.
+     * @return CFG of the method, or {@code null} if the method has no body or the construction failed.
+     */
+    public CFG get(SootMethod method) {
+        if (!hasBody(method)) {
+            return null;
+        }
+        FutureTask<CFG> task = cfgs.computeIfAbsent(method, key -> new FutureTask<>(() -> new CFG(key, true)));
+        // Does nothing if the construction was already started by another thread.
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @param method method of a class loaded within the {@code Scene}.
+     * @return {@code true} if the method is concrete and its class was loaded with bodies, i.e. it is not a
+     *         library method known only by its signature.
+     */
+    public static boolean hasBody(SootMethod method) {
+        SootClass sootClass = method.getDeclaringClass();
+        return method.isConcrete() && !sootClass.isPhantom() && sootClass.resolvingLevel() >= SootClass.BODIES;
+    }
+
+    /**
+     * @param method method of a class loaded within the {@code Scene}.
+     * @return {@code true} if construction of the CFG of the method was requested.
+     */
+    public boolean contains(SootMethod method) {
+        return cfgs.containsKey(method);
+    }
+
+    /**
+     * @return number of methods whose CFG was requested.
+     */
+    public int size() {
+        return cfgs.size();
+    }
+}
@@ -0,0 +1,211 @@
+package callgraph;
+
+import cfg.CFG;
+import util.CompactDirectedGraph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interprocedural view of a {@link CallGraph}: the CFGs of all the reachable methods, connected at their call
+ * sites. CFGs are constructed only when the walk reaches their method, so an analysis touching a part of the
+ * program does not pay for the rest.
+ * <p>
+ * A node is a pair of a method id and a node id within the compact graph of its CFG, packed into a {@code long}
+ * by {@link #node(int, int)}. Call sites are resolved at line granularity: a node is a call node if a call on its
+ * line has a resolved callee, and its return sites are its intraprocedural successors. Queries are safe to be
+ * made from multiple threads.
+ */
+public class Supergraph {
+    private final CallGraph callGraph;
+    private final AtomicReferenceArray<MethodView> views;
+
+    public Supergraph(CallGraph callGraph) {
+        this.callGraph = callGraph;
+        this.views = new AtomicReferenceArray<>(callGraph.size());
+    }
+
+    public static long node(int method, int node) {
+        return ((long) method << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    public static int methodOf(long node) {
+        return (int) (node >>> 32);
+    }
+
+    public static int nodeOf(long node) {
+        return (int) node;
+    }
+
+    public CallGraph getCallGraph() {
+        return callGraph;
+    }
+
+    /**
+     * @param method id of the method.
+     * @return compact graph of the CFG of the method, or {@code null} if the method has no CFG.
+     */
+    public CompactDirectedGraph<String> getGraph(int method) {
+        MethodView view = view(method);
+        return view == null ? null : view.graph;
+    }
+
+    /**
+     * @param method id of the method.
+     * @return {@link CFG#ENTRY} node of the method, or {@code -1} if the method has no CFG.
+     */
+    public long getStartPoint(int method) {
+        MethodView view = view(method);
+        return view == null ? -1 : node(method, view.graph.getEntry());
+    }
+
+    /**
+     * @param method id of the method.
+     * @return {@link CFG#EXIT} node of the method, or {@code -1} if the method has no CFG or no exit.
+     */
+    public long getExitPoint(int method) {
+        MethodView view = view(method);
+        if (view == null) {
+            return -1;
+        }
+        int exit = view.graph.getId(CFG.EXIT);
+        return exit < 0 ? -1 : node(method, exit);
+    }
+
+    /**
+     * @param node node of the supergraph.
+     * @return number of intraprocedural successors of the node.
+     * @throws IllegalArgumentException if the node is not within the CFG of a method, e.g. it is the {@code -1}
+     *                                  start point of a method without CFG.
+     */
+    public int getSuccessorCount(long node) {
+        return requireView(node).graph.getSuccessorCount(nodeOf(node));
+    }
+
+    /**
+     * @param node  node of the supergraph.
+     * @param index index among the intraprocedural successors.
+     * @return successor of the node, within the same method.
+     * @throws IllegalArgumentException if the node is not within the CFG of a method.
+     */
+    public long getSuccessor(long node, int index) {
+        return node(methodOf(node), requireView(node).graph.getSuccessor(nodeOf(node), index));
+    }
+
+    /**
+     * @param node node of the supergraph.
+     * @return whether a call at the node has a resolved callee.
+     * @throws IllegalArgumentException if the node is not within the CFG of a method.
+     */
+    public boolean isCall(long node) {
+        return getCalleeCount(node) > 0;
+    }
+
+    /**
+     * @param node node of the supergraph.
+     * @return number of methods possibly called at the node.
+     * @throws IllegalArgumentException if the node is not within the CFG of a method.
+     */
+    public int getCalleeCount(long node) {
+        MethodView view = requireView(node);
+        return view.calleeOffsets[nodeOf(node) + 1] - view.calleeOffsets[nodeOf(node)];
+    }
+
+    /**
+     * @param node  call node of the supergraph.
+     * @param index index among the callees.
+     * @return id of the called method.
+     * @throws IllegalArgumentException if the node is not within the CFG of a method.
+     */
+    public int getCallee(long node, int index) {
+        MethodView view = requireView(node);
+        return view.callees[view.calleeOffsets[nodeOf(node)] + index];
+    }
+
+    /**
+     * @param method id of the called method.
+     * @return number of calls of the method, as edges of the call graph.
+     */
+    public int getCallerCount(int method) {
+        return callGraph.getIncomingEdgeCount(method);
+    }
+
+    /**
+     * @param method id of the called method.
+     * @param index  index among the calls.
+     * @return call node within the caller, or {@code -1} if the call has no node within the CFG of the caller.
+     *         Constructs the CFG of the caller.
+     */
+    public long getCallNode(int method, int index) {
+        int edge = callGraph.getIncomingEdge(method, index);
+        int caller = callGraph.getEdgeCaller(edge);
+        MethodView view = view(caller);
+        int line = callGraph.getEdgeLine(edge);
+        if (view == null || line < 0) {
+            return -1;
+        }
+        int node = view.graph.getId(Integer.toString(line));
+        return node < 0 ? -1 : node(caller, node);
+    }
+
+    private MethodView requireView(long node) {
+        MethodView view = node < 0 ? null : view(methodOf(node));
+        if (view == null) {
+            throw new IllegalArgumentException("Node " + node + " is not within the CFG of a method");
+        }
+        return view;
+    }
+
+    private MethodView view(int method) {
+        MethodView view = views.get(method);
+        if (view == null) {
+            CFG cfg = callGraph.getCFG(method);
+            view = cfg == null ? MethodView.NONE : new MethodView(callGraph, method, cfg.getCompactGraph());
+            // Another thread may have created the view meanwhile; both are equal.
+            views.compareAndSet(method, null, view);
+            view = views.get(method);
+        }
+        return view == MethodView.NONE ? null : view;
+    }
+
+    /**
+     * Compact graph of a method with its callees per node, in compressed sparse row form.
+     */
+    private static class MethodView {
+        static final MethodView NONE = new MethodView();
+
+        final CompactDirectedGraph<String> graph;
+        final int[] calleeOffsets;
+        final int[] callees;
+
+        private MethodView() {
+            graph = null;
+            calleeOffsets = null;
+            callees = null;
+        }
+
+        MethodView(CallGraph callGraph, int method, CompactDirectedGraph<String> graph) {
+            this.graph = graph;
+            int edgeCount = callGraph.getOutgoingEdgeCount(method);
+            int[] nodes = new int[edgeCount];
+            calleeOffsets = new int[graph.size() + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                int line = callGraph.getEdgeLine(callGraph.getOutgoingEdge(method, i));
+                nodes[i] = line < 0 ? -1 : graph.getId(Integer.toString(line));
+                if (nodes[i] >= 0) {
+                    calleeOffsets[nodes[i] + 1]++;
+                }
+            }
+            for (int node = 0; node < graph.size(); node++) {
+                calleeOffsets[node + 1] += calleeOffsets[node];
+            }
+            callees = new int[calleeOffsets[graph.size()]];
+            int[] fill = Arrays.copyOf(calleeOffsets, graph.size());
+            for (int i = 0; i < edgeCount; i++) {
+                if (nodes[i] >= 0) {
+                    callees[fill[nodes[i]]++] = callGraph.getEdgeCallee(callGraph.getOutgoingEdge(method, i));
+                }
+            }
+        }
+    }
+}
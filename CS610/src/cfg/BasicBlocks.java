@@ -0,0 +1,251 @@
+package cfg;
+
+import dataflow.DefUseIndex;
+import util.CompactDirectedGraph;
+import util.IntArrayList;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Basic-block view of a line-level CFG: every maximal chain of lines, in which each line but the last has the
+ * next one as its only successor and each line but the first has the previous one as its only predecessor, is
+ * merged into a single block node.
+ * <p>
+ * A block of a single line keeps the name of the line, and {@link CFG#ENTRY} and {@link CFG#EXIT} are never
+ * merged, so they name blocks of their own. A block of several lines is named by its first and last line,
+ * e.g. {@code "12-15"}. Edges between blocks keep the labels of the edges between lines.
+ * <p>
+ * A line with several statements falls through to itself, which shows up as a self edge in the line-level CFG.
+ * Given the lines whose self edge is due to a jump, the other self edges are dropped, so such lines are merged
+ * as well; without them, every line with a self edge stays a block of its own.
+ * <p>
+ * Variables of a block are aggregated over its lines, using the numbering of the line-level index: a block
+ * defines every variable defined at one of its lines, and uses the variables used at a line before any earlier
+ * line of the block defines them. Block-level reaching definitions therefore report the last definition within
+ * a block, and block-level live variables match the line-level ones at block boundaries.
+ */
+public class BasicBlocks {
+    private final CompactDirectedGraph<String> lineGraph;
+    private final CompactDirectedGraph<String> graph;
+
+    private final boolean[] keepsSelfEdge;
+
+    // Block id per line node.
+    private final int[] blocks;
+    // Line nodes per block, in control flow order, in compressed sparse row form.
+    private final int[] blockOffsets;
+    private final int[] blockNodes;
+
+    private final DefUseIndex<String> defUseIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param lineGraph   CFG with a node per line.
+     * @param lineDefUses   variables defined and used per line, or {@code null} if the blocks have no index.
+     * @param selfLoopLines lines whose self edge is due to a jump, or {@code null} if all self edges are kept.
+     */
+    public BasicBlocks(CompactDirectedGraph<String> lineGraph, DefUseIndex<String> lineDefUses,
+                       Set<String> selfLoopLines) {
+        this.lineGraph = lineGraph;
+        int n = lineGraph.size();
+
+        keepsSelfEdge = new boolean[n];
+        for (int node = 0; node < n; node++) {
+            keepsSelfEdge[node] = selfLoopLines == null || selfLoopLines.contains(lineGraph.getNode(node));
+        }
+        int[] onlySuccessor = new int[n];
+        int[] onlyPredecessor = new int[n];
+        for (int node = 0; node < n; node++) {
+            onlySuccessor[node] = onlyNeighbour(node, true);
+            onlyPredecessor[node] = onlyNeighbour(node, false);
+        }
+        int entry = lineGraph.getEntry();
+        int exit = lineGraph.getId(CFG.EXIT);
+        boolean[] continuesChain = new boolean[n];
+        for (int node = 0; node < n; node++) {
+            int previous = onlyPredecessor[node];
+            continuesChain[node] = previous >= 0 && onlySuccessor[previous] == node
+                    && previous != entry && node != exit;
+        }
+
+        blocks = new int[n];
+        Arrays.fill(blocks, -1);
+        blockNodes = new int[n];
+        IntArrayList offsets = new IntArrayList();
+        int placed = 0;
+        // Chain heads first; lines left over lie on chains closed into a cycle, which is cut at its lowest id.
+        for (int pass = 0; pass < 2; pass++) {
+            for (int head = 0; head < n; head++) {
+                if (blocks[head] >= 0 || (pass == 0 && continuesChain[head])) {
+                    continue;
+                }
+                int block = offsets.size();
+                offsets.add(placed);
+                int node = head;
+                do {
+                    blocks[node] = block;
+                    blockNodes[placed++] = node;
+                    node = onlySuccessor[node];
+                } while (node >= 0 && continuesChain[node] && blocks[node] < 0);
+            }
+        }
+        offsets.add(placed);
+        blockOffsets = offsets.toArray();
+
+        graph = buildGraph();
+        defUseIndex = lineDefUses == null ? null : aggregate(lineDefUses);
+    }
+
+    /**
+     * @return the only distinct successor (or predecessor) of the node, or {@code -1} if there is none, more than
+     * one, or a kept self edge.
+     */
+    private int onlyNeighbour(int node, boolean successors) {
+        int count = successors ? lineGraph.getSuccessorCount(node) : lineGraph.getPredecessorCount(node);
+        int only = -1;
+        for (int j = 0; j < count; j++) {
+            int neighbour = successors ? lineGraph.getSuccessor(node, j) : lineGraph.getPredecessor(node, j);
+            if (neighbour == node && !keepsSelfEdge[node]) {
+                continue;
+            }
+            if (neighbour == node || (only >= 0 && neighbour != only)) {
+                return -1;
+            }
+            only = neighbour;
+        }
+        return only;
+    }
+
+    private CompactDirectedGraph<String> buildGraph() {
+        CompactDirectedGraph.Builder<String> builder = new CompactDirectedGraph.Builder<>();
+        int blockCount = getBlockCount();
+        String[] names = new String[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            names[block] = getBlockSize(block) == 1 ? getFirstLine(block)
+                    : getFirstLine(block) + "-" + getLastLine(block);
+            builder.addNode(names[block]);
+        }
+        for (int block = 0; block < blockCount; block++) {
+            int last = getBlockNode(block, getBlockSize(block) - 1);
+            for (int j = 0; j < lineGraph.getSuccessorCount(last); j++) {
+                int successor = lineGraph.getSuccessor(last, j);
+                if (successor != last || keepsSelfEdge[last]) {
+                    builder.addEdge(names[block], names[blocks[successor]], lineGraph.getSuccessorLabel(last, j));
+                }
+            }
+        }
+        if (lineGraph.getEntry() >= 0) {
+            builder.setEntryNode(names[blocks[lineGraph.getEntry()]]);
+        }
+        return builder.build();
+    }
+
+    private DefUseIndex<String> aggregate(DefUseIndex<String> lineDefUses) {
+        int blockCount = getBlockCount();
+        BitSet[] defined = new BitSet[blockCount];
+        BitSet[] used = new BitSet[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            defined[block] = new BitSet();
+            used[block] = new BitSet();
+            for (int i = 0; i < getBlockSize(block); i++) {
+                int node = getBlockNode(block, i);
+                BitSet exposed = (BitSet) lineDefUses.getUsedAt(node).clone();
+                exposed.andNot(defined[block]);
+                used[block].or(exposed);
+                defined[block].or(lineDefUses.getDefinedAt(node));
+            }
+        }
+        return DefUseIndex.from(graph, lineDefUses.getVariables(), defined, used);
+    }
+
+    /**
+     * @return CFG with a node per line, whose node ids are used by {@link #getBlock(int)}.
+     */
+    public CompactDirectedGraph<String> getLineGraph() {
+        return lineGraph;
+    }
+
+    /**
+     * @return CFG with a node per block; block ids are node ids of this graph.
+     */
+    public CompactDirectedGraph<String> getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return variables defined and used per block, keyed by ids of {@link #getGraph()}, or {@code null} if the
+     * blocks were built without a line-level index.
+     */
+    public DefUseIndex<String> getDefUseIndex() {
+        return defUseIndex;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length - 1;
+    }
+
+    /**
+     * @param lineNode id of the node within {@link #getLineGraph()}.
+     * @return id of the block containing the line.
+     */
+    public int getBlock(int lineNode) {
+        return blocks[lineNode];
+    }
+
+    /**
+     * @param line name of the line, e.g. {@code "12"} or {@link CFG#ENTRY}.
+     * @return id of the block containing the line, or {@code -1} if there is no such line.
+     */
+    public int getBlock(String line) {
+        int lineNode = lineGraph.getId(line);
+        return lineNode < 0 ? -1 : blocks[lineNode];
+    }
+
+    /**
+     * @param block id of the block.
+     * @return number of lines merged into the block.
+     */
+    public int getBlockSize(int block) {
+        return blockOffsets[block + 1] - blockOffsets[block];
+    }
+
+    /**
+     * @param block id of the block.
+     * @param index index of the line within the block, in control flow order.
+     * @return id of the node within {@link #getLineGraph()}.
+     */
+    public int getBlockNode(int block, int index) {
+        return blockNodes[blockOffsets[block] + index];
+    }
+
+    /**
+     * @param block id of the block.
+     * @return names of the lines merged into the block, in control flow order.
+     */
+    public List<String> getLines(int block) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return lineGraph.getNode(getBlockNode(block, index));
+            }
+
+            @Override
+            public int size() {
+                return getBlockSize(block);
+            }
+        };
+    }
+
+    public String getFirstLine(int block) {
+        return lineGraph.getNode(getBlockNode(block, 0));
+    }
+
+    public String getLastLine(int block) {
+        return lineGraph.getNode(getBlockNode(block, getBlockSize(block) - 1));
+    }
+}
@@ -0,0 +1,574 @@
+package cfg;
+
+import cache.CachedMethod;
+import cache.CfgCache;
+import cache.ClassFileScanner;
+import export.BinaryGraphWriter;
+import export.DotGraphWriter;
+import export.GraphArchiveWriter;
+import metrics.MethodMetrics;
+import metrics.Phase;
+import metrics.PhaseMetrics;
+import metrics.TraceWriter;
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import util.CompactDirectedGraph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Whole-application driver which constructs CFGs for every concrete method of every application class.
+ * <p>
+ * The {@code Scene} is loaded only once, after which the methods are handed to a bounded pool of workers.
+ * Every method has a time budget, which starts once its body is retrieved; when it is exceeded, the method is
+ * reported as timed out and the driver moves on.
+ * <p>
+ * Time per phase, graph sizes and allocated bytes are aggregated into the {@link Summary}; with a
+ * {@link TraceWriter} they are also written per method. {@code main} writes the trace into the file given by the
+ * {@code cfg.trace} system property, and writes CFGs with a node per basic block if the {@code cfg.blocks} system
+ * property is {@code true}. If the {@code cfg.archive} system property is {@code dot} or {@code gzip}, the output
+ * directory becomes a sharded {@link GraphArchiveWriter archive}, uncompressed or compressed, with the methods
+ * written in the order of their signatures. The {@code cfg.construction} system property selects the
+ * {@link ConstructionMode}, e.g. {@code unit_graph}.
+ */
+public class BatchCFG {
+    private final int threads;
+    private final long timeoutMillis;
+    private TraceWriter trace = null;
+    private boolean ordered = false;
+    private ConstructionMode constructionMode = ConstructionMode.PATTERNS;
+
+    /**
+     * Constructor.
+     *
+     * @param threads       number of workers constructing CFGs.
+     * @param timeoutMillis time budget per method, in milliseconds.
+     */
+    public BatchCFG(int threads, long timeoutMillis) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads has to be positive, was " + threads);
+        }
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @param trace receives metrics of every constructed CFG, or {@code null} if no trace is written.
+     */
+    public void setTrace(TraceWriter trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @param constructionMode way the edges of the constructed CFGs are derived.
+     */
+    public void setConstructionMode(ConstructionMode constructionMode) {
+        this.constructionMode = constructionMode;
+    }
+
+    /**
+     * @param ordered if {@code true}, CFGs are handed to the consumer in the order of the methods rather than in the
+     *                order they are done, so a slow method holds back the CFGs after it.
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Collects all the concrete methods of the application classes loaded within the {@code Scene}.
+     *
+     * @return {@code List} of methods which have a body.
+     */
+    public static List<SootMethod> applicationMethods() {
+        List<SootMethod> methods = new ArrayList<>();
+        for (SootClass sootClass : new ArrayList<>(Scene.v().getApplicationClasses())) {
+            methods.addAll(concreteMethods(sootClass));
+        }
+        return methods;
+    }
+
+    private static List<SootMethod> concreteMethods(SootClass sootClass) {
+        List<SootMethod> methods = new ArrayList<>();
+        if (sootClass.isPhantom()) {
+            return methods;
+        }
+        for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+            if (method.isConcrete()) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Constructs CFGs of all the given methods.
+     * <p>
+     * CFGs are not retained; each one is handed to {@code consumer} on the calling thread as soon as it is done,
+     * or, if the run is ordered, as soon as it and the CFGs of all the methods before it are done.
+     *
+     * @param methods  methods over which CFGs will be constructed.
+     * @param consumer receives constructed CFGs.
+     * @return {@link Summary} of the run.
+     */
+    public Summary run(List<SootMethod> methods, Consumer<CFG> consumer) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        BlockingQueue<MethodTask> completed = ordered ? null : new LinkedBlockingQueue<>();
+        Queue<MethodTask> submitted = new ArrayDeque<>();
+
+        // Limits the number of constructed, but not yet consumed, CFGs.
+        int maxInFlight = threads * 2;
+        int inFlight = 0;
+
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        try {
+            for (SootMethod method : methods) {
+                while (inFlight >= maxInFlight) {
+                    collect(ordered ? submitted.remove() : completed.take(), summary, consumer);
+                    inFlight--;
+                }
+                MethodTask task = new MethodTask(method, constructionMode, completed);
+                if (ordered) {
+                    submitted.add(task);
+                }
+                workers.execute(() -> task.runWithTimeout(watchdog, timeoutMillis));
+                inFlight++;
+            }
+            while (inFlight > 0) {
+                collect(ordered ? submitted.remove() : completed.take(), summary, consumer);
+                inFlight--;
+            }
+        } finally {
+            workers.shutdownNow();
+            watchdog.shutdownNow();
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * Constructs CFGs of all the classes within a directory or a jar, reusing cached results of unchanged classes.
+     * <p>
+     * Only classes without a valid cache entry are loaded into the {@code Scene}. Their results are stored into
+     * the cache as soon as all the methods of a class are constructed; classes with a failed or timed out method
+     * are not stored. If {@link #setOrdered(boolean) ordered}, all the CFGs are handed to the consumer in the order
+     * of their signatures, so the output does not depend on which classes were cached.
+     *
+     * @param processDirectory directory or jar with the class binaries.
+     * @param cache            cache of constructed CFGs.
+     * @param consumer         receives constructed and restored CFGs.
+     * @return {@link Summary} of the run.
+     */
+    public Summary runCached(String processDirectory, CfgCache cache, Consumer<CFG> consumer)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        Map<String, String> keys = new TreeMap<>();
+        ClassFileScanner.scan(Paths.get(processDirectory), (className, bytes) -> keys.put(className, cache.key(bytes)));
+
+        List<String> missing = new ArrayList<>();
+        // If ordered, restored CFGs are held back and merged by signature with the constructed ones.
+        TreeMap<String, CFG> pending = ordered ? new TreeMap<>() : null;
+        int restored = 0;
+        long restoreStart = System.nanoTime();
+        for (Map.Entry<String, String> key : keys.entrySet()) {
+            CfgCache.Entry entry = cache.open(key.getValue());
+            List<CFG> cfgs = entry == null ? null : restore(entry);
+            if (cfgs == null) {
+                missing.add(key.getKey());
+                continue;
+            }
+            for (CFG cfg : cfgs) {
+                if (pending != null) {
+                    pending.put(cfg.getMethodSignature(), cfg);
+                } else {
+                    consumer.accept(cfg);
+                }
+                restored++;
+            }
+        }
+        Consumer<CFG> output = pending == null ? consumer : cfg -> {
+            while (!pending.isEmpty() && pending.firstKey().compareTo(cfg.getMethodSignature()) < 0) {
+                consumer.accept(pending.pollFirstEntry().getValue());
+            }
+            consumer.accept(cfg);
+        };
+
+        long restoreNanos = System.nanoTime() - restoreStart;
+
+        Summary summary = new Summary();
+        long loadNanos = 0;
+        if (!missing.isEmpty()) {
+            long loadStart = System.nanoTime();
+            CFG.loadClasses(processDirectory, missing);
+            loadNanos = System.nanoTime() - loadStart;
+
+            List<SootMethod> methods = new ArrayList<>();
+            Map<String, Integer> methodCounts = new HashMap<>();
+            Map<String, List<CachedMethod>> constructed = new HashMap<>();
+            for (String className : missing) {
+                SootClass sootClass = Scene.v().getSootClass(className);
+                List<SootMethod> classMethods = concreteMethods(sootClass);
+                methods.addAll(classMethods);
+                if (!classMethods.isEmpty()) {
+                    methodCounts.put(className, classMethods.size());
+                    constructed.put(className, new ArrayList<>());
+                } else if (!sootClass.isPhantom()) {
+                    cache.store(keys.get(className), Collections.emptyList());
+                }
+            }
+
+            if (ordered) {
+                methods.sort(Comparator.comparing(SootMethod::getSignature));
+            }
+            summary = run(methods, cfg -> {
+                output.accept(cfg);
+                String className = cfg.getSootMethod().getDeclaringClass().getName();
+                List<CachedMethod> classResults = constructed.get(className);
+                classResults.add(cfg.toCachedMethod());
+                if (classResults.size() == methodCounts.get(className)) {
+                    constructed.remove(className);
+                    try {
+                        cache.store(keys.get(className), classResults);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+
+        while (pending != null && !pending.isEmpty()) {
+            consumer.accept(pending.pollFirstEntry().getValue());
+        }
+
+        record(summary, Phase.RESTORE, restoreNanos);
+        record(summary, Phase.LOAD_SCENE, loadNanos);
+        summary.restored = restored;
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * @return CFGs of all the methods of a cache entry, or {@code null} if a record cannot be decoded, in which case
+     *         the class is constructed again.
+     */
+    private static List<CFG> restore(CfgCache.Entry entry) {
+        List<CFG> cfgs = new ArrayList<>();
+        for (String signature : entry.getMethodSignatures()) {
+            CachedMethod cachedMethod = entry.read(signature);
+            if (cachedMethod == null) {
+                return null;
+            }
+            try {
+                cfgs.add(new CFG(cachedMethod));
+            } catch (IllegalArgumentException e) {
+                // A corrupted assigned value, treated like a corrupted record.
+                return null;
+            }
+        }
+        return cfgs;
+    }
+
+    private void collect(MethodTask task, Summary summary, Consumer<CFG> consumer) {
+        String signature = task.method.getSignature();
+        try {
+            CFG cfg = task.get();
+            record(summary, cfg.getMetrics());
+            consumer.accept(cfg);
+            summary.succeeded++;
+        } catch (CancellationException e) {
+            System.err.println("Timed out: " + signature);
+            summary.timedOut++;
+        } catch (ExecutionException e) {
+            System.err.println("Failed: " + signature + ": " + e.getCause());
+            summary.failed++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.failed++;
+        }
+    }
+
+    private void record(Summary summary, MethodMetrics metrics) {
+        summary.phaseMetrics.record(metrics);
+        if (trace != null) {
+            try {
+                trace.write(metrics);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void record(Summary summary, Phase phase, long nanos) {
+        summary.phaseMetrics.record(phase, nanos);
+        if (trace != null) {
+            try {
+                trace.write(phase, nanos);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Construction of a single CFG which notifies the driver when it is completed or cancelled.
+     */
+    private static class MethodTask extends FutureTask<CFG> {
+        private final SootMethod method;
+        private final BlockingQueue<MethodTask> completed;
+
+        private final Retrieval retrieval;
+
+        MethodTask(SootMethod method, ConstructionMode mode, BlockingQueue<MethodTask> completed) {
+            this(method, mode, completed, new Retrieval());
+        }
+
+        private MethodTask(SootMethod method, ConstructionMode mode, BlockingQueue<MethodTask> completed,
+                           Retrieval retrieval) {
+            super(() -> {
+                CFG cfg = new CFG(method, retrieval.body, false, mode);
+                cfg.getMetrics().addPhaseNanos(Phase.RETRIEVE_BODY, retrieval.nanos);
+                return cfg;
+            });
+            this.method = method;
+            this.completed = completed;
+            this.retrieval = retrieval;
+        }
+
+        /**
+         * Retrieves the body, then constructs the CFG within the time budget. Retrievals are serialized by
+         * {@link CFG#SCENE_LOCK}, so the time spent waiting for other threads' retrievals is not counted.
+         */
+        void runWithTimeout(ScheduledExecutorService watchdog, long timeoutMillis) {
+            try {
+                synchronized (CFG.SCENE_LOCK) {
+                    long start = System.nanoTime();
+                    retrieval.body = method.retrieveActiveBody();
+                    retrieval.nanos = System.nanoTime() - start;
+                }
+            } catch (RuntimeException e) {
+                setException(e);
+                return;
+            }
+            ScheduledFuture<?> alarm = watchdog.schedule(() -> cancel(true), timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                run();
+            } finally {
+                alarm.cancel(false);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (completed != null) {
+                completed.add(this);
+            }
+        }
+    }
+
+    /**
+     * Body of a {@link MethodTask}, retrieved by the worker before the construction starts.
+     */
+    private static class Retrieval {
+        private Body body;
+        private long nanos;
+    }
+
+    /**
+     * Outcome of a batch run.
+     */
+    public static class Summary {
+        private int succeeded;
+        private int failed;
+        private int timedOut;
+        private int restored;
+        private long elapsedNanos;
+        private final PhaseMetrics phaseMetrics = new PhaseMetrics();
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return number of CFGs restored from a cache, without Soot.
+         */
+        public int getRestored() {
+            return restored;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return metrics aggregated over the constructed CFGs, excluding restored, failed and timed out ones.
+         */
+        public PhaseMetrics getPhaseMetrics() {
+            return phaseMetrics;
+        }
+
+        public double getMethodsPerSecond() {
+            int total = succeeded + failed + timedOut + restored;
+            return elapsedNanos == 0 ? 0 : total / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d methods: %d restored, %d succeeded, %d failed, %d timed out in %.2f s (%.1f methods/sec)",
+                    succeeded + failed + timedOut + restored, restored, succeeded, failed, timedOut,
+                    elapsedNanos / 1e9, getMethodsPerSecond());
+        }
+    }
+
+    private static String fileName(String methodSignature) {
+        return methodSignature.replaceAll("[^A-Za-z0-9._-]", "_") + ".dot";
+    }
+
+    /**
+     * Opens the output of a batch run: a single multi-graph DOT file ({@code .dot}), a single binary edge-list
+     * file ({@code .cfgb}), otherwise a directory with a DOT file per method, or a sharded archive.
+     *
+     * @param output      path of the output, or {@code null} if CFGs are not written.
+     * @param basicBlocks if {@code true}, CFGs are written with a node per basic block.
+     * @param archive     {@code dot} or {@code gzip} if the output directory is an archive, otherwise {@code null}.
+     * @param threads     number of workers rendering graphs into an archive.
+     * @return consumer writing CFGs to the output, to be closed at the end of the run.
+     */
+    private static GraphOutput openOutput(String output, boolean basicBlocks, String archive, int threads)
+            throws IOException {
+        if (output == null) {
+            return new GraphOutput(cfg -> {}, () -> {});
+        }
+        if (archive != null) {
+            if (!"dot".equals(archive) && !"gzip".equals(archive)) {
+                throw new IllegalArgumentException("Archive has to be dot or gzip, was " + archive);
+            }
+            GraphArchiveWriter writer = new GraphArchiveWriter(Paths.get(output), "gzip".equals(archive),
+                    GraphArchiveWriter.DEFAULT_SHARD_SIZE, threads);
+            return new GraphOutput(cfg -> writer.writeGraph(cfg.getMethodSignature(), graphOf(cfg, basicBlocks)),
+                    () -> {
+                        writer.close();
+                        System.out.printf("Archived %d graphs, %d bytes in %d shards%n", writer.getGraphCount(),
+                                writer.getByteCount(), writer.getShardCount());
+                    });
+        }
+        if (output.endsWith(".dot")) {
+            DotGraphWriter writer = new DotGraphWriter(Paths.get(output));
+            return new GraphOutput(cfg -> writer.writeGraph(cfg.getMethodSignature(), graphOf(cfg, basicBlocks)),
+                    writer);
+        }
+        if (output.endsWith(".cfgb")) {
+            BinaryGraphWriter writer = new BinaryGraphWriter(Paths.get(output));
+            return new GraphOutput(cfg -> writer.writeGraph(cfg.getMethodSignature(), graphOf(cfg, basicBlocks)),
+                    writer);
+        }
+        File directory = new File(output);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create output directory " + directory);
+        }
+        return new GraphOutput(
+                cfg -> cfg.writeToDotty(new File(directory, fileName(cfg.getMethodSignature())).getPath(),
+                        basicBlocks),
+                () -> {});
+    }
+
+    private static CompactDirectedGraph<String> graphOf(CFG cfg, boolean basicBlocks) {
+        return basicBlocks ? cfg.getBasicBlocks().getGraph() : cfg.getCompactGraph();
+    }
+
+    private interface GraphWrite {
+        void write(CFG cfg) throws IOException;
+    }
+
+    private static class GraphOutput implements Consumer<CFG>, Closeable {
+        private final GraphWrite write;
+        private final Closeable closeable;
+
+        GraphOutput(GraphWrite write, Closeable closeable) {
+            this.write = write;
+            this.closeable = closeable;
+        }
+
+        @Override
+        public void accept(CFG cfg) {
+            try {
+                write.write(cfg);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeable.close();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length < 1 || args.length > 5) {
+            System.err.println("Usage: BatchCFG <class directory or jar> [output directory, .dot or .cfgb file]"
+                    + " [threads] [timeout seconds] [cache directory]");
+            return;
+        }
+
+        String processDirectory = args[0];
+        String output = args.length > 1 ? args[1] : null;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long timeoutMillis = args.length > 3 ? TimeUnit.SECONDS.toMillis(Long.parseLong(args[3])) : 30_000;
+
+        String tracePath = System.getProperty("cfg.trace");
+        boolean basicBlocks = Boolean.getBoolean("cfg.blocks");
+        String archive = System.getProperty("cfg.archive");
+        ConstructionMode mode = ConstructionMode.valueOf(
+                System.getProperty("cfg.construction", ConstructionMode.PATTERNS.name()).toUpperCase(Locale.ROOT));
+        // CFGs of the two modes differ, so they are cached apart; the key of the default mode stays as it was.
+        String cacheOptions = mode == ConstructionMode.PATTERNS ? CFG.CACHE_OPTIONS
+                : CFG.CACHE_OPTIONS + ";construction=" + mode.name().toLowerCase(Locale.ROOT);
+        CfgCache cache = args.length > 4 ? new CfgCache(Paths.get(args[4]), cacheOptions) : null;
+
+        BatchCFG batch = new BatchCFG(threads, timeoutMillis);
+        batch.setConstructionMode(mode);
+        batch.setOrdered(archive != null);
+        Summary summary;
+        try (GraphOutput graphOutput = openOutput(output, basicBlocks, archive, threads);
+             TraceWriter trace = tracePath != null ? new TraceWriter(Paths.get(tracePath)) : null) {
+            batch.setTrace(trace);
+            if (cache != null) {
+                summary = batch.runCached(processDirectory, cache, graphOutput);
+            } else {
+                long loadStart = System.nanoTime();
+                CFG.loadScene(processDirectory);
+                List<SootMethod> methods = applicationMethods();
+                if (archive != null) {
+                    methods.sort(Comparator.comparing(SootMethod::getSignature));
+                }
+                long loadNanos = System.nanoTime() - loadStart;
+                System.out.printf("Loaded %d methods in %.2f s%n", methods.size(), loadNanos / 1e9);
+
+                summary = batch.run(methods, graphOutput);
+                batch.record(summary, Phase.LOAD_SCENE, loadNanos);
+            }
+        }
+
+        System.out.println(summary);
+        System.out.println(summary.getPhaseMetrics());
+    }
+}
@@ -0,0 +1,1170 @@
+package cfg;
+
+import cache.CachedMethod;
+import cache.CfgCache;
+import dataflow.ConstantPropagation;
+import dataflow.DeadDefinitions;
+import dataflow.DefUseChains;
+import dataflow.DefUseIndex;
+import dataflow.LiveVariables;
+import dataflow.ReachingDefinitions;
+import dataflow.SsaForm;
+import dataflow.VariableNumbering;
+import export.DotGraphWriter;
+import metrics.MethodMetrics;
+import metrics.Phase;
+import soot.*;
+import soot.jimple.ArrayRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.ConditionExpr;
+import soot.jimple.Constant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FieldRef;
+import soot.jimple.FloatConstant;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.LongConstant;
+import soot.jimple.NullConstant;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.internal.*;
+import soot.options.Options;
+import soot.toolkits.graph.pdg.EnhancedUnitGraph;
+import util.CompactDirectedGraph;
+import util.DepthFirstOrder;
+import util.DirectedGraph;
+import util.DominatorTree;
+import util.LoopNestingForest;
+import util.Pair;
+import util.ReachabilityIndex;
+import util.StronglyConnectedComponents;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Control Flow Graph implementation.
+ */
+public class CFG extends DirectedGraph<String> {
+    private static final Logger LOGGER = Logger.getLogger(CFG.class.getName());
+
+    private static final String LINE_NUMBER_TAG = "LineNumberTag";
+    // Key of the entry node within the def/use index, whose other keys are line numbers.
+    private static final int ENTRY_LINE = -1;
+    public static final String ENTRY = "entry";
+    public static final String EXIT = "exit";
+    private static final String DOTTY_GRAPH_NAME = "control_flow_graph";
+
+    /**
+     * Options which affect constructed CFGs, part of the keys of {@link CfgCache} entries. The extraction version
+     * is bumped whenever construction changes what it records, so entries of earlier versions are not served.
+     */
+    public static final String CACHE_OPTIONS = "keep-line-number;jb.use-original-names;lines;extraction=5";
+
+    private SootClass sootClass;
+    private SootMethod sootMethod;
+    private Body body;
+    private String methodSignature;
+
+    // Filled during construction and turned into the index on first use.
+    private DefUseIndex.Builder defUseBuilder = null;
+    private DefUseIndex<String> defUseIndex = null;
+    private DefUseChains<String> defUseChains = null;
+    private BasicBlocks basicBlocks = null;
+    private SsaForm<String> ssaForm = null;
+    // Constant or named local assigned to each named variable, per line, or null if unknown.
+    private Map<String, Map<String, Value>> assignedValues = null;
+    // Lines with effects beyond assigning named variables.
+    private Set<String> criticalLines = null;
+    // Variables naming fields and array elements, which outlive the method.
+    private Set<String> escapingVariables = null;
+    // Lines with a self edge due to a jump.
+    private Set<String> selfLoopLines = null;
+
+    // Views by node name, created from the index on first use, or restored from a cache.
+    private Map<String, Set<String>> definedVariables = null;
+    private Map<String, Set<String>> usesDefined = null;
+    private Set<String> allLocals = null;
+
+    private CompactDirectedGraph.Builder<String> compactBuilder = null;
+    private CompactDirectedGraph<String> compactGraph = null;
+    // Whether the CFG is only held by the compact graph, in compact mode or if restored from a cache.
+    private boolean compactOnly = false;
+
+    private MethodMetrics metrics = null;
+
+    /**
+     * Guards Soot singletons which are not thread safe: Jimple body creation and method resolution.
+     */
+    public static final Object SCENE_LOCK = new Object();
+
+    /**
+     * Constructor.
+     * <b>Warning: Does not construct a CFG, method constructCFG needs to be run.</b>
+     * <p>
+     * @param classDirectory directory where the class binaries are.
+     * @param className      name of the class which method will be used for construction of CFG.
+     * @param methodName     name of the method over which CFG will be constructed, or its subsignature
+     *                       (e.g. {@code void main(java.lang.String[])}) if the name is overloaded.
+     * @throws IllegalArgumentException if there is no such method, or the name is overloaded.
+     */
+    public CFG(String classDirectory, String className, String methodName) {
+        this(loadMethod(classDirectory, className, methodName));
+    }
+
+    /**
+     * Constructs a CFG over a method of a class already loaded within the {@code Scene}.
+     *
+     * @param sootMethod method over which CFG will be constructed.
+     */
+    public CFG(SootMethod sootMethod) {
+        this(sootMethod, false);
+    }
+
+    /**
+     * Constructs a CFG over a method of a class already loaded within the {@code Scene}.
+     * <p>
+     * In compact mode edges are built directly into a {@link CompactDirectedGraph}, available through
+     * {@link #getCompactGraph()}. The successor and predecessor maps are only materialized from it on request.
+     *
+     * @param sootMethod method over which CFG will be constructed.
+     * @param compact    if {@code true}, only the compact representation is built.
+     */
+    public CFG(SootMethod sootMethod, boolean compact) {
+        this(sootMethod, null, compact);
+    }
+
+    /**
+     * Constructs a CFG over a body retrieved beforehand, e.g. one kept by a cache of bodies.
+     *
+     * @param sootMethod method over which CFG will be constructed.
+     * @param body       body of the method, or {@code null} if it is retrieved by the constructor.
+     * @param compact    if {@code true}, only the compact representation is built.
+     */
+    public CFG(SootMethod sootMethod, Body body, boolean compact) {
+        this(sootMethod, body, compact, ConstructionMode.PATTERNS);
+    }
+
+    /**
+     * Constructs a CFG over a body retrieved beforehand, deriving the edges in the given way. The body is not
+     * modified in either mode.
+     *
+     * @param sootMethod method over which CFG will be constructed.
+     * @param body       body of the method, or {@code null} if it is retrieved by the constructor.
+     * @param compact    if {@code true}, only the compact representation is built.
+     * @param mode       way the edges are derived.
+     */
+    public CFG(SootMethod sootMethod, Body body, boolean compact, ConstructionMode mode) {
+        this.sootMethod = sootMethod;
+        this.sootClass = sootMethod.getDeclaringClass();
+        this.methodSignature = sootMethod.getSignature();
+        this.metrics = new MethodMetrics(methodSignature);
+
+        if (body != null) {
+            this.body = body;
+        } else {
+            // Jimple body creation goes through Soot singletons which are not thread safe.
+            synchronized (SCENE_LOCK) {
+                metrics.startPhase(Phase.RETRIEVE_BODY);
+                this.body = sootMethod.retrieveActiveBody();
+                metrics.endPhase();
+            }
+        }
+
+        if (compact) {
+            compactBuilder = new CompactDirectedGraph.Builder<>();
+        }
+
+        construct(mode);
+
+        if (compact) {
+            metrics.startPhase(Phase.EDGES);
+            compactGraph = compactBuilder.build();
+            compactBuilder = null;
+            compactOnly = true;
+            metrics.finish(compactGraph.size(), compactGraph.getEdgeCount());
+        } else {
+            int edgeCount = 0;
+            for (Set<Pair<String, String>> edges : successors.values()) {
+                edgeCount += edges.size();
+            }
+            metrics.finish(successors.size(), edgeCount);
+        }
+    }
+
+    /**
+     * Restores a CFG from a cache, without Soot. Restored CFG is in compact mode and has no {@code SootMethod}.
+     *
+     * @param cachedMethod results stored within a cache.
+     * @throws IllegalArgumentException if an assigned value of the cached method is corrupted.
+     */
+    public CFG(CachedMethod cachedMethod) {
+        this.methodSignature = cachedMethod.getSignature();
+        this.compactGraph = cachedMethod.getGraph();
+        this.compactOnly = true;
+        this.definedVariables = cachedMethod.getDefinedVariables();
+        this.usesDefined = cachedMethod.getUsesDefined();
+        this.selfLoopLines = cachedMethod.getSelfLoopLines();
+        this.criticalLines = cachedMethod.getCriticalLines();
+        this.escapingVariables = cachedMethod.getEscapingVariables();
+        if (cachedMethod.getAssignedValues() != null) {
+            assignedValues = new HashMap<>();
+            for (Map.Entry<String, Map<String, String>> line : cachedMethod.getAssignedValues().entrySet()) {
+                Map<String, Value> values = new HashMap<>();
+                for (Map.Entry<String, String> value : line.getValue().entrySet()) {
+                    values.put(value.getKey(), decodeValue(value.getValue()));
+                }
+                assignedValues.put(line.getKey(), values);
+            }
+        }
+    }
+
+    /**
+     * @return results of the CFG to be stored within a cache.
+     */
+    public CachedMethod toCachedMethod() {
+        Map<String, Map<String, String>> encodedValues = null;
+        if (assignedValues != null) {
+            encodedValues = new HashMap<>();
+            for (Map.Entry<String, Map<String, Value>> line : assignedValues.entrySet()) {
+                Map<String, String> values = new HashMap<>();
+                for (Map.Entry<String, Value> value : line.getValue().entrySet()) {
+                    String encoded = encodeValue(value.getValue());
+                    if (encoded != null) {
+                        values.put(value.getKey(), encoded);
+                    }
+                }
+                if (!values.isEmpty()) {
+                    encodedValues.put(line.getKey(), values);
+                }
+            }
+        }
+        return new CachedMethod(methodSignature, getCompactGraph(), getDefinedVariables(), getUsesDefined(),
+                selfLoopLines, criticalLines, escapingVariables, encodedValues);
+    }
+
+    /**
+     * Encodes an assigned value for a cache: a tag, {@code I}, {@code J}, {@code F}, {@code D}, {@code S},
+     * {@code C} or {@code N} for a constant and {@code L} for a copied local, followed by the value. Floating point
+     * constants are kept as their bits.
+     *
+     * @return encoded value, or {@code null} if it is unknown or cannot be encoded, which is equivalent.
+     */
+    private static String encodeValue(Value value) {
+        if (value instanceof IntConstant) {
+            return "I" + ((IntConstant) value).value;
+        } else if (value instanceof LongConstant) {
+            return "J" + ((LongConstant) value).value;
+        } else if (value instanceof FloatConstant) {
+            return "F" + Float.floatToRawIntBits(((FloatConstant) value).value);
+        } else if (value instanceof DoubleConstant) {
+            return "D" + Double.doubleToRawLongBits(((DoubleConstant) value).value);
+        } else if (value instanceof StringConstant) {
+            return "S" + ((StringConstant) value).value;
+        } else if (value instanceof ClassConstant) {
+            return "C" + ((ClassConstant) value).value;
+        } else if (value instanceof NullConstant) {
+            return "N";
+        } else if (value instanceof Local) {
+            return "L" + ((Local) value).getName();
+        }
+        return null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not encoded by {@link #encodeValue(Value)}.
+     */
+    private static Value decodeValue(String encoded) {
+        if (encoded.isEmpty()) {
+            throw new IllegalArgumentException("Empty encoded value");
+        }
+        String text = encoded.substring(1);
+        switch (encoded.charAt(0)) {
+            case 'I':
+                return IntConstant.v(Integer.parseInt(text));
+            case 'J':
+                return LongConstant.v(Long.parseLong(text));
+            case 'F':
+                return FloatConstant.v(Float.intBitsToFloat(Integer.parseInt(text)));
+            case 'D':
+                return DoubleConstant.v(Double.longBitsToDouble(Long.parseLong(text)));
+            case 'S':
+                return StringConstant.v(text);
+            case 'C':
+                return ClassConstant.v(text);
+            case 'N':
+                return NullConstant.v();
+            case 'L':
+                return Jimple.v().newLocal(text, UnknownType.v());
+            default:
+                throw new IllegalArgumentException("Unknown encoded value " + encoded);
+        }
+    }
+
+    /**
+     * Loads all the classes found within a directory (or a jar) as application classes.
+     * Loading is done once, after which {@link #CFG(SootMethod)} can be used for every method.
+     *
+     * @param processDirectory directory or jar with the class binaries.
+     */
+    public static void loadScene(String processDirectory) {
+        setOptions();
+        Options.v().set_process_dir(Collections.singletonList(processDirectory));
+        Options.v().set_allow_phantom_refs(true);
+
+        appendClassPath(processDirectory);
+        Scene.v().loadNecessaryClasses();
+    }
+
+    /**
+     * Loads only the given classes as application classes.
+     *
+     * @param classPath  directory or jar with the class binaries.
+     * @param classNames fully qualified names of the classes to be loaded.
+     */
+    public static void loadClasses(String classPath, Collection<String> classNames) {
+        setOptions();
+        Options.v().set_allow_phantom_refs(true);
+        appendClassPath(classPath);
+
+        List<SootClass> classes = new ArrayList<>();
+        for (String className : classNames) {
+            classes.add(Scene.v().loadClassAndSupport(className));
+        }
+        Scene.v().loadNecessaryClasses();
+        for (SootClass loaded : classes) {
+            loaded.setApplicationClass();
+        }
+    }
+
+    private static SootMethod loadMethod(String classDirectory, String className, String methodName) {
+        synchronized (SCENE_LOCK) {
+            appendClassPath(classDirectory);
+            setOptions();
+
+            // Classes loaded by earlier CFGs are reused instead of loading the necessary classes again.
+            SootClass sootClass = Scene.v().getSootClassUnsafe(className, false);
+            if (sootClass == null || sootClass.isPhantom() || sootClass.resolvingLevel() < SootClass.BODIES) {
+                sootClass = Scene.v().loadClassAndSupport(className);
+                Scene.v().loadNecessaryClasses();
+            }
+            sootClass.setApplicationClass();
+
+            return findMethod(sootClass, methodName);
+        }
+    }
+
+    /**
+     * Adds an entry to the Soot class path unless it is already there, so that repeated loads within one JVM do
+     * not grow the class path.
+     *
+     * @param entry directory or jar.
+     */
+    public static void appendClassPath(String entry) {
+        synchronized (SCENE_LOCK) {
+            String classPath = Scene.v().getSootClassPath();
+            if (classPath != null && !classPath.isEmpty()) {
+                String normalized = new File(entry).getAbsolutePath();
+                for (String existing : classPath.split(File.pathSeparator)) {
+                    if (existing.equals(entry) || new File(existing).getAbsolutePath().equals(normalized)) {
+                        return;
+                    }
+                }
+                entry = classPath + File.pathSeparator + entry;
+            }
+            Scene.v().setSootClassPath(entry);
+        }
+    }
+
+    /**
+     * Finds a method by its name or by its subsignature. Unlike {@code SootClass.getMethodByName}, overloaded
+     * names are reported with their candidates.
+     *
+     * @param sootClass class declaring the method.
+     * @param method    name of the method, or its subsignature, e.g. {@code void main(java.lang.String[])}.
+     * @return {@code SootMethod} of the class.
+     * @throws IllegalArgumentException if there is no such method, or the name is overloaded.
+     */
+    public static SootMethod findMethod(SootClass sootClass, String method) {
+        if (method.indexOf('(') >= 0) {
+            SootMethod sootMethod = sootClass.getMethodUnsafe(method);
+            if (sootMethod == null) {
+                throw new IllegalArgumentException("No method " + method + " within a class " + sootClass);
+            }
+            return sootMethod;
+        }
+
+        List<SootMethod> candidates = new ArrayList<>();
+        for (SootMethod sootMethod : sootClass.getMethods()) {
+            if (sootMethod.getName().equals(method)) {
+                candidates.add(sootMethod);
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("No method named " + method + " within a class " + sootClass);
+        }
+        if (candidates.size() > 1) {
+            StringBuilder message = new StringBuilder("Method name " + method + " is overloaded within a class "
+                    + sootClass + ", use one of the subsignatures:");
+            for (SootMethod candidate : candidates) {
+                message.append(' ').append(candidate.getSubSignature()).append(';');
+            }
+            throw new IllegalArgumentException(message.toString());
+        }
+        return candidates.get(0);
+    }
+
+    private static void setOptions() {
+        Options.v().set_keep_line_number(true);
+        Options.v().setPhaseOption("jb", "use-original-names");
+    }
+
+    /**
+     * @return method over which the CFG was constructed, or {@code null} if it was restored from a cache.
+     */
+    public SootMethod getSootMethod() {
+        return sootMethod;
+    }
+
+    public String getMethodSignature() {
+        return methodSignature;
+    }
+
+    /**
+     * @return metrics of the construction, or {@code null} if the CFG was restored from a cache.
+     */
+    public MethodMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns compact representation of the CFG. Unless the CFG was constructed in compact mode, it is created
+     * from the successor map on the first call.
+     *
+     * @return {@code CompactDirectedGraph} with the same nodes and edges.
+     */
+    public CompactDirectedGraph<String> getCompactGraph() {
+        if (compactGraph == null) {
+            compactGraph = CompactDirectedGraph.from(this);
+        }
+        return compactGraph;
+    }
+
+    /**
+     * Returns the index of defined and used variables. It is created on the first call.
+     *
+     * @return {@link DefUseIndex} keyed by ids of {@link #getCompactGraph()}.
+     */
+    public DefUseIndex<String> getDefUseIndex() {
+        if (defUseIndex == null) {
+            if (defUseBuilder != null) {
+                defUseIndex = defUseBuilder.build(getCompactGraph(),
+                        line -> line == ENTRY_LINE ? ENTRY : Integer.toString(line));
+                defUseBuilder = null;
+            } else {
+                defUseIndex = DefUseIndex.from(getCompactGraph(), definedVariables, usesDefined);
+            }
+        }
+        return defUseIndex;
+    }
+
+    /**
+     * @return variables defined per line; parameters are defined at {@link #ENTRY}.
+     */
+    public Map<String, Set<String>> getDefinedVariables() {
+        if (definedVariables == null) {
+            definedVariables = getDefUseIndex().toDefinedVariables();
+        }
+        return Collections.unmodifiableMap(definedVariables);
+    }
+
+    /**
+     * @return defined variables used per line.
+     */
+    public Map<String, Set<String>> getUsesDefined() {
+        if (usesDefined == null) {
+            usesDefined = getDefUseIndex().toUsedVariables();
+        }
+        return Collections.unmodifiableMap(usesDefined);
+    }
+
+    public Set<String> getAllLocals() {
+        if (allLocals == null) {
+            DefUseIndex<String> index = getDefUseIndex();
+            allLocals = new HashSet<>();
+            for (int variable = 0; variable < index.getVariables().size(); variable++) {
+                allLocals.add(index.getVariables().getName(variable));
+            }
+        }
+        return Collections.unmodifiableSet(allLocals);
+    }
+
+    /**
+     * Runs reaching definitions analysis over the CFG.
+     *
+     * @return solved {@link ReachingDefinitions}, indexed by ids of {@link #getCompactGraph()}.
+     */
+    public ReachingDefinitions<String> getReachingDefinitions() {
+        return new ReachingDefinitions<>(getDefUseIndex());
+    }
+
+    /**
+     * Runs live variables analysis over the CFG.
+     *
+     * @return solved {@link LiveVariables}, indexed by ids of {@link #getCompactGraph()}.
+     */
+    public LiveVariables<String> getLiveVariables() {
+        return new LiveVariables<>(getDefUseIndex(), EXIT);
+    }
+
+    /**
+     * Returns def-use and use-def chains, built per variable on demand. The chains of the most recently queried
+     * variables are kept with the CFG.
+     *
+     * @return {@link DefUseChains}, indexed by ids of {@link #getCompactGraph()}.
+     */
+    public DefUseChains<String> getDefUseChains() {
+        if (defUseChains == null) {
+            defUseChains = new DefUseChains<>(getDefUseIndex());
+        }
+        return defUseChains;
+    }
+
+    /**
+     * Builds def-use and use-def chains of all the variables at once, e.g. for slicing.
+     *
+     * @return {@link DefUseChains} with every variable built, indexed by ids of {@link #getCompactGraph()}.
+     */
+    public DefUseChains<String> getAllDefUseChains() {
+        return DefUseChains.computeAll(getDefUseIndex());
+    }
+
+    /**
+     * Returns the basic-block view of the CFG, in which chains of lines without branches or joins are merged into
+     * single nodes. It is created on the first call.
+     *
+     * @return {@link BasicBlocks} over {@link #getCompactGraph()}, with variables aggregated per block.
+     */
+    public BasicBlocks getBasicBlocks() {
+        if (basicBlocks == null) {
+            basicBlocks = new BasicBlocks(getCompactGraph(), getDefUseIndex(), selfLoopLines);
+        }
+        return basicBlocks;
+    }
+
+    /**
+     * Returns the SSA form of the variables, renamed over {@link #getDominatorTree()}. It is created on the first
+     * call.
+     *
+     * @return {@link SsaForm} indexed by ids of {@link #getCompactGraph()}.
+     */
+    public SsaForm<String> getSsaForm() {
+        if (ssaForm == null) {
+            ssaForm = new SsaForm<>(getDefUseIndex(), getDominatorTree());
+        }
+        return ssaForm;
+    }
+
+    /**
+     * Propagates the constants assigned to variables over {@link #getSsaForm()}. A line defines a variable as a
+     * constant if it is the only statement of the line assigning it, control does not branch within the line, and
+     * it assigns a constant or a copy of a constant variable. A CFG restored from the cache has the same constants.
+     *
+     * @return {@link ConstantPropagation} over the values of {@link #getSsaForm()}.
+     */
+    public ConstantPropagation<String> getConstantPropagation() {
+        CompactDirectedGraph<String> graph = getCompactGraph();
+        DefUseIndex<String> index = getDefUseIndex();
+        return new ConstantPropagation<>(getSsaForm(), new ConstantPropagation.Definitions() {
+            @Override
+            public Object getConstant(int node, int variable) {
+                Value value = getAssignedValue(graph.getNode(node), index.getVariables().getName(variable));
+                return value instanceof Constant ? value : null;
+            }
+
+            @Override
+            public int getCopiedVariable(int node, int variable) {
+                Value value = getAssignedValue(graph.getNode(node), index.getVariables().getName(variable));
+                return value instanceof Local ? index.getVariables().getId(((Local) value).getName()) : -1;
+            }
+        });
+    }
+
+    private Value getAssignedValue(String line, String variable) {
+        Map<String, Value> values = assignedValues == null ? null : assignedValues.get(line);
+        return values == null ? null : values.get(variable);
+    }
+
+    /**
+     * Finds the definitions over {@link #getSsaForm()} whose values never reach a call, store, branch or return.
+     * Fields and array elements escape the method, so their definitions are never dead. The critical lines and
+     * the escaping variables are kept within the cache, so a restored CFG gives the same definitions.
+     *
+     * @return {@link DeadDefinitions} over the values of {@link #getSsaForm()}.
+     */
+    public DeadDefinitions<String> getDeadDefinitions() {
+        CompactDirectedGraph<String> graph = getCompactGraph();
+        VariableNumbering variables = getDefUseIndex().getVariables();
+        return new DeadDefinitions<>(getSsaForm(),
+                node -> criticalLines == null || criticalLines.contains(graph.getNode(node)),
+                variable -> escapingVariables == null || escapingVariables.contains(variables.getName(variable)));
+    }
+
+    /**
+     * @return dominator tree rooted at {@link #ENTRY}, indexed by ids of {@link #getCompactGraph()}.
+     */
+    public DominatorTree<String> getDominatorTree() {
+        return new DominatorTree<>(getCompactGraph());
+    }
+
+    /**
+     * @return post-dominator tree rooted at {@link #EXIT}, indexed by ids of {@link #getCompactGraph()}.
+     */
+    public DominatorTree<String> getPostDominatorTree() {
+        return DominatorTree.postDominators(getCompactGraph(), getCompactGraph().getId(EXIT));
+    }
+
+    @Override
+    public Map<String, Set<Pair<String, String>>> getSuccessors() {
+        materializeMaps();
+        return super.getSuccessors();
+    }
+
+    @Override
+    public Map<String, Set<Pair<String, String>>> getPredecessors() {
+        materializeMaps();
+        return super.getPredecessors();
+    }
+
+    @Override
+    public String getEntryNode() {
+        return compactOnly ? compactGraph.getEntryNode() : super.getEntryNode();
+    }
+
+    /**
+     * In compact mode, or if the CFG was restored from a cache, fills the successor and predecessor maps from the
+     * compact graph, once.
+     */
+    private void materializeMaps() {
+        if (compactOnly && successors.isEmpty() && compactGraph.size() > 0) {
+            successors = compactGraph.getSuccessors();
+            predecessors = compactGraph.getPredecessors();
+        }
+    }
+
+    @Override
+    public List<String> topologicalSort() {
+        return getCompactGraph().topologicalSort();
+    }
+
+    /**
+     * @return depth-first orderings of the CFG, indexed by ids of {@link #getCompactGraph()}.
+     */
+    @Override
+    public DepthFirstOrder<String> getDepthFirstOrder() {
+        return getCompactGraph().getDepthFirstOrder();
+    }
+
+    /**
+     * @return loop nesting forest of the CFG, indexed by ids of {@link #getCompactGraph()}.
+     */
+    @Override
+    public LoopNestingForest<String> getLoopNestingForest() {
+        return getCompactGraph().getLoopNestingForest();
+    }
+
+    /**
+     * @return strongly connected components of the CFG, indexed by ids of {@link #getCompactGraph()}.
+     */
+    @Override
+    public StronglyConnectedComponents<String> getStronglyConnectedComponents() {
+        return getCompactGraph().getStronglyConnectedComponents();
+    }
+
+    /**
+     * @return reachability index of the CFG, indexed by ids of {@link #getCompactGraph()}.
+     */
+    @Override
+    public ReachabilityIndex<String> getReachabilityIndex() {
+        return getCompactGraph().getReachabilityIndex();
+    }
+
+    @Override
+    public void addEdge(String nodeFrom, String nodeTo, String label) {
+        if (selfLoopLines != null && nodeFrom.equals(nodeTo)) {
+            selfLoopLines.add(nodeFrom);
+        }
+        addGraphEdge(nodeFrom, nodeTo, label);
+    }
+
+    /**
+     * Adds an edge without recording it as a loop. Used for fall-through edges, which are self edges when both
+     * statements are on the same line.
+     */
+    private void addGraphEdge(String nodeFrom, String nodeTo, String label) {
+        if (compactBuilder != null) {
+            compactBuilder.addEdge(nodeFrom, nodeTo, label);
+            return;
+        }
+        super.addEdge(nodeFrom, nodeTo, label);
+    }
+
+    private void construct(ConstructionMode mode) {
+        defUseBuilder = new DefUseIndex.Builder();
+        selfLoopLines = new HashSet<>();
+        assignedValues = new HashMap<>();
+        criticalLines = new HashSet<>();
+        escapingVariables = new HashSet<>();
+        Unit[] units = mode == ConstructionMode.UNIT_GRAPH ? constructFromUnitGraph() : constructFromPatterns();
+        collectUses(units);
+        forgetBranchingLines();
+    }
+
+    /**
+     * Adds the edges of the {@code EnhancedUnitGraph}, see {@link UnitGraphEdges}.
+     *
+     * @return units of the body.
+     */
+    private Unit[] constructFromUnitGraph() {
+        metrics.startPhase(Phase.UNIT_GRAPH);
+        UnitGraphEdges edges = new UnitGraphEdges(body);
+
+        metrics.startPhase(Phase.EDGES);
+        edges.addEdges((from, to, label, fallThrough) -> {
+            if (fallThrough) {
+                addGraphEdge(from, to, label);
+            } else {
+                addEdge(from, to, label);
+            }
+        });
+        Unit[] arrayOfUnits = body.getUnits().toArray(new Unit[body.getUnits().size()]);
+        for (Unit unit : arrayOfUnits) {
+            int lineNum = UnitGraphEdges.lineNumber(unit);
+            if (lineNum >= 0) {
+                collectDefinition(unit, lineNum);
+            }
+        }
+        return arrayOfUnits;
+    }
+
+    /**
+     * Adds the edges by matching the Jimple shapes of branches, switches and string switches.
+     *
+     * @return units of the body, in which units skipped by the matching are replaced by the units before them.
+     */
+    private Unit[] constructFromPatterns() {
+        Unit[] arrayOfUnits = body.getUnits().toArray(new Unit[body.getUnits().size()]);
+
+        Set<Integer> returnStmts = new HashSet<>();
+
+        Integer firstLine = null;
+
+        // Unit graph is only used for debug output. It inserts nops into the body it is built over, so it is built
+        // over a copy, whose units are looked up by those of the body.
+        boolean debug = LOGGER.isLoggable(Level.FINE);
+        EnhancedUnitGraph graph = null;
+        Map<Unit, Unit> copies = null;
+        if (debug) {
+            metrics.startPhase(Phase.UNIT_GRAPH);
+            Body copy = (Body) body.clone();
+            copies = new IdentityHashMap<>(arrayOfUnits.length);
+            Iterator<Unit> copyUnits = copy.getUnits().iterator();
+            for (Unit unit : arrayOfUnits) {
+                copies.put(unit, copyUnits.next());
+            }
+            graph = new EnhancedUnitGraph(copy);
+        }
+
+        metrics.startPhase(Phase.EDGES);
+        for (int i = 0; i < arrayOfUnits.length; i++) {
+            // Allows batch runs to abandon methods which exceeded their time budget.
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException(
+                        "Construction of CFG for " + sootMethod.getSignature() + " interrupted");
+            }
+
+            Unit unit = arrayOfUnits[i];
+
+            // If a line has no line number attached, it's skipped.
+            if (!unit.hasTag(LINE_NUMBER_TAG)) {
+                continue;
+            }
+
+
+            int lineNum = Integer.parseInt(unit.getTag(LINE_NUMBER_TAG).toString());
+
+            if (unit instanceof JAssignStmt) {
+                List<ValueBox> boxes = unit.getUseBoxes();
+                if (boxes != null && boxes.size() == 3) {
+                    ValueBox first = boxes.get(0);
+                    if (first instanceof RValueBox) {
+                        if (i - 4 > 0) {
+                            if (arrayOfUnits[i - 1] instanceof JIfStmt) {
+                                if (arrayOfUnits[i - 2] instanceof JAssignStmt) {
+                                    List<ValueBox> test = arrayOfUnits[i - 2].getDefBoxes();
+                                    if (test != null && test.size() > 0) {
+                                        if (test.get(0).getValue().toString()
+                                                .equals(boxes.get(2).getValue().toString())) {
+                                            arrayOfUnits[i] = arrayOfUnits[i - 1];
+                                            continue;
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (firstLine == null) {
+                firstLine = lineNum;
+                addEdge(ENTRY, firstLine.toString(), null);
+            }
+
+            if (unit instanceof JIfStmt) {
+                JIfStmt ifStmt = (JIfStmt) unit;
+                Stmt target = ifStmt.getTarget();
+                int targetLine = Integer.parseInt(target.getTag(LINE_NUMBER_TAG).toString());
+
+                if (debug) {
+                    for (Unit pred : graph.getPredsOf(copies.get(unit))) {
+                        LOGGER.fine("predecessor " + pred.getJavaSourceStartLineNumber() + ": " + pred);
+                    }
+                    for (Unit succ : graph.getSuccsOf(copies.get(unit))) {
+                        LOGGER.fine("successor " + succ.getJavaSourceStartLineNumber() + ": " + succ);
+                    }
+                }
+                addEdge(Integer.toString(lineNum),
+                        Integer.toString(targetLine),
+                        ((ConditionExpr) ifStmt.getCondition()).getSymbol().trim());
+            } else if (unit instanceof JGotoStmt) {
+                JGotoStmt gotoStmt = (JGotoStmt) unit;
+                int targetLine = Integer.parseInt(gotoStmt.getTarget().getTag(LINE_NUMBER_TAG).toString());
+                addEdge(Integer.toString(lineNum), Integer.toString(targetLine), null);
+            } else if (unit instanceof JLookupSwitchStmt) {
+                JLookupSwitchStmt switchStmt = (JLookupSwitchStmt) unit;
+                boolean isStringSwitch = false;
+                if (i > 0 && arrayOfUnits[i - 1] instanceof JAssignStmt) {
+                    JAssignStmt assignStmt = (JAssignStmt) arrayOfUnits[i - 1];
+                    if (assignStmt.containsInvokeExpr()
+                            && "hashCode".equals(assignStmt.getInvokeExpr().getMethod().getName())) {
+                        String[] labels = new String[switchStmt.getTargetCount()];
+                        if (switchStmt.getDefaultTarget() instanceof JTableSwitchStmt) {
+                            JTableSwitchStmt defaultTarget = (JTableSwitchStmt) switchStmt.getDefaultTarget();
+                            for (int j = 0; j < switchStmt.getTargetCount(); j++) {
+                                Unit target = switchStmt.getTargets().get(j);
+                                if (!(target instanceof JAssignStmt)) {
+                                    break;
+                                }
+                                JAssignStmt assignStmtTarget = (JAssignStmt) target;
+                                if (assignStmtTarget.getInvokeExpr() == null
+                                        || assignStmtTarget.getInvokeExpr().getMethod() == null
+                                        || !"equals".equals(assignStmtTarget.getInvokeExpr().getMethod().getName())) {
+                                    break;
+                                }
+                                String label = assignStmtTarget.getInvokeExpr().getArgs().get(0).toString();
+                                labels[j] = label.substring(1, label.length() - 1);
+                            }
+                            for (int j = defaultTarget.getLowIndex(); j <= defaultTarget.getHighIndex(); j++) {
+                                Unit stringSwitchTarget = defaultTarget.getTargets()
+                                        .get(j - defaultTarget.getLowIndex());
+                                int branchDest = Integer
+                                        .parseInt(stringSwitchTarget.getTag(LINE_NUMBER_TAG).toString());
+                                addEdge(
+                                        Integer.toString(lineNum),
+                                        Integer.toString(branchDest),
+                                        labels[j - defaultTarget.getLowIndex()]);
+                            }
+                            Unit defaultUnit = defaultTarget.getDefaultTarget();
+                            int branchDest = Integer.parseInt(defaultUnit.getTag(LINE_NUMBER_TAG).toString());
+                            addEdge(Integer.toString(lineNum), Integer.toString(branchDest), "default");
+                            while (arrayOfUnits[i] != defaultTarget) {
+                                i++;
+                            }
+                            isStringSwitch = true;
+                        }
+                    }
+                }
+
+                if (isStringSwitch) {
+                    continue;
+                }
+
+                Unit defaultTarget = switchStmt.getDefaultTarget();
+
+                for (int j = 0; j < switchStmt.getTargetCount(); j++) {
+                    Unit target = switchStmt.getTargets().get(j);
+                    String label = switchStmt.getLookupValues().get(j).toString();
+                    if (target == null || target == defaultTarget) {
+                        continue;
+                    }
+                    int branchDest = Integer.parseInt(target.getTag(LINE_NUMBER_TAG).toString());
+
+                    addEdge(Integer.toString(lineNum), Integer.toString(branchDest), label);
+                }
+
+                int branchDest = Integer.parseInt(defaultTarget.getTag(LINE_NUMBER_TAG).toString());
+                addEdge(Integer.toString(lineNum),
+                        Integer.toString(branchDest),
+                        defaultTarget != null && defaultTarget != unit ? "default" : null);
+            } else if (unit instanceof JTableSwitchStmt) {
+                JTableSwitchStmt switchStmt = (JTableSwitchStmt) unit;
+
+                boolean fl = false;
+                if (i > 0 && arrayOfUnits[i - 1] instanceof JAssignStmt) {
+                    JAssignStmt assignStmt = (JAssignStmt) arrayOfUnits[i - 1];
+                    if (assignStmt.containsInvokeExpr()
+                            && "hashCode".equals(assignStmt.getInvokeExpr().getMethod().getName())) {
+
+                        if (switchStmt.getDefaultTarget() instanceof JTableSwitchStmt) {
+                            JTableSwitchStmt tableSwitchStmt = (JTableSwitchStmt) switchStmt.getDefaultTarget();
+                            Unit defaultTarget = tableSwitchStmt.getDefaultTarget();
+                            List<Unit> realTargets = new ArrayList<>();
+                            for (Unit target : tableSwitchStmt.getTargets()) {
+                                if (defaultTarget == target) {
+                                    continue;
+                                }
+                                realTargets.add(target);
+                            }
+
+                            int k = 0;
+                            for (int j = switchStmt.getLowIndex(); j <= switchStmt.getHighIndex(); j++) {
+                                Unit target = switchStmt.getTargets().get(j - switchStmt.getLowIndex());
+                                if (target == tableSwitchStmt) {
+                                    continue;
+                                }
+                                JAssignStmt assignStmtTarget = (JAssignStmt) target;
+
+                                if (assignStmtTarget.getInvokeExpr() == null
+                                        || assignStmtTarget.getInvokeExpr().getMethod() == null
+                                        || !"equals".equals(assignStmtTarget.getInvokeExpr().getMethod().getName())) {
+                                    fl = true;
+                                    break;
+                                }
+                                int branchDest = Integer
+                                        .parseInt(realTargets.get(k++).getTag(LINE_NUMBER_TAG).toString());
+                                String label = assignStmtTarget.getInvokeExpr().getArgs().get(0).toString();
+                                label = label.substring(1, label.length() - 1);
+                                addEdge(Integer.toString(lineNum), Integer.toString(branchDest), label);
+                            }
+
+                            int branchDest = Integer
+                                    .parseInt(defaultTarget.getTag(LINE_NUMBER_TAG).toString());
+                            addEdge(Integer.toString(lineNum), Integer.toString(branchDest), "default");
+
+
+                            fl = true;
+                            while (arrayOfUnits[i] != tableSwitchStmt) {
+                                i++;
+                            }
+                        }
+                    }
+                }
+
+                if (fl) {
+                    continue;
+                }
+
+                Unit defaultTarget = switchStmt.getDefaultTarget();
+                for (int j = switchStmt.getLowIndex(); j <= switchStmt.getHighIndex(); j++) {
+                    Unit target = switchStmt.getTargets().get(j - switchStmt.getLowIndex());
+                    if (target == null || target == defaultTarget) {
+                        continue;
+                    }
+                    int branchDest = Integer.parseInt(target.getTag(LINE_NUMBER_TAG).toString());
+                    addEdge(Integer.toString(lineNum), Integer.toString(branchDest), Integer.toString(j));
+                }
+
+                int branchDest = Integer.parseInt(defaultTarget.getTag(LINE_NUMBER_TAG).toString());
+                addEdge(Integer.toString(lineNum),
+                        Integer.toString(branchDest),
+                        defaultTarget != null && defaultTarget != unit ? "default" : null);
+            } else if (unit instanceof JReturnStmt || unit instanceof JReturnVoidStmt) {
+                returnStmts.add(lineNum);
+            }
+
+
+            Unit previousUnit = i > 0 ? arrayOfUnits[i - 1] : null;
+            if (previousUnit != null && previousUnit.fallsThrough() && previousUnit.hasTag(LINE_NUMBER_TAG)) {
+                int lineFrom = Integer.parseInt(previousUnit.getTag(LINE_NUMBER_TAG).toString());
+                String label = null;
+                if (arrayOfUnits[i - 1] instanceof JIfStmt) {
+                    label = "!" + ((ConditionExpr) ((JIfStmt) previousUnit).getCondition()).getSymbol().trim();
+                }
+                addGraphEdge(Integer.toString(lineFrom), Integer.toString(lineNum), label);
+            }
+
+            collectDefinition(unit, lineNum);
+        }
+
+
+        for (int i : returnStmts) {
+            addEdge(Integer.toString(i), EXIT, null);
+        }
+
+
+        if (firstLine == null) {
+            addEdge(ENTRY, EXIT, null);
+        }
+        return arrayOfUnits;
+    }
+
+    private void collectDefinition(Unit unit, int lineNum) {
+        if (unit instanceof JAssignStmt) {
+            JAssignStmt assignStmt = (JAssignStmt) unit;
+            Value defined = assignStmt.getDefBoxes().get(0).getValue();
+            String variableName = defined instanceof Local ? ((Local) defined).getName() : defined.toString();
+            if (variableName.indexOf('$') < 0) {
+                int split = variableName.indexOf('#');
+                if (split >= 0) {
+                    variableName = variableName.substring(0, split);
+                }
+                defUseBuilder.addDefinition(lineNum, variableName);
+                if (defined instanceof FieldRef || defined instanceof ArrayRef) {
+                    escapingVariables.add(variableName);
+                }
+                recordAssignedValue(Integer.toString(lineNum), variableName, assignStmt.getRightOp());
+            }
+        }
+    }
+
+    /**
+     * Defines the parameters at {@link #ENTRY} and collects the variables used and the critical lines.
+     */
+    private void collectUses(Unit[] arrayOfUnits) {
+        boolean debug = LOGGER.isLoggable(Level.FINE);
+        metrics.startPhase(Phase.DEF_USE);
+        if (body.getParameterLocals() != null && body.getParameterLocals().size() > 0) {
+            for (Local param : body.getParameterLocals()) {
+                defUseBuilder.addDefinition(ENTRY_LINE, param.getName());
+            }
+        }
+
+        for (Unit unit : arrayOfUnits) {
+
+            // If a line has no line number attached, it's skipped.
+            if (!unit.hasTag(LINE_NUMBER_TAG)) {
+                continue;
+            }
+
+            int lineNum = Integer.parseInt(unit.getTag(LINE_NUMBER_TAG).toString());
+
+            if (debug) {
+                LOGGER.fine(lineNum + ": " + unit + ", falls through: " + unit.fallsThrough());
+            }
+            if (isCritical(unit)) {
+                criticalLines.add(Integer.toString(lineNum));
+            }
+
+            for (ValueBox box : unit.getUseBoxes()) {
+                Value value = box.getValue();
+                if (debug) {
+                    LOGGER.fine("\t\t" + box + ": " + value);
+                }
+                // Only a local, the base of an array element or an assigned field can name a defined variable.
+                if (value instanceof ArrayRef) {
+                    value = ((ArrayRef) value).getBase();
+                }
+                int variable;
+                if (value instanceof Local) {
+                    variable = defUseBuilder.getVariableId(((Local) value).getName());
+                } else if (value instanceof FieldRef) {
+                    variable = defUseBuilder.getVariableId(value.toString());
+                } else {
+                    continue;
+                }
+                if (variable >= 0) {
+                    defUseBuilder.addUse(lineNum, variable);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Records the value of the first assignment of a variable at a line; a further assignment makes the value
+     * unknown, kept as a {@code null} value.
+     */
+    private void recordAssignedValue(String line, String variable, Value value) {
+        Map<String, Value> values = assignedValues.computeIfAbsent(line, key -> new HashMap<>());
+        boolean known = value instanceof Constant
+                || (value instanceof Local && ((Local) value).getName().indexOf('$') < 0);
+        values.put(variable, known && !values.containsKey(variable) ? value : null);
+    }
+
+    /**
+     * Forgets the values assigned at lines within which control branches, since the value a variable has at the
+     * end of such a line depends on the path taken through it. A line branches within itself if its units are
+     * not contiguous, if a unit other than its first is a jump target, or if a unit other than its last branches.
+     */
+    private void forgetBranchingLines() {
+        Set<String> seen = new HashSet<>();
+        String previousLine = null;
+        Unit previous = null;
+        for (Unit unit : body.getUnits()) {
+            int lineNum = UnitGraphEdges.lineNumber(unit);
+            String line = lineNum < 0 ? null : Integer.toString(lineNum);
+            if (line != null) {
+                boolean branches = line.equals(previousLine)
+                        ? !unit.getBoxesPointingToThis().isEmpty() || previous.branches()
+                        : !seen.add(line);
+                if (branches) {
+                    assignedValues.remove(line);
+                }
+            }
+            previousLine = line;
+            previous = unit;
+        }
+    }
+
+    /**
+     * @return {@code true} unless the statement only assigns a named local without calls, or only jumps.
+     */
+    private static boolean isCritical(Unit unit) {
+        if (unit instanceof JIdentityStmt || unit instanceof JGotoStmt || unit instanceof JNopStmt) {
+            return false;
+        }
+        if (unit instanceof JAssignStmt) {
+            JAssignStmt assignStmt = (JAssignStmt) unit;
+            Value defined = assignStmt.getLeftOp();
+            return !(defined instanceof Local) || ((Local) defined).getName().indexOf('$') >= 0
+                    || assignStmt.containsInvokeExpr();
+        }
+        return true;
+    }
+
+    public void writeToDotty(String fileName) throws IOException {
+        writeToDotty(fileName, false);
+    }
+
+    /**
+     * @param fileName    path of the DOT file.
+     * @param basicBlocks if {@code true}, writes a node per basic block instead of a node per line.
+     */
+    public void writeToDotty(String fileName, boolean basicBlocks) throws IOException {
+        try (DotGraphWriter writer = new DotGraphWriter(Paths.get(fileName))) {
+            writer.writeGraph(DOTTY_GRAPH_NAME, basicBlocks ? getBasicBlocks().getGraph() : getCompactGraph());
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Wrong number of elements.");
+            return;
+        }
+
+        CFG controlFlowGraph =
+                new CFG(args[2] /* classDirectory */, args[0] /* className */, "void main(java.lang.String[])");
+
+        try {
+            controlFlowGraph.writeToDotty(args[1]);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cfg;
+
+/**
+ * Ways of deriving the line-level edges of a {@link CFG} from the Jimple body of a method.
+ */
+public enum ConstructionMode {
+    /**
+     * Walks the units in order and matches the Jimple shapes of branches, switches and string switches, so a
+     * string switch shows up as a single branch labelled by its strings. Exceptional control flow is not followed.
+     */
+    PATTERNS,
+    /**
+     * Takes the edges of the {@code EnhancedUnitGraph} of the method in one linear pass, including labelled edges
+     * to exception handlers and edges of uncaught throws to {@link CFG#EXIT}. Switches are labelled by their case
+     * values, so a string switch shows up as the hash switch and the comparisons Jimple compiles it to.
+     */
+    UNIT_GRAPH
+}
@@ -0,0 +1,345 @@
+package cfg;
+
+import cache.CachedMethod;
+import cache.CfgCache;
+import cache.ClassFileMethods;
+import soot.Scene;
+import soot.options.Options;
+import util.DepthFirstOrder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Incremental re-analysis of an application.
+ * <p>
+ * The state holds a CFG, its depth-first orderings and the bytecode hash of every analyzed method. Given a set of
+ * changed class files, methods are diffed by their hashes (see {@link ClassFileMethods}) and only the added or
+ * changed ones are reconstructed; derived results, including exported DOT files, are patched in place. Methods of
+ * deleted classes are dropped. Classes without a changed method are not loaded into the {@code Scene} at all.
+ */
+public class IncrementalCFG {
+    private static final Logger LOGGER = Logger.getLogger(IncrementalCFG.class.getName());
+
+    private static final String STATE_GRAPHS = "state.cfgc";
+    private static final String STATE_METHODS = "methods.tsv";
+
+    private final String classPath;
+    private final File dotDirectory;
+
+    private final Map<String, String> methodHashes = new HashMap<>();
+    private final Map<String, Set<String>> classMethods = new HashMap<>();
+    private final Map<String, CFG> cfgs = new HashMap<>();
+    private final Map<String, DepthFirstOrder<String>> orderings = new HashMap<>();
+
+    /**
+     * Constructor. Creates an empty state.
+     *
+     * @param classPath    directory or jar with the class binaries.
+     * @param dotDirectory directory where a DOT file per method is kept up to date, or {@code null}.
+     */
+    public IncrementalCFG(String classPath, File dotDirectory) {
+        this.classPath = classPath;
+        this.dotDirectory = dotDirectory;
+    }
+
+    public CFG getCFG(String methodSignature) {
+        return cfgs.get(methodSignature);
+    }
+
+    public DepthFirstOrder<String> getDepthFirstOrder(String methodSignature) {
+        return orderings.get(methodSignature);
+    }
+
+    public Set<String> getMethodSignatures() {
+        return Collections.unmodifiableSet(cfgs.keySet());
+    }
+
+    /**
+     * Re-analyzes the methods of changed class files.
+     *
+     * @param changedClassFiles class files which are new or changed since the previous update.
+     * @return {@link Update} describing the patched methods.
+     */
+    public Update update(Collection<Path> changedClassFiles) throws IOException {
+        return update(changedClassFiles, Collections.emptySet());
+    }
+
+    /**
+     * Re-analyzes the methods of changed class files and drops the methods of deleted classes.
+     * <p>
+     * The state is only patched once the changed classes are loaded. A method whose CFG cannot be constructed keeps
+     * its previous CFG, if any, but not its new hash, so it is constructed again by the next update of its class.
+     *
+     * @param changedClassFiles class files which are new or changed since the previous update.
+     * @param deletedClasses    names of the classes whose class files were deleted since the previous update.
+     * @return {@link Update} describing the patched methods.
+     */
+    public Update update(Collection<Path> changedClassFiles, Collection<String> deletedClasses) throws IOException {
+        Update update = new Update();
+        Map<String, Set<String>> newClassMethods = new LinkedHashMap<>();
+        Map<String, Map<String, String>> toRebuild = new LinkedHashMap<>();
+
+        for (Path classFile : changedClassFiles) {
+            ClassFileMethods methods = ClassFileMethods.parse(Files.readAllBytes(classFile));
+            String className = methods.getClassName();
+            Map<String, String> hashes = methods.getMethodHashes();
+
+            Map<String, String> changed = new LinkedHashMap<>();
+            for (Map.Entry<String, String> method : hashes.entrySet()) {
+                if (method.getValue().equals(methodHashes.get(method.getKey()))) {
+                    update.unchanged++;
+                } else {
+                    changed.put(method.getKey(), method.getValue());
+                }
+            }
+            newClassMethods.put(className, new HashSet<>(hashes.keySet()));
+            if (!changed.isEmpty()) {
+                toRebuild.put(className, changed);
+            }
+        }
+
+        if (!toRebuild.isEmpty()) {
+            loadClasses(toRebuild.keySet());
+        }
+
+        for (String className : deletedClasses) {
+            if (!newClassMethods.containsKey(className)) {
+                newClassMethods.put(className, Collections.emptySet());
+            }
+            synchronized (CFG.SCENE_LOCK) {
+                if (Scene.v().containsClass(className)) {
+                    Scene.v().removeClass(Scene.v().getSootClass(className));
+                }
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : newClassMethods.entrySet()) {
+            for (String signature : classMethods.getOrDefault(entry.getKey(), Collections.emptySet())) {
+                if (!entry.getValue().contains(signature)) {
+                    remove(signature);
+                    update.removed.add(signature);
+                }
+            }
+            if (entry.getValue().isEmpty()) {
+                classMethods.remove(entry.getKey());
+            } else {
+                classMethods.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map<String, String> changed : toRebuild.values()) {
+            for (Map.Entry<String, String> method : changed.entrySet()) {
+                String signature = method.getKey();
+                CFG cfg;
+                try {
+                    cfg = new CFG(Scene.v().getMethod(signature));
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed: " + signature, e);
+                    update.failed.add(signature);
+                    continue;
+                }
+                (cfgs.containsKey(signature) ? update.changed : update.added).add(signature);
+                put(cfg, method.getValue());
+            }
+        }
+        return update;
+    }
+
+    /**
+     * Loads changed classes, replacing the ones loaded by an earlier update, whose bodies are outdated.
+     * <p>
+     * Once the {@code Scene} is done resolving, Soot rejects adding members to a class which is being resolved, so
+     * a class could not be loaded again. Its resolving level checks are suspended while the classes are reloaded.
+     *
+     * @param classNames names of the changed classes.
+     */
+    private void loadClasses(Collection<String> classNames) {
+        synchronized (CFG.SCENE_LOCK) {
+            for (String className : classNames) {
+                if (Scene.v().containsClass(className)) {
+                    Scene.v().removeClass(Scene.v().getSootClass(className));
+                }
+            }
+            if (!Scene.v().doneResolving()) {
+                CFG.loadClasses(classPath, classNames);
+                return;
+            }
+            boolean ignoreResolvingLevels = Options.v().ignore_resolving_levels();
+            Options.v().set_ignore_resolving_levels(true);
+            try {
+                for (String className : classNames) {
+                    Scene.v().loadClassAndSupport(className).setApplicationClass();
+                }
+            } finally {
+                Options.v().set_ignore_resolving_levels(ignoreResolvingLevels);
+            }
+        }
+    }
+
+    private void put(CFG cfg, String hash) throws IOException {
+        String signature = cfg.getMethodSignature();
+        cfgs.put(signature, cfg);
+        methodHashes.put(signature, hash);
+        orderings.put(signature, cfg.getCompactGraph().getDepthFirstOrder());
+        if (dotDirectory != null) {
+            cfg.writeToDotty(dotFile(signature).getPath());
+        }
+    }
+
+    private void remove(String signature) throws IOException {
+        cfgs.remove(signature);
+        methodHashes.remove(signature);
+        orderings.remove(signature);
+        if (dotDirectory != null) {
+            Files.deleteIfExists(dotFile(signature).toPath());
+        }
+    }
+
+    private File dotFile(String signature) {
+        return new File(dotDirectory, signature.replaceAll("[^A-Za-z0-9._-]", "_") + ".dot");
+    }
+
+    /**
+     * Saves the state into a directory.
+     *
+     * @param directory directory for the state files, created if it does not exist.
+     */
+    public void save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<CachedMethod> methods = new ArrayList<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(STATE_METHODS),
+                StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Set<String>> entry : classMethods.entrySet()) {
+                for (String signature : entry.getValue()) {
+                    CFG cfg = cfgs.get(signature);
+                    if (cfg == null) {
+                        continue;
+                    }
+                    methods.add(cfg.toCachedMethod());
+                    writer.write(entry.getKey() + "\t" + signature + "\t" + methodHashes.get(signature) + "\n");
+                }
+            }
+        }
+        CfgCache.write(directory.resolve(STATE_GRAPHS), methods);
+    }
+
+    /**
+     * Loads a state saved by {@link #save(Path)}, without Soot.
+     *
+     * @param classPath    directory or jar with the class binaries.
+     * @param dotDirectory directory where a DOT file per method is kept up to date, or {@code null}.
+     * @param directory    directory with the state files.
+     * @return {@code IncrementalCFG} with the loaded state, or an empty one if there is no saved state.
+     */
+    public static IncrementalCFG load(String classPath, File dotDirectory, Path directory) throws IOException {
+        IncrementalCFG incremental = new IncrementalCFG(classPath, dotDirectory);
+        CfgCache.Entry graphs = CfgCache.read(directory.resolve(STATE_GRAPHS));
+        Path methods = directory.resolve(STATE_METHODS);
+        if (graphs == null || !Files.isRegularFile(methods)) {
+            return incremental;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(methods, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t");
+                CachedMethod cached = graphs.read(columns[1]);
+                if (cached == null) {
+                    continue;
+                }
+                CFG cfg = new CFG(cached);
+                incremental.classMethods.computeIfAbsent(columns[0], k -> new HashSet<>()).add(columns[1]);
+                incremental.cfgs.put(columns[1], cfg);
+                incremental.methodHashes.put(columns[1], columns[2]);
+                incremental.orderings.put(columns[1], cfg.getCompactGraph().getDepthFirstOrder());
+            }
+        }
+        return incremental;
+    }
+
+    /**
+     * Methods patched by an update.
+     */
+    public static class Update {
+        private final List<String> added = new ArrayList<>();
+        private final List<String> changed = new ArrayList<>();
+        private final List<String> removed = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+        private int unchanged = 0;
+
+        public List<String> getAdded() {
+            return added;
+        }
+
+        public List<String> getChanged() {
+            return changed;
+        }
+
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        public List<String> getFailed() {
+            return failed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d added, %d changed, %d removed, %d failed, %d unchanged",
+                    added.size(), changed.size(), removed.size(), failed.size(), unchanged);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: IncrementalCFG <class directory or jar> <state directory>"
+                    + " <DOT directory or -> <changed or deleted class file>...");
+            return;
+        }
+
+        File dotDirectory = "-".equals(args[2]) ? null : new File(args[2]);
+        if (dotDirectory != null && !dotDirectory.isDirectory() && !dotDirectory.mkdirs()) {
+            System.err.println("Can not create output directory " + dotDirectory);
+            return;
+        }
+
+        Path stateDirectory = Paths.get(args[1]);
+        IncrementalCFG incremental = load(args[0], dotDirectory, stateDirectory);
+
+        // A class file which no longer exists is a deleted class, named by its path within the class directory.
+        List<Path> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        Path classDirectory = Paths.get(args[0]).toAbsolutePath();
+        for (int i = 3; i < args.length; i++) {
+            Path classFile = Paths.get(args[i]);
+            if (Files.exists(classFile)) {
+                changed.add(classFile);
+            } else if (classFile.toAbsolutePath().startsWith(classDirectory) && args[i].endsWith(".class")) {
+                String relative = classDirectory.relativize(classFile.toAbsolutePath()).toString();
+                deleted.add(relative.substring(0, relative.length() - ".class".length())
+                        .replace(File.separatorChar, '.'));
+            } else {
+                System.err.println("No such class file within " + classDirectory + ": " + classFile);
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+        Update update = incremental.update(changed, deleted);
+        System.out.printf("%s in %.2f s%n", update, (System.nanoTime() - start) / 1e9);
+
+        incremental.save(stateDirectory);
+    }
+}
@@ -0,0 +1,350 @@
+package cfg;
+
+import soot.Body;
+import soot.RefType;
+import soot.SootClass;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.ConditionExpr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.internal.JIfStmt;
+import soot.jimple.internal.JLookupSwitchStmt;
+import soot.jimple.internal.JTableSwitchStmt;
+import soot.jimple.internal.JThrowStmt;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.Tag;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.graph.pdg.EnhancedUnitGraph;
+import util.Pair;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Line-level edges of the {@code EnhancedUnitGraph} of a body, derived in one pass over its units.
+ * <p>
+ * The unit graph inserts nops into the body it is built over, so it is built over a copy and the body itself is
+ * left as it is. Without traps it has no edges beyond those of the {@code BriefUnitGraph} but a common exit, so
+ * the brief graph is built over such a body itself, sparing the copy. The line of every unit is looked up once
+ * into a table. Units without a line, i.e. identity statements and the nops the unit graph inserts before try
+ * blocks and at the exit, are bypassed: edges into such a unit are resolved to the units with a line after it,
+ * once per unit. Identity statements count as units without a line, since the {@code @caughtexception} one of a
+ * handler carries the line of an unrelated statement.
+ * <p>
+ * The unit graph enters a handler from the nop before its try block, so its edges into handlers are left out.
+ * Instead, every unit with a line within the range of a trap gets an edge to the first line of the handler,
+ * labelled by the simple names of the exceptions the handler catches, e.g. {@code "IOException|Throwable"}.
+ * Edges of an if statement are labelled by its condition as within {@link CFG}, edges of a switch by its case
+ * values and {@code default}, and the edge of an uncaught throw to {@link CFG#EXIT} by {@code throw}. A throw is
+ * uncaught unless a trap covering it catches a superclass of the thrown type, so a throw within a try block whose
+ * handlers catch only other exceptions, or only some subclasses of it, gets both its handler edges and the exit edge.
+ */
+class UnitGraphEdges {
+    private static final String LINE_NUMBER_TAG = "LineNumberTag";
+    private static final String THROW_LABEL = "throw";
+    private static final String THROWABLE = "java.lang.Throwable";
+
+    /**
+     * Receives the line-level edges.
+     */
+    interface EdgeSink {
+        /**
+         * @param fallThrough {@code true} if the edge is due to a unit falling through to the next one, rather than
+         *                    to a jump, so an edge between units of the same line is not a loop.
+         */
+        void addEdge(String from, String to, String label, boolean fallThrough);
+    }
+
+    private final String methodSignature;
+    private final UnitGraph graph;
+    private final Unit[] units;
+    private final Map<Unit, Integer> ids;
+    // Line of every unit, or null if it has none.
+    private final String[] lines;
+    private final Map<Unit, String> handlerLabels = new IdentityHashMap<>();
+    private final List<Trap> traps;
+    // Handlers of the traps covering every unit, or null if none does.
+    private final List<List<Unit>> coveringHandlers;
+    // Targets of the units without a line, resolved on first use.
+    private final List<List<Pair<String, String>>> resolved;
+    private final boolean[] resolving;
+
+    /**
+     * Constructor. Builds the unit graph over a copy of the body if the body has traps.
+     *
+     * @param body body of the method.
+     */
+    UnitGraphEdges(Body body) {
+        this.methodSignature = body.getMethod().getSignature();
+        Body graphBody;
+        if (body.getTraps().isEmpty()) {
+            graphBody = body;
+            graph = new BriefUnitGraph(graphBody);
+        } else {
+            graphBody = (Body) body.clone();
+            graph = new EnhancedUnitGraph(graphBody);
+        }
+
+        units = graphBody.getUnits().toArray(new Unit[graphBody.getUnits().size()]);
+        ids = new IdentityHashMap<>(units.length);
+        lines = new String[units.length];
+        for (int id = 0; id < units.length; id++) {
+            ids.put(units[id], id);
+            int line = units[id] instanceof IdentityStmt ? -1 : lineNumber(units[id]);
+            lines[id] = line < 0 ? null : Integer.toString(line);
+        }
+
+        traps = new ArrayList<>(graphBody.getTraps());
+        Map<Unit, Set<String>> caught = new IdentityHashMap<>();
+        coveringHandlers = new ArrayList<>(Collections.nCopies(units.length, null));
+        for (Trap trap : graphBody.getTraps()) {
+            caught.computeIfAbsent(trap.getHandlerUnit(), handler -> new TreeSet<>())
+                    .add(trap.getException().getShortName());
+            for (int id = ids.get(trap.getBeginUnit()); id < ids.get(trap.getEndUnit()); id++) {
+                if (coveringHandlers.get(id) == null) {
+                    coveringHandlers.set(id, new ArrayList<>());
+                }
+                if (!coveringHandlers.get(id).contains(trap.getHandlerUnit())) {
+                    coveringHandlers.get(id).add(trap.getHandlerUnit());
+                }
+            }
+        }
+        for (Map.Entry<Unit, Set<String>> handler : caught.entrySet()) {
+            handlerLabels.put(handler.getKey(), String.join("|", handler.getValue()));
+        }
+
+        resolved = new ArrayList<>(Collections.nCopies(units.length, null));
+        resolving = new boolean[units.length];
+    }
+
+    /**
+     * @return line number of the unit, or {@code -1} if it has none.
+     */
+    static int lineNumber(Unit unit) {
+        Tag tag = unit.getTag(LINE_NUMBER_TAG);
+        if (tag == null) {
+            return -1;
+        }
+        return tag instanceof LineNumberTag ? ((LineNumberTag) tag).getLineNumber()
+                : Integer.parseInt(tag.toString());
+    }
+
+    /**
+     * Hands all the edges to the sink, each edge between units once per label.
+     *
+     * @param sink receives the edges.
+     */
+    void addEdges(EdgeSink sink) {
+        Set<String> handlerEdges = new HashSet<>();
+        boolean hasLines = false;
+        for (Unit head : graph.getHeads()) {
+            for (Pair<String, String> target : targets(ids.get(head))) {
+                if (!CFG.EXIT.equals(target.getFirst())) {
+                    hasLines = true;
+                }
+                sink.addEdge(CFG.ENTRY, target.getFirst(), null, false);
+            }
+        }
+        if (!hasLines) {
+            sink.addEdge(CFG.ENTRY, CFG.EXIT, null, false);
+        }
+
+        for (int id = 0; id < units.length; id++) {
+            // Allows batch runs to abandon methods which exceeded their time budget.
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Construction of CFG for " + methodSignature + " interrupted");
+            }
+            if (lines[id] == null) {
+                continue;
+            }
+            Unit unit = units[id];
+            boolean isThrow = unit instanceof JThrowStmt;
+            boolean hasEdges = false;
+            Map<Integer, List<String>> caseLabels = caseLabels(unit);
+            for (Unit successor : graph.getSuccsOf(unit)) {
+                if (handlerLabels.containsKey(successor)) {
+                    // Handlers are entered from the units their traps cover, below.
+                    continue;
+                }
+                int successorId = ids.get(successor);
+                boolean fallThrough = successorId == id + 1 && unit.fallsThrough();
+                for (String label : branchLabels(unit, successor, caseLabels)) {
+                    for (Pair<String, String> target : targets(successorId)) {
+                        // Labels of handlers take precedence, a throw into a handler is not a plain throw.
+                        String handler = target.getSecond();
+                        if (isThrow && handler == null) {
+                            // The enhanced graph links a throw outside of any trap to the next unit.
+                            continue;
+                        }
+                        sink.addEdge(lines[id], target.getFirst(), handler != null ? handler : label,
+                                fallThrough && handler == null);
+                        hasEdges = true;
+                    }
+                }
+            }
+            List<Unit> handlers = coveringHandlers.get(id);
+            for (int i = 0; handlers != null && i < handlers.size(); i++) {
+                for (Pair<String, String> target : targets(ids.get(handlers.get(i)))) {
+                    // Units of a line share their edges into a handler.
+                    if (handlerEdges.add(lines[id] + '\n' + target.getFirst() + '\n' + target.getSecond())) {
+                        sink.addEdge(lines[id], target.getFirst(), target.getSecond(), false);
+                    }
+                    hasEdges = true;
+                }
+            }
+            if (isThrow ? !isCaught(id, (JThrowStmt) unit) : !hasEdges) {
+                sink.addEdge(lines[id], CFG.EXIT, isThrow ? THROW_LABEL : null, false);
+            }
+        }
+    }
+
+    /**
+     * @return whether a trap covering the throw catches every exception it may throw.
+     */
+    private boolean isCaught(int id, JThrowStmt throwStmt) {
+        Type thrown = throwStmt.getOp().getType();
+        for (Trap trap : traps) {
+            if (ids.get(trap.getBeginUnit()) <= id && id < ids.get(trap.getEndUnit())
+                    && catches(trap.getException(), thrown)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the superclasses of the thrown type. A class whose superclasses are not loaded is assumed not to be
+     * caught, so the exit edge is kept.
+     *
+     * @return whether the exception is a superclass of the thrown type.
+     */
+    private static boolean catches(SootClass exception, Type thrown) {
+        if (THROWABLE.equals(exception.getName())) {
+            return true;
+        }
+        if (!(thrown instanceof RefType)) {
+            return false;
+        }
+        SootClass type = ((RefType) thrown).getSootClass();
+        while (type != null) {
+            if (type.getName().equals(exception.getName())) {
+                return true;
+            }
+            type = type.resolvingLevel() >= SootClass.HIERARCHY && type.hasSuperclass() ? type.getSuperclass() : null;
+        }
+        return false;
+    }
+
+    /**
+     * @return lines, with the labels of the handlers entered on the way, the unit stands for as an edge target.
+     */
+    private List<Pair<String, String>> targets(int id) {
+        if (lines[id] != null) {
+            return Collections.singletonList(new Pair<>(lines[id], handlerLabels.get(units[id])));
+        }
+        List<Pair<String, String>> targets = resolved.get(id);
+        if (targets != null) {
+            return targets;
+        }
+        if (resolving[id]) {
+            // A cycle of units without lines has no line to go to.
+            return Collections.emptyList();
+        }
+        resolving[id] = true;
+        Unit unit = units[id];
+        String handler = handlerLabels.get(unit);
+        // Distinct targets, keyed by line and label.
+        Map<String, Pair<String, String>> result = new LinkedHashMap<>();
+        List<Unit> successors = graph.getSuccsOf(unit);
+        if (successors.isEmpty()) {
+            result.put(CFG.EXIT + '\n' + handler, new Pair<>(CFG.EXIT, handler));
+        }
+        for (Unit successor : successors) {
+            if (handlerLabels.containsKey(successor)) {
+                continue;
+            }
+            for (Pair<String, String> target : targets(ids.get(successor))) {
+                String label = handler != null ? handler : target.getSecond();
+                result.putIfAbsent(target.getFirst() + '\n' + label, new Pair<>(target.getFirst(), label));
+            }
+        }
+        targets = new ArrayList<>(result.values());
+        resolved.set(id, targets);
+        resolving[id] = false;
+        return targets;
+    }
+
+    /**
+     * Follows units without a line which have a single successor, such as the nop the unit graph inserts before a
+     * try block, so a jump target and the successor the unit graph gives for it compare equal.
+     *
+     * @return id of the first unit with a line, or of the last unit reached.
+     */
+    private int resolve(Unit unit) {
+        int id = ids.get(unit);
+        for (int steps = 0; lines[id] == null && steps < units.length; steps++) {
+            Unit next = null;
+            for (Unit successor : graph.getSuccsOf(units[id])) {
+                if (handlerLabels.containsKey(successor)) {
+                    continue;
+                }
+                if (next != null) {
+                    return id;
+                }
+                next = successor;
+            }
+            if (next == null) {
+                return id;
+            }
+            id = ids.get(next);
+        }
+        return id;
+    }
+
+    private List<String> branchLabels(Unit unit, Unit successor, Map<Integer, List<String>> caseLabels) {
+        if (unit instanceof JIfStmt) {
+            JIfStmt ifStmt = (JIfStmt) unit;
+            String symbol = ((ConditionExpr) ifStmt.getCondition()).getSymbol().trim();
+            return Collections.singletonList(resolve(ifStmt.getTarget()) == resolve(successor) ? symbol : "!" + symbol);
+        }
+        if (unit instanceof JThrowStmt) {
+            return Collections.singletonList(THROW_LABEL);
+        }
+        List<String> labels = caseLabels == null ? null : caseLabels.get(resolve(successor));
+        return labels != null ? labels : Collections.singletonList(null);
+    }
+
+    /**
+     * @return labels of the edges of a switch per resolved target, cases going to the default target being left
+     * out, or {@code null} if the unit is no switch.
+     */
+    private Map<Integer, List<String>> caseLabels(Unit unit) {
+        Map<Integer, List<String>> labels = new HashMap<>();
+        Unit defaultTarget;
+        if (unit instanceof JLookupSwitchStmt) {
+            JLookupSwitchStmt switchStmt = (JLookupSwitchStmt) unit;
+            defaultTarget = switchStmt.getDefaultTarget();
+            for (int j = 0; j < switchStmt.getTargetCount(); j++) {
+                addCase(labels, switchStmt.getTarget(j), defaultTarget, switchStmt.getLookupValue(j));
+            }
+        } else if (unit instanceof JTableSwitchStmt) {
+            JTableSwitchStmt switchStmt = (JTableSwitchStmt) unit;
+            defaultTarget = switchStmt.getDefaultTarget();
+            for (int j = 0; j <= switchStmt.getHighIndex() - switchStmt.getLowIndex(); j++) {
+                addCase(labels, switchStmt.getTarget(j), defaultTarget, switchStmt.getLowIndex() + j);
+            }
+        } else {
+            return null;
+        }
+        labels.computeIfAbsent(resolve(defaultTarget), target -> new ArrayList<>()).add("default");
+        return labels;
+    }
+
+    private void addCase(Map<Integer, List<String>> labels, Unit target, Unit defaultTarget, int value) {
+        if (target != null && resolve(target) != resolve(defaultTarget)) {
+            labels.computeIfAbsent(resolve(target), key -> new ArrayList<>()).add(Integer.toString(value));
+        }
+    }
+}
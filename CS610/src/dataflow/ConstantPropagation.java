@@ -0,0 +1,124 @@
+package dataflow;
+
+/**
+ * Sparse constant propagation over an {@link SsaForm}.
+ * <p>
+ * A definition is constant if the node assigns a constant to the variable, or copies another variable which is
+ * not redefined at the same node and whose value read there is constant. A phi is constant if all the operands
+ * flowing from reachable predecessors are the same constant. Anything else, including parameters and the
+ * initial values of variables, is {@link #NOT_CONSTANT}. What a node assigns is described by {@link Definitions}.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class ConstantPropagation<T> extends SparsePropagation<T, Object> {
+    /**
+     * Top of the lattice: no definition evaluated yet.
+     */
+    public static final Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    /**
+     * Bottom of the lattice: the value is not known to be constant.
+     */
+    public static final Object NOT_CONSTANT = new Object() {
+        @Override
+        public String toString() {
+            return "not constant";
+        }
+    };
+
+    /**
+     * What nodes assign to the variables they define.
+     */
+    public interface Definitions {
+        /**
+         * @param node     id of the node.
+         * @param variable id of a variable defined at the node.
+         * @return constant assigned to the variable, compared by {@code equals}, or {@code null} if none.
+         */
+        Object getConstant(int node, int variable);
+
+        /**
+         * @param node     id of the node.
+         * @param variable id of a variable defined at the node.
+         * @return id of the variable copied into the variable, or {@code -1} if none.
+         */
+        int getCopiedVariable(int node, int variable);
+    }
+
+    private final Definitions definitions;
+
+    /**
+     * Constructor. Runs the propagation.
+     *
+     * @param ssa         SSA form of the variables.
+     * @param definitions what nodes assign to the variables they define.
+     */
+    public ConstantPropagation(SsaForm<T> ssa, Definitions definitions) {
+        super(ssa);
+        this.definitions = definitions;
+        solve();
+    }
+
+    @Override
+    protected Object top() {
+        return UNDEFINED;
+    }
+
+    @Override
+    protected Object meet(Object first, Object second) {
+        if (first == UNDEFINED) {
+            return second;
+        }
+        if (second == UNDEFINED || first.equals(second)) {
+            return first;
+        }
+        return NOT_CONSTANT;
+    }
+
+    @Override
+    protected Object initial(int variable) {
+        return NOT_CONSTANT;
+    }
+
+    @Override
+    protected Object evaluate(int definition) {
+        int node = ssa.getNode(definition);
+        int variable = ssa.getVariable(definition);
+        Object constant = definitions.getConstant(node, variable);
+        if (constant != null) {
+            return constant;
+        }
+        int copied = definitions.getCopiedVariable(node, variable);
+        if (copied >= 0 && !ssa.getIndex().isDefinedAt(node, copied)) {
+            int value = ssa.getValueUsed(node, copied);
+            if (value >= 0) {
+                return getValue(value);
+            }
+        }
+        return NOT_CONSTANT;
+    }
+
+    /**
+     * @param value id of the value.
+     * @return constant of the value, or {@code null} if it is not constant.
+     */
+    public Object getConstant(int value) {
+        Object result = getValue(value);
+        return result == UNDEFINED || result == NOT_CONSTANT ? null : result;
+    }
+
+    /**
+     * @param node     id of the node.
+     * @param variable id of the variable.
+     * @return constant of the variable read at the node, or {@code null} if it is not constant or not used.
+     */
+    public Object getConstantUsed(int node, int variable) {
+        int value = ssa.getValueUsed(node, variable);
+        return value < 0 ? null : getConstant(value);
+    }
+}
@@ -0,0 +1,181 @@
+package dataflow;
+
+import util.CompactDirectedGraph;
+import util.DepthFirstOrder;
+
+import java.util.BitSet;
+
+/**
+ * Iterative dataflow analysis over a {@link CompactDirectedGraph} with {@code BitSet} lattice values.
+ * <p>
+ * Nodes are processed from a priority worklist ordered by reverse post-order in the direction of the analysis,
+ * so on reducible graphs most facts are final after the first pass. Values are kept per node in program order:
+ * {@link #getIn(int)} holds before the node and {@link #getOut(int)} after it, regardless of the direction.
+ * <p>
+ * Subclasses define the meet operator, the initial and boundary values and the transfer function, then call
+ * {@link #solve()}.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public abstract class DataflowAnalysis<T> {
+    public enum Direction {
+        FORWARD,
+        BACKWARD
+    }
+
+    protected final CompactDirectedGraph<T> graph;
+    private final Direction direction;
+
+    private final BitSet[] in;
+    private final BitSet[] out;
+
+    private int iterations = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param graph     graph over which the analysis is run.
+     * @param direction direction of the analysis.
+     */
+    protected DataflowAnalysis(CompactDirectedGraph<T> graph, Direction direction) {
+        this.graph = graph;
+        this.direction = direction;
+        this.in = new BitSet[graph.size()];
+        this.out = new BitSet[graph.size()];
+    }
+
+    /**
+     * @return {@code true} if the meet operator is union, {@code false} if it is intersection.
+     */
+    protected abstract boolean isUnionMeet();
+
+    /**
+     * Value of the nodes which have no incoming edges in the direction of the analysis, e.g. the entry node of
+     * a forward analysis.
+     *
+     * @param value empty set to be filled.
+     */
+    protected abstract void boundary(BitSet value);
+
+    /**
+     * Value of all the other nodes before they are processed; the top of the lattice.
+     *
+     * @param value empty set to be filled.
+     */
+    protected abstract void initial(BitSet value);
+
+    /**
+     * Transfer function of a node.
+     *
+     * @param node   id of the node.
+     * @param input  value flowing into the node in the direction of the analysis.
+     * @param output value flowing out of the node, to be overwritten.
+     */
+    protected abstract void transfer(int node, BitSet input, BitSet output);
+
+    /**
+     * Runs the analysis until a fixed point is reached.
+     */
+    public void solve() {
+        boolean forward = direction == Direction.FORWARD;
+        int n = graph.size();
+
+        // Input and output in the direction of the analysis.
+        BitSet[] input = forward ? in : out;
+        BitSet[] output = forward ? out : in;
+
+        for (int node = 0; node < n; node++) {
+            input[node] = new BitSet();
+            output[node] = new BitSet();
+            initial(output[node]);
+        }
+
+        DepthFirstOrder<T> order = forward
+                ? graph.getDepthFirstOrder()
+                : graph.getReversedGraph(exitNode()).getDepthFirstOrder();
+        int[] reversePostOrder = order.getReversePostOrder();
+
+        BitSet worklist = new BitSet(n);
+        worklist.set(0, n);
+
+        BitSet boundary = new BitSet();
+        boundary(boundary);
+        BitSet result = new BitSet();
+
+        for (int position = worklist.nextSetBit(0); position >= 0; position = worklist.nextSetBit(0)) {
+            worklist.clear(position);
+            int node = reversePostOrder[position];
+            iterations++;
+
+            int incoming = forward ? graph.getPredecessorCount(node) : graph.getSuccessorCount(node);
+            BitSet value = input[node];
+            if (incoming == 0) {
+                value.clear();
+                value.or(boundary);
+            } else {
+                for (int i = 0; i < incoming; i++) {
+                    int adjacent = forward ? graph.getPredecessor(node, i) : graph.getSuccessor(node, i);
+                    if (i == 0) {
+                        value.clear();
+                        value.or(output[adjacent]);
+                    } else if (isUnionMeet()) {
+                        value.or(output[adjacent]);
+                    } else {
+                        value.and(output[adjacent]);
+                    }
+                }
+            }
+
+            result.clear();
+            transfer(node, value, result);
+            if (result.equals(output[node])) {
+                continue;
+            }
+            output[node].clear();
+            output[node].or(result);
+
+            int outgoing = forward ? graph.getSuccessorCount(node) : graph.getPredecessorCount(node);
+            for (int i = 0; i < outgoing; i++) {
+                int adjacent = forward ? graph.getSuccessor(node, i) : graph.getPredecessor(node, i);
+                worklist.set(order.getReversePostOrderNumber(adjacent));
+            }
+        }
+    }
+
+    /**
+     * Node from which a backward analysis starts its traversal. By default none, in which case the traversal
+     * starts from the node with the lowest id.
+     *
+     * @return id of the exit node, or {@code -1}.
+     */
+    protected int exitNode() {
+        return -1;
+    }
+
+    /**
+     * <b>Warning: Returned set is shared, it must not be modified.</b>
+     *
+     * @param node id of the node.
+     * @return value before the node.
+     */
+    public BitSet getIn(int node) {
+        return in[node];
+    }
+
+    /**
+     * <b>Warning: Returned set is shared, it must not be modified.</b>
+     *
+     * @param node id of the node.
+     * @return value after the node.
+     */
+    public BitSet getOut(int node) {
+        return out[node];
+    }
+
+    /**
+     * @return number of node visits needed to reach the fixed point.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -0,0 +1,107 @@
+package dataflow;
+
+import util.IntArrayList;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Sparse detection of dead definitions over an {@link SsaForm}.
+ * <p>
+ * Values read at critical nodes, i.e. nodes with effects beyond the variables they define such as calls, stores,
+ * branches and returns, are live, and so are the definitions of escaping variables, e.g. fields, whose values are
+ * visible beyond the graph. A live definition makes the values read at its node live, and a live phi makes its
+ * operands live. Every def-use edge is followed at most once. A definition at a reachable node which is not live
+ * is dead: its value never reaches a critical node, though its node may still be needed for its other effects.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class DeadDefinitions<T> {
+    private final SsaForm<T> ssa;
+    private final boolean[] live;
+    private int deadCount = 0;
+
+    /**
+     * Constructor. Runs the analysis.
+     *
+     * @param ssa      SSA form of the variables.
+     * @param critical tells whether a node has effects beyond the variables it defines.
+     * @param escaping tells whether the values of a variable are visible beyond the graph.
+     */
+    public DeadDefinitions(SsaForm<T> ssa, IntPredicate critical, IntPredicate escaping) {
+        this.ssa = ssa;
+        int n = ssa.getGraph().size();
+        live = new boolean[ssa.getValueCount()];
+        boolean[] nodeReads = new boolean[n];
+        IntArrayList workList = new IntArrayList();
+
+        for (int node = 0; node < n; node++) {
+            if (critical.test(node)) {
+                nodeReads[node] = true;
+                markUses(node, workList);
+            }
+        }
+        for (int value = 0; value < live.length; value++) {
+            if (ssa.isDefinition(value) && escaping.test(ssa.getVariable(value))) {
+                mark(value, workList);
+            }
+        }
+        while (!workList.isEmpty()) {
+            int value = workList.pop();
+            if (ssa.isPhi(value)) {
+                for (int i = 0; i < ssa.getOperandCount(value); i++) {
+                    mark(ssa.getOperand(value, i), workList);
+                }
+            } else if (ssa.isDefinition(value)) {
+                int node = ssa.getNode(value);
+                if (!nodeReads[node]) {
+                    nodeReads[node] = true;
+                    markUses(node, workList);
+                }
+            }
+        }
+
+        for (int value = 0; value < live.length; value++) {
+            if (isDead(value)) {
+                deadCount++;
+            }
+        }
+    }
+
+    private void markUses(int node, IntArrayList workList) {
+        int first = ssa.getFirstUse(node);
+        for (int use = first; use < first + ssa.getUseCount(node); use++) {
+            mark(ssa.getUseValue(use), workList);
+        }
+    }
+
+    private void mark(int value, IntArrayList workList) {
+        if (value >= 0 && !live[value]) {
+            live[value] = true;
+            workList.push(value);
+        }
+    }
+
+    public SsaForm<T> getSsaForm() {
+        return ssa;
+    }
+
+    /**
+     * @param value id of the value.
+     * @return {@code true} if the value may reach a critical node.
+     */
+    public boolean isLive(int value) {
+        return live[value];
+    }
+
+    /**
+     * @param value id of the value.
+     * @return {@code true} if the value is a definition at a reachable node which never reaches a critical node.
+     */
+    public boolean isDead(int value) {
+        return ssa.isDefinition(value) && !live[value] && ssa.isReachable(ssa.getNode(value));
+    }
+
+    public int getDeadCount() {
+        return deadCount;
+    }
+}
@@ -0,0 +1,338 @@
+package dataflow;
+
+import util.CompactDirectedGraph;
+import util.IntArrayList;
+
+import java.util.*;
+
+/**
+ * Def-use and use-def chains over a {@link DefUseIndex}: which definitions of a variable reach a node using it,
+ * and which uses a definition reaches.
+ * <p>
+ * Chains are built per variable on the first query, by a walk from every definition of the variable which stops
+ * at its redefinitions. Only the chains of the most recently queried variables are kept, so memory stays bounded
+ * on huge methods. {@link #computeAll(DefUseIndex)} instead builds the chains of all the variables at once from a
+ * single reaching definitions pass, and keeps them.
+ * <p>
+ * A definition reaches a use at the same node only through a cycle, since a node uses the values reaching it.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class DefUseChains<T> {
+    /**
+     * Default number of variables whose chains are kept.
+     */
+    public static final int DEFAULT_CACHED_VARIABLES = 256;
+
+    private final DefUseIndex<T> index;
+    private final CompactDirectedGraph<T> graph;
+    private final Map<Integer, VariableChains> cache;
+
+    // Walk state, reused between variables; a node is visited if its mark equals the current walk.
+    private int[] visitMarks = null;
+    private int walk = 0;
+
+    /**
+     * Constructor. Does not build any chain.
+     *
+     * @param index           variables defined and used per node.
+     * @param cachedVariables number of variables whose chains are kept.
+     */
+    public DefUseChains(DefUseIndex<T> index, int cachedVariables) {
+        if (cachedVariables < 1) {
+            throw new IllegalArgumentException("Number of cached variables has to be positive, was "
+                    + cachedVariables);
+        }
+        this.index = index;
+        this.graph = index.getGraph();
+        this.cache = new LinkedHashMap<Integer, VariableChains>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, VariableChains> eldest) {
+                return size() > cachedVariables;
+            }
+        };
+    }
+
+    public DefUseChains(DefUseIndex<T> index) {
+        this(index, DEFAULT_CACHED_VARIABLES);
+    }
+
+    /**
+     * Builds the chains of all the variables from a single reaching definitions pass. All the chains are kept.
+     *
+     * @param index variables defined and used per node.
+     * @return {@code DefUseChains} with every variable built.
+     */
+    public static <T> DefUseChains<T> computeAll(DefUseIndex<T> index) {
+        int variableCount = index.getVariables().size();
+        DefUseChains<T> chains = new DefUseChains<>(index, Math.max(1, variableCount));
+        ReachingDefinitions<T> reaching = new ReachingDefinitions<>(index);
+
+        IntArrayList pairDefinitions = new IntArrayList();
+        IntArrayList pairUses = new IntArrayList();
+        for (int variable = 0; variable < variableCount; variable++) {
+            pairDefinitions.clear();
+            pairUses.clear();
+            int[] definitionNodes = definingNodes(index, variable);
+            int[] useNodes = usingNodes(index, variable);
+            BitSet ofVariable = reaching.getDefinitionsOf(variable);
+            for (int use = 0; use < useNodes.length; use++) {
+                BitSet in = reaching.getIn(useNodes[use]);
+                for (int definition = ofVariable.nextSetBit(0); definition >= 0;
+                     definition = ofVariable.nextSetBit(definition + 1)) {
+                    if (in.get(definition)) {
+                        int node = reaching.getDefinitionNode(definition);
+                        pairDefinitions.add(Arrays.binarySearch(definitionNodes, node));
+                        pairUses.add(use);
+                    }
+                }
+            }
+            chains.cache.put(variable,
+                    new VariableChains(variable, definitionNodes, useNodes, pairDefinitions, pairUses));
+        }
+        return chains;
+    }
+
+    private static int[] definingNodes(DefUseIndex<?> index, int variable) {
+        int[] nodes = new int[index.getDefiningNodeCount(variable)];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = index.getDefiningNode(variable, i);
+        }
+        return nodes;
+    }
+
+    private static int[] usingNodes(DefUseIndex<?> index, int variable) {
+        int[] nodes = new int[index.getUsingNodeCount(variable)];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = index.getUsingNode(variable, i);
+        }
+        return nodes;
+    }
+
+    public DefUseIndex<T> getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the chains of a variable, building them if they are not cached.
+     *
+     * @param variable id of the variable.
+     * @return {@link VariableChains} of the variable.
+     */
+    public synchronized VariableChains getChains(int variable) {
+        VariableChains chains = cache.get(variable);
+        if (chains == null) {
+            chains = build(variable);
+            cache.put(variable, chains);
+        }
+        return chains;
+    }
+
+    private VariableChains build(int variable) {
+        int[] definitionNodes = definingNodes(index, variable);
+        int[] useNodes = usingNodes(index, variable);
+        IntArrayList pairDefinitions = new IntArrayList();
+        IntArrayList pairUses = new IntArrayList();
+
+        if (visitMarks == null) {
+            visitMarks = new int[graph.size()];
+        }
+        IntArrayList stack = new IntArrayList();
+        for (int definition = 0; definition < definitionNodes.length; definition++) {
+            if (++walk == 0) {
+                Arrays.fill(visitMarks, 0);
+                walk = 1;
+            }
+            pushSuccessors(definitionNodes[definition], stack);
+            while (!stack.isEmpty()) {
+                int node = stack.pop();
+                if (index.isUsedAt(node, variable)) {
+                    pairDefinitions.add(definition);
+                    pairUses.add(Arrays.binarySearch(useNodes, node));
+                }
+                if (!index.isDefinedAt(node, variable)) {
+                    pushSuccessors(node, stack);
+                }
+            }
+        }
+        return new VariableChains(variable, definitionNodes, useNodes, pairDefinitions, pairUses);
+    }
+
+    private void pushSuccessors(int node, IntArrayList stack) {
+        for (int j = 0; j < graph.getSuccessorCount(node); j++) {
+            int successor = graph.getSuccessor(node, j);
+            if (visitMarks[successor] != walk) {
+                visitMarks[successor] = walk;
+                stack.push(successor);
+            }
+        }
+    }
+
+    /**
+     * @param node     id of the node using the variable.
+     * @param variable id of the variable.
+     * @return ids of the nodes whose definitions of the variable reach the node.
+     */
+    public int[] getReachingDefinitionNodes(int node, int variable) {
+        VariableChains chains = getChains(variable);
+        int use = chains.indexOfUse(node);
+        int[] result = new int[use < 0 ? 0 : chains.getReachingDefinitionCount(use)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = chains.getDefinitionNode(chains.getReachingDefinition(use, i));
+        }
+        return result;
+    }
+
+    /**
+     * @param node     id of the node defining the variable.
+     * @param variable id of the variable.
+     * @return ids of the nodes using the variable which the definition reaches.
+     */
+    public int[] getReachedUseNodes(int node, int variable) {
+        VariableChains chains = getChains(variable);
+        int definition = chains.indexOfDefinition(node);
+        int[] result = new int[definition < 0 ? 0 : chains.getReachedUseCount(definition)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = chains.getUseNode(chains.getReachedUse(definition, i));
+        }
+        return result;
+    }
+
+    /**
+     * @param node     node using the variable.
+     * @param variable variable name.
+     * @return nodes whose definitions of the variable reach the node.
+     */
+    public Set<T> getReachingDefinitions(T node, String variable) {
+        Set<T> result = new HashSet<>();
+        int nodeId = graph.getId(node);
+        int variableId = index.getVariables().getId(variable);
+        if (nodeId >= 0 && variableId >= 0) {
+            for (int definition : getReachingDefinitionNodes(nodeId, variableId)) {
+                result.add(graph.getNode(definition));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param node     node defining the variable.
+     * @param variable variable name.
+     * @return nodes using the variable which the definition reaches.
+     */
+    public Set<T> getReachedUses(T node, String variable) {
+        Set<T> result = new HashSet<>();
+        int nodeId = graph.getId(node);
+        int variableId = index.getVariables().getId(variable);
+        if (nodeId >= 0 && variableId >= 0) {
+            for (int use : getReachedUseNodes(nodeId, variableId)) {
+                result.add(graph.getNode(use));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Chains of a single variable. Definitions and uses are numbered by their position among the defining and
+     * using nodes of the variable, ordered by node id; both directions are kept in compressed sparse row form.
+     */
+    public static class VariableChains {
+        private final int variable;
+        private final int[] definitionNodes;
+        private final int[] useNodes;
+
+        private final int[] useOffsets;
+        private final int[] reachedUses;
+        private final int[] definitionOffsets;
+        private final int[] reachingDefinitions;
+
+        VariableChains(int variable, int[] definitionNodes, int[] useNodes,
+                       IntArrayList pairDefinitions, IntArrayList pairUses) {
+            this.variable = variable;
+            this.definitionNodes = definitionNodes;
+            this.useNodes = useNodes;
+
+            useOffsets = new int[definitionNodes.length + 1];
+            reachedUses = new int[pairDefinitions.size()];
+            fill(pairDefinitions, pairUses, useOffsets, reachedUses);
+            definitionOffsets = new int[useNodes.length + 1];
+            reachingDefinitions = new int[pairUses.size()];
+            fill(pairUses, pairDefinitions, definitionOffsets, reachingDefinitions);
+        }
+
+        private static void fill(IntArrayList rows, IntArrayList columns, int[] offsets, int[] values) {
+            for (int i = 0; i < rows.size(); i++) {
+                offsets[rows.get(i) + 1]++;
+            }
+            for (int row = 0; row + 1 < offsets.length; row++) {
+                offsets[row + 1] += offsets[row];
+            }
+            int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < rows.size(); i++) {
+                values[fill[rows.get(i)]++] = columns.get(i);
+            }
+        }
+
+        public int getVariable() {
+            return variable;
+        }
+
+        public int getDefinitionCount() {
+            return definitionNodes.length;
+        }
+
+        public int getDefinitionNode(int definition) {
+            return definitionNodes[definition];
+        }
+
+        /**
+         * @param node id of the node.
+         * @return index of the definition at the node, or a negative number if the node does not define the variable.
+         */
+        public int indexOfDefinition(int node) {
+            return Arrays.binarySearch(definitionNodes, node);
+        }
+
+        public int getUseCount() {
+            return useNodes.length;
+        }
+
+        public int getUseNode(int use) {
+            return useNodes[use];
+        }
+
+        /**
+         * @param node id of the node.
+         * @return index of the use at the node, or a negative number if the node does not use the variable.
+         */
+        public int indexOfUse(int node) {
+            return Arrays.binarySearch(useNodes, node);
+        }
+
+        public int getReachedUseCount(int definition) {
+            return useOffsets[definition + 1] - useOffsets[definition];
+        }
+
+        /**
+         * @param definition index of the definition.
+         * @param i          index among the reached uses.
+         * @return index of the use.
+         */
+        public int getReachedUse(int definition, int i) {
+            return reachedUses[useOffsets[definition] + i];
+        }
+
+        public int getReachingDefinitionCount(int use) {
+            return definitionOffsets[use + 1] - definitionOffsets[use];
+        }
+
+        /**
+         * @param use index of the use.
+         * @param i   index among the reaching definitions.
+         * @return index of the definition.
+         */
+        public int getReachingDefinition(int use, int i) {
+            return reachingDefinitions[definitionOffsets[use] + i];
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package dataflow;
+
+import util.CompactDirectedGraph;
+import util.IntArrayList;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Index of the variables defined and used per node, keyed by node ids of a {@link CompactDirectedGraph} and by
+ * variable ids of a {@link VariableNumbering}.
+ * <p>
+ * Rows are bit sets per node, and for every variable the nodes defining and using it are kept in compressed
+ * sparse row form, ordered by node id. Apart from conversions from and to names, queries do not allocate.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class DefUseIndex<T> {
+    private final CompactDirectedGraph<T> graph;
+    private final VariableNumbering variables;
+
+    private final BitSet[] defined;
+    private final BitSet[] used;
+
+    private final int[] definingOffsets;
+    private final int[] definingNodes;
+    private final int[] usingOffsets;
+    private final int[] usingNodes;
+
+    private DefUseIndex(CompactDirectedGraph<T> graph, VariableNumbering variables, BitSet[] defined, BitSet[] used) {
+        this.graph = graph;
+        this.variables = variables;
+        this.defined = defined;
+        this.used = used;
+
+        definingOffsets = new int[variables.size() + 1];
+        usingOffsets = new int[variables.size() + 1];
+        definingNodes = invert(defined, definingOffsets);
+        usingNodes = invert(used, usingOffsets);
+    }
+
+    /**
+     * Fills {@code offsets} and returns the nodes per variable, in compressed sparse row form.
+     */
+    private static int[] invert(BitSet[] rows, int[] offsets) {
+        int variableCount = offsets.length - 1;
+        for (BitSet row : rows) {
+            for (int variable = row.nextSetBit(0); variable >= 0; variable = row.nextSetBit(variable + 1)) {
+                offsets[variable + 1]++;
+            }
+        }
+        for (int variable = 0; variable < variableCount; variable++) {
+            offsets[variable + 1] += offsets[variable];
+        }
+        int[] nodes = new int[offsets[variableCount]];
+        int[] fill = Arrays.copyOf(offsets, variableCount);
+        for (int node = 0; node < rows.length; node++) {
+            BitSet row = rows[node];
+            for (int variable = row.nextSetBit(0); variable >= 0; variable = row.nextSetBit(variable + 1)) {
+                nodes[fill[variable]++] = node;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Creates an index from rows keyed by node. Only variables which are defined somewhere are numbered.
+     *
+     * @param graph            graph whose node ids key the rows.
+     * @param definedVariables variables defined per node.
+     * @param usedVariables    variables used per node.
+     * @return {@code DefUseIndex} over the graph.
+     */
+    public static <T> DefUseIndex<T> from(CompactDirectedGraph<T> graph,
+                                          Map<T, ? extends Set<String>> definedVariables,
+                                          Map<T, ? extends Set<String>> usedVariables) {
+        Set<String> names = new HashSet<>();
+        for (Set<String> row : definedVariables.values()) {
+            names.addAll(row);
+        }
+        return from(graph, definedVariables, usedVariables, new VariableNumbering(names));
+    }
+
+    /**
+     * Creates an index from rows keyed by node. Variables outside of the numbering are ignored.
+     *
+     * @param graph            graph whose node ids key the rows.
+     * @param definedVariables variables defined per node.
+     * @param usedVariables    variables used per node.
+     * @param variables        numbering of all the variables.
+     * @return {@code DefUseIndex} over the graph.
+     */
+    public static <T> DefUseIndex<T> from(CompactDirectedGraph<T> graph,
+                                          Map<T, ? extends Set<String>> definedVariables,
+                                          Map<T, ? extends Set<String>> usedVariables,
+                                          VariableNumbering variables) {
+        BitSet[] defined = new BitSet[graph.size()];
+        BitSet[] used = new BitSet[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            defined[node] = variables.toBitSet(definedVariables.get(graph.getNode(node)));
+            used[node] = variables.toBitSet(usedVariables.get(graph.getNode(node)));
+        }
+        return new DefUseIndex<>(graph, variables, defined, used);
+    }
+
+    /**
+     * Creates an index from bit set rows, e.g. rows aggregated from another index. Rows are not copied.
+     *
+     * @param graph     graph whose node ids index the rows.
+     * @param variables numbering of all the variables.
+     * @param defined   ids of the variables defined per node.
+     * @param used      ids of the variables used per node.
+     * @return {@code DefUseIndex} over the graph.
+     */
+    public static <T> DefUseIndex<T> from(CompactDirectedGraph<T> graph, VariableNumbering variables,
+                                          BitSet[] defined, BitSet[] used) {
+        if (defined.length != graph.size() || used.length != graph.size()) {
+            throw new IllegalArgumentException("Expected " + graph.size() + " rows, got " + defined.length
+                    + " defined and " + used.length + " used");
+        }
+        return new DefUseIndex<>(graph, variables, defined, used);
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    public VariableNumbering getVariables() {
+        return variables;
+    }
+
+    /**
+     * <b>Warning: Returned set is shared, it must not be modified.</b>
+     *
+     * @param node id of the node.
+     * @return ids of the variables defined at the node.
+     */
+    public BitSet getDefinedAt(int node) {
+        return defined[node];
+    }
+
+    /**
+     * <b>Warning: Returned set is shared, it must not be modified.</b>
+     *
+     * @param node id of the node.
+     * @return ids of the variables used at the node.
+     */
+    public BitSet getUsedAt(int node) {
+        return used[node];
+    }
+
+    public boolean isDefinedAt(int node, int variable) {
+        return defined[node].get(variable);
+    }
+
+    public boolean isUsedAt(int node, int variable) {
+        return used[node].get(variable);
+    }
+
+    /**
+     * @param variable id of the variable.
+     * @return number of nodes which define the variable.
+     */
+    public int getDefiningNodeCount(int variable) {
+        return definingOffsets[variable + 1] - definingOffsets[variable];
+    }
+
+    /**
+     * @param variable id of the variable.
+     * @param index    index among the defining nodes, which are ordered by id.
+     * @return id of the node.
+     */
+    public int getDefiningNode(int variable, int index) {
+        return definingNodes[definingOffsets[variable] + index];
+    }
+
+    /**
+     * @param variable id of the variable.
+     * @return number of nodes which use the variable.
+     */
+    public int getUsingNodeCount(int variable) {
+        return usingOffsets[variable + 1] - usingOffsets[variable];
+    }
+
+    /**
+     * @param variable id of the variable.
+     * @param index    index among the using nodes, which are ordered by id.
+     * @return id of the node.
+     */
+    public int getUsingNode(int variable, int index) {
+        return usingNodes[usingOffsets[variable] + index];
+    }
+
+    /**
+     * @return variables defined per node, for nodes which define at least one variable.
+     */
+    public Map<T, Set<String>> toDefinedVariables() {
+        return toRows(defined);
+    }
+
+    /**
+     * @return variables used per node, for nodes which use at least one variable.
+     */
+    public Map<T, Set<String>> toUsedVariables() {
+        return toRows(used);
+    }
+
+    private Map<T, Set<String>> toRows(BitSet[] rows) {
+        Map<T, Set<String>> result = new HashMap<>();
+        for (int node = 0; node < rows.length; node++) {
+            if (!rows[node].isEmpty()) {
+                result.put(graph.getNode(node), new HashSet<>(variables.toNames(rows[node])));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects definitions and uses during a walk over a method, before the nodes of the graph are known.
+     * <p>
+     * Rows are keyed by arbitrary int keys, e.g. line numbers, which are mapped to nodes once in {@link #build}.
+     * Variable names are interned on their first definition; a use of a variable which was not defined before is
+     * ignored, so all the definitions have to be added before the uses.
+     */
+    public static class Builder {
+        private final Map<String, Integer> variableIds = new HashMap<>();
+        private final List<String> variableNames = new ArrayList<>();
+
+        private final IntArrayList definitionKeys = new IntArrayList();
+        private final IntArrayList definitionVariables = new IntArrayList();
+        private final IntArrayList useKeys = new IntArrayList();
+        private final IntArrayList useVariables = new IntArrayList();
+
+        /**
+         * @param name variable name.
+         * @return id of the variable within the builder, or {@code -1} if it has not been defined.
+         */
+        public int getVariableId(String name) {
+            Integer id = variableIds.get(name);
+            return id == null ? -1 : id;
+        }
+
+        /**
+         * @param key  key of the node.
+         * @param name name of the defined variable.
+         */
+        public void addDefinition(int key, String name) {
+            Integer id = variableIds.get(name);
+            if (id == null) {
+                id = variableNames.size();
+                variableIds.put(name, id);
+                variableNames.add(name);
+            }
+            definitionKeys.add(key);
+            definitionVariables.add(id);
+        }
+
+        /**
+         * @param key      key of the node.
+         * @param variable id returned by {@link #getVariableId(String)}.
+         */
+        public void addUse(int key, int variable) {
+            useKeys.add(key);
+            useVariables.add(variable);
+        }
+
+        /**
+         * Creates the index. Rows whose key maps to a node outside of the graph are dropped.
+         *
+         * @param graph     graph whose node ids key the rows.
+         * @param nodeOfKey maps a key to its node.
+         * @return {@code DefUseIndex} over the graph.
+         */
+        public <T> DefUseIndex<T> build(CompactDirectedGraph<T> graph, IntFunction<T> nodeOfKey) {
+            VariableNumbering variables = new VariableNumbering(variableNames);
+            int[] variableMapping = new int[variableNames.size()];
+            for (int i = 0; i < variableMapping.length; i++) {
+                variableMapping[i] = variables.getId(variableNames.get(i));
+            }
+
+            Map<Integer, Integer> nodeIds = new HashMap<>();
+            BitSet[] defined = new BitSet[graph.size()];
+            BitSet[] used = new BitSet[graph.size()];
+            for (int node = 0; node < graph.size(); node++) {
+                defined[node] = new BitSet();
+                used[node] = new BitSet();
+            }
+            fill(defined, definitionKeys, definitionVariables, variableMapping, nodeIds, graph, nodeOfKey);
+            fill(used, useKeys, useVariables, variableMapping, nodeIds, graph, nodeOfKey);
+
+            return new DefUseIndex<>(graph, variables, defined, used);
+        }
+
+        private static <T> void fill(BitSet[] rows, IntArrayList keys, IntArrayList ids, int[] variableMapping,
+                                     Map<Integer, Integer> nodeIds, CompactDirectedGraph<T> graph,
+                                     IntFunction<T> nodeOfKey) {
+            for (int i = 0; i < keys.size(); i++) {
+                int key = keys.get(i);
+                Integer node = nodeIds.get(key);
+                if (node == null) {
+                    node = graph.getId(nodeOfKey.apply(key));
+                    nodeIds.put(key, node);
+                }
+                if (node >= 0) {
+                    rows[node].set(variableMapping[ids.get(i)]);
+                }
+            }
+        }
+    }
+}
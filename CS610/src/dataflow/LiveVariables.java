@@ -0,0 +1,99 @@
+package dataflow;
+
+import util.CompactDirectedGraph;
+
+import java.util.*;
+
+/**
+ * Live variables analysis. Bit {@code v} of a value means that variable {@code v} may be used before it is
+ * redefined.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class LiveVariables<T> extends DataflowAnalysis<T> {
+    private final VariableNumbering variables;
+    private final int exit;
+
+    private final BitSet[] used;
+    private final BitSet[] defined;
+
+    /**
+     * Constructor. Runs the analysis.
+     *
+     * @param graph            graph over which the analysis is run.
+     * @param definedVariables variables defined per node.
+     * @param usedVariables    variables used per node.
+     * @param variables        numbering of all the variables.
+     * @param exitNode         exit node of the graph, or {@code null}.
+     */
+    public LiveVariables(CompactDirectedGraph<T> graph, Map<T, ? extends Set<String>> definedVariables,
+                         Map<T, ? extends Set<String>> usedVariables, VariableNumbering variables, T exitNode) {
+        this(DefUseIndex.from(graph, definedVariables, usedVariables, variables), exitNode);
+    }
+
+    /**
+     * Constructor. Runs the analysis.
+     *
+     * @param index    variables defined and used per node, and their numbering.
+     * @param exitNode exit node of the graph, or {@code null}.
+     */
+    public LiveVariables(DefUseIndex<T> index, T exitNode) {
+        super(index.getGraph(), Direction.BACKWARD);
+        this.variables = index.getVariables();
+        this.exit = exitNode == null ? -1 : graph.getId(exitNode);
+
+        used = new BitSet[graph.size()];
+        defined = new BitSet[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            used[node] = index.getUsedAt(node);
+            defined[node] = index.getDefinedAt(node);
+        }
+
+        solve();
+    }
+
+    @Override
+    protected boolean isUnionMeet() {
+        return true;
+    }
+
+    @Override
+    protected void boundary(BitSet value) {
+    }
+
+    @Override
+    protected void initial(BitSet value) {
+    }
+
+    @Override
+    protected void transfer(int node, BitSet input, BitSet output) {
+        output.or(input);
+        output.andNot(defined[node]);
+        output.or(used[node]);
+    }
+
+    @Override
+    protected int exitNode() {
+        return exit;
+    }
+
+    public VariableNumbering getVariables() {
+        return variables;
+    }
+
+    /**
+     * @param node node of the graph.
+     * @return names of the variables live before the node.
+     */
+    public Set<String> getLiveBefore(T node) {
+        return variables.toNames(getIn(graph.getId(node)));
+    }
+
+    /**
+     * @param node node of the graph.
+     * @return names of the variables live after the node.
+     */
+    public Set<String> getLiveAfter(T node) {
+        return variables.toNames(getOut(graph.getId(node)));
+    }
+}
@@ -0,0 +1,146 @@
+package dataflow;
+
+import util.CompactDirectedGraph;
+import util.IntArrayList;
+
+import java.util.*;
+
+/**
+ * Reaching definitions analysis.
+ * <p>
+ * A definition is a pair of a node and a variable defined at that node. Definitions are numbered densely,
+ * grouped by variable, and bit {@code d} of a value means that definition {@code d} reaches the point.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class ReachingDefinitions<T> extends DataflowAnalysis<T> {
+    private final VariableNumbering variables;
+
+    private final int[] definitionNodes;
+    private final int[] definitionVariables;
+
+    // Definitions made at a node, and all definitions of each variable.
+    private final BitSet[] generated;
+    private final BitSet[] definitionsOfVariable;
+
+    /**
+     * Constructor. Runs the analysis.
+     *
+     * @param graph            graph over which the analysis is run.
+     * @param definedVariables variables defined per node.
+     * @param variables        numbering of all the variables.
+     */
+    public ReachingDefinitions(CompactDirectedGraph<T> graph, Map<T, ? extends Set<String>> definedVariables,
+                               VariableNumbering variables) {
+        this(DefUseIndex.from(graph, definedVariables, Collections.emptyMap(), variables));
+    }
+
+    /**
+     * Constructor. Runs the analysis.
+     *
+     * @param index variables defined per node, and their numbering.
+     */
+    public ReachingDefinitions(DefUseIndex<T> index) {
+        super(index.getGraph(), Direction.FORWARD);
+        this.variables = index.getVariables();
+
+        BitSet[] definedAt = new BitSet[graph.size()];
+        int count = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            definedAt[node] = index.getDefinedAt(node);
+            count += definedAt[node].cardinality();
+        }
+
+        definitionNodes = new int[count];
+        definitionVariables = new int[count];
+        generated = new BitSet[graph.size()];
+        definitionsOfVariable = new BitSet[variables.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            generated[node] = new BitSet(count);
+        }
+
+        int definition = 0;
+        for (int variable = 0; variable < variables.size(); variable++) {
+            definitionsOfVariable[variable] = new BitSet(count);
+            for (int node = 0; node < graph.size(); node++) {
+                if (!definedAt[node].get(variable)) {
+                    continue;
+                }
+                definitionNodes[definition] = node;
+                definitionVariables[definition] = variable;
+                definitionsOfVariable[variable].set(definition);
+                generated[node].set(definition);
+                definition++;
+            }
+        }
+
+        solve();
+    }
+
+    @Override
+    protected boolean isUnionMeet() {
+        return true;
+    }
+
+    @Override
+    protected void boundary(BitSet value) {
+    }
+
+    @Override
+    protected void initial(BitSet value) {
+    }
+
+    @Override
+    protected void transfer(int node, BitSet input, BitSet output) {
+        output.or(input);
+        BitSet gen = generated[node];
+        for (int definition = gen.nextSetBit(0); definition >= 0; definition = gen.nextSetBit(definition + 1)) {
+            output.andNot(definitionsOfVariable[definitionVariables[definition]]);
+        }
+        output.or(gen);
+    }
+
+    public int getDefinitionCount() {
+        return definitionNodes.length;
+    }
+
+    public int getDefinitionNode(int definition) {
+        return definitionNodes[definition];
+    }
+
+    public int getDefinitionVariable(int definition) {
+        return definitionVariables[definition];
+    }
+
+    public VariableNumbering getVariables() {
+        return variables;
+    }
+
+    /**
+     * <b>Warning: Returned set is shared, it must not be modified.</b>
+     *
+     * @param variable id of the variable.
+     * @return ids of all the definitions of the variable.
+     */
+    public BitSet getDefinitionsOf(int variable) {
+        return definitionsOfVariable[variable];
+    }
+
+    /**
+     * @param node     id of the node.
+     * @param variable id of the variable.
+     * @return ids of the nodes whose definitions of the variable reach the node.
+     */
+    public int[] getReachingDefinitionNodes(int node, int variable) {
+        BitSet reaching = getIn(node);
+        BitSet ofVariable = definitionsOfVariable[variable];
+        IntArrayList result = new IntArrayList();
+        for (int definition = ofVariable.nextSetBit(0); definition >= 0;
+             definition = ofVariable.nextSetBit(definition + 1)) {
+            if (reaching.get(definition)) {
+                result.add(definitionNodes[definition]);
+            }
+        }
+        return result.toArray();
+    }
+}
@@ -0,0 +1,139 @@
+package dataflow;
+
+import util.IntArrayList;
+
+import java.util.Objects;
+
+/**
+ * Sparse propagation of lattice values over the values of an {@link SsaForm}.
+ * <p>
+ * Every value starts at the top of the lattice. A phi is the meet of its operands, an initial value is given by
+ * {@link #initial(int)}, and a definition is evaluated by {@link #evaluate(int)} from the values read at its
+ * node. When a value changes, only the phis reading it and the definitions at the nodes reading it are
+ * evaluated again, so each def-use edge is followed at most once per lowering of its value, rather than every
+ * node being revisited for every variable.
+ * <p>
+ * The lattice has to be of finite height and the functions monotone; values are compared with
+ * {@link Object#equals(Object)}.
+ *
+ * @param <T> type of information stored within a node.
+ * @param <L> type of lattice values.
+ */
+public abstract class SparsePropagation<T, L> {
+    protected final SsaForm<T> ssa;
+    private final Object[] values;
+    private int evaluations = 0;
+
+    /**
+     * Constructor. Does not run the propagation.
+     *
+     * @param ssa SSA form whose values are propagated.
+     */
+    protected SparsePropagation(SsaForm<T> ssa) {
+        this.ssa = ssa;
+        this.values = new Object[ssa.getValueCount()];
+    }
+
+    /**
+     * @return top of the lattice, the value of everything not evaluated yet.
+     */
+    protected abstract L top();
+
+    /**
+     * @return greatest lower bound of two lattice values.
+     */
+    protected abstract L meet(L first, L second);
+
+    /**
+     * @param variable id of the variable.
+     * @return lattice value of the initial value of the variable.
+     */
+    protected abstract L initial(int variable);
+
+    /**
+     * Evaluates a definition, reading the current values of the uses at its node through {@link #getValue(int)}.
+     *
+     * @param definition id of the definition value.
+     * @return lattice value of the definition.
+     */
+    protected abstract L evaluate(int definition);
+
+    /**
+     * Runs the propagation until a fixed point is reached.
+     */
+    public void solve() {
+        int valueCount = ssa.getValueCount();
+        L top = top();
+        for (int value = 0; value < valueCount; value++) {
+            values[value] = top;
+        }
+        boolean[] queued = new boolean[valueCount];
+        IntArrayList workList = new IntArrayList(valueCount);
+        for (int value = valueCount - 1; value >= 0; value--) {
+            queued[value] = true;
+            workList.push(value);
+        }
+
+        while (!workList.isEmpty()) {
+            int value = workList.pop();
+            queued[value] = false;
+            evaluations++;
+            L updated = compute(value);
+            if (Objects.equals(updated, values[value])) {
+                continue;
+            }
+            values[value] = updated;
+
+            for (int i = 0; i < ssa.getReadingPhiCount(value); i++) {
+                int phi = ssa.getReadingPhi(value, i);
+                if (!queued[phi]) {
+                    queued[phi] = true;
+                    workList.push(phi);
+                }
+            }
+            for (int i = 0; i < ssa.getReadingUseCount(value); i++) {
+                int node = ssa.getUseNode(ssa.getReadingUse(value, i));
+                for (int j = 0; j < ssa.getDefinitionCount(node); j++) {
+                    int definition = ssa.getDefinition(node, j);
+                    if (!queued[definition]) {
+                        queued[definition] = true;
+                        workList.push(definition);
+                    }
+                }
+            }
+        }
+    }
+
+    private L compute(int value) {
+        if (ssa.isInitialValue(value)) {
+            return initial(ssa.getVariable(value));
+        }
+        if (ssa.isDefinition(value)) {
+            return evaluate(value);
+        }
+        L result = top();
+        for (int i = 0; i < ssa.getOperandCount(value); i++) {
+            int operand = ssa.getOperand(value, i);
+            if (operand >= 0) {
+                result = meet(result, getValue(operand));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param value id of the value.
+     * @return current lattice value; after {@link #solve()} the fixed point.
+     */
+    @SuppressWarnings("unchecked")
+    public L getValue(int value) {
+        return (L) values[value];
+    }
+
+    /**
+     * @return number of values evaluated until the fixed point was reached.
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+}
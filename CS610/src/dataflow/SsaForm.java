@@ -0,0 +1,509 @@
+package dataflow;
+
+import util.CompactDirectedGraph;
+import util.DominatorTree;
+import util.IntArrayList;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Static single assignment form of the variables of a {@link DefUseIndex}.
+ * <p>
+ * Phi functions are placed at the iterated dominance frontiers of the nodes defining a variable, for variables
+ * which are used at all, and values are renamed by a walk over the dominator tree. Every definition, phi
+ * function and initial value of a variable becomes a value with an int id:
+ * <ul>
+ * <li>ids below {@link #getVariableCount()} are the initial values, reaching uses which no definition reaches
+ * on some path; the initial value of variable {@code v} has id {@code v},</li>
+ * <li>then the definitions, a value per node and variable defined at it, ordered by node,</li>
+ * <li>then the phi functions, ordered by node.</li>
+ * </ul>
+ * A node uses the values reaching it, so a node which uses and defines a variable uses the previous value.
+ * <p>
+ * Uses are numbered by node too, and the value each use reads is stored, so use-def lookups are O(1). In the
+ * other direction, the uses and phi operands reading every value are kept in compressed sparse row form, which
+ * lets sparse analyses such as {@link SparsePropagation} run in time proportional to the def-use edges. Nodes
+ * not reachable from the entry node are not renamed: their uses and the phi operands flowing from them read no
+ * value, {@code -1}.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class SsaForm<T> {
+    private final DefUseIndex<T> index;
+    private final CompactDirectedGraph<T> graph;
+    private final int variableCount;
+    private final int definitionCount;
+
+    // Variable and node of every value; initial values are at the entry node.
+    private final int[] valueVariables;
+    private final int[] valueNodes;
+
+    private final int[] nodeDefinitionOffsets;
+    private final int[] nodePhiOffsets;
+    // Operand values of every phi, one per predecessor of its node.
+    private final int[] phiOperandOffsets;
+    private final int[] phiOperands;
+
+    // Nodes reachable from the entry node, which are the ones renamed.
+    private final boolean[] reachable;
+
+    private final int[] nodeUseOffsets;
+    private final int[] useNodes;
+    private final int[] useVariables;
+    private final int[] useValues;
+
+    // Uses and phis reading every value, in compressed sparse row form.
+    private final int[] readingUseOffsets;
+    private final int[] readingUses;
+    private final int[] readingPhiOffsets;
+    private final int[] readingPhis;
+
+    /**
+     * Constructor. Places phi functions and renames the values.
+     *
+     * @param index      variables defined and used per node.
+     * @param dominators dominator tree of the graph of the index.
+     */
+    public SsaForm(DefUseIndex<T> index, DominatorTree<T> dominators) {
+        if (dominators.getGraph() != index.getGraph()) {
+            throw new IllegalArgumentException("Dominator tree is not built over the graph of the index");
+        }
+        this.index = index;
+        this.graph = index.getGraph();
+        this.variableCount = index.getVariables().size();
+        int n = graph.size();
+
+        nodeDefinitionOffsets = new int[n + 1];
+        nodeUseOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            nodeDefinitionOffsets[node + 1] = nodeDefinitionOffsets[node] + index.getDefinedAt(node).cardinality();
+            nodeUseOffsets[node + 1] = nodeUseOffsets[node] + index.getUsedAt(node).cardinality();
+        }
+        definitionCount = nodeDefinitionOffsets[n];
+
+        IntArrayList phiNodes = new IntArrayList();
+        IntArrayList phiVariables = new IntArrayList();
+        placePhis(dominators, phiNodes, phiVariables);
+
+        // Phis ordered by node; within a node they are already ordered by variable.
+        nodePhiOffsets = new int[n + 1];
+        for (int i = 0; i < phiNodes.size(); i++) {
+            nodePhiOffsets[phiNodes.get(i) + 1]++;
+        }
+        for (int node = 0; node < n; node++) {
+            nodePhiOffsets[node + 1] += nodePhiOffsets[node];
+        }
+        int phiCount = phiNodes.size();
+        int[] phiFill = Arrays.copyOf(nodePhiOffsets, n);
+        int firstPhi = variableCount + definitionCount;
+        int valueCount = firstPhi + phiCount;
+        valueVariables = new int[valueCount];
+        valueNodes = new int[valueCount];
+        for (int variable = 0; variable < variableCount; variable++) {
+            valueVariables[variable] = variable;
+            valueNodes[variable] = dominators.getRoot();
+        }
+        for (int node = 0; node < n; node++) {
+            BitSet defined = index.getDefinedAt(node);
+            int value = variableCount + nodeDefinitionOffsets[node];
+            for (int variable = defined.nextSetBit(0); variable >= 0; variable = defined.nextSetBit(variable + 1)) {
+                valueVariables[value] = variable;
+                valueNodes[value++] = node;
+            }
+        }
+        for (int i = 0; i < phiCount; i++) {
+            int value = firstPhi + phiFill[phiNodes.get(i)]++;
+            valueVariables[value] = phiVariables.get(i);
+            valueNodes[value] = phiNodes.get(i);
+        }
+
+        phiOperandOffsets = new int[phiCount + 1];
+        for (int phi = 0; phi < phiCount; phi++) {
+            phiOperandOffsets[phi + 1] = phiOperandOffsets[phi]
+                    + graph.getPredecessorCount(valueNodes[firstPhi + phi]);
+        }
+        phiOperands = new int[phiOperandOffsets[phiCount]];
+        Arrays.fill(phiOperands, -1);
+        useNodes = new int[nodeUseOffsets[n]];
+        useVariables = new int[nodeUseOffsets[n]];
+        useValues = new int[nodeUseOffsets[n]];
+        Arrays.fill(useValues, -1);
+        for (int node = 0; node < n; node++) {
+            BitSet used = index.getUsedAt(node);
+            int use = nodeUseOffsets[node];
+            for (int variable = used.nextSetBit(0); variable >= 0; variable = used.nextSetBit(variable + 1)) {
+                useNodes[use] = node;
+                useVariables[use++] = variable;
+            }
+        }
+
+        reachable = new boolean[n];
+        rename(dominators);
+
+        readingUseOffsets = new int[valueCount + 1];
+        readingUses = invert(useValues, readingUseOffsets, null);
+        readingPhiOffsets = new int[valueCount + 1];
+        readingPhis = invert(phiOperands, readingPhiOffsets, phiOperandOffsets);
+    }
+
+    /**
+     * Places a phi for every variable used somewhere at the iterated dominance frontier of its definitions.
+     */
+    private void placePhis(DominatorTree<T> dominators, IntArrayList phiNodes, IntArrayList phiVariables) {
+        int n = graph.size();
+        // Nodes are marked with the variable they last got a phi or were queued for, plus one.
+        int[] hasPhi = new int[n];
+        int[] queued = new int[n];
+        IntArrayList workList = new IntArrayList();
+        for (int variable = 0; variable < variableCount; variable++) {
+            if (index.getUsingNodeCount(variable) == 0) {
+                continue;
+            }
+            int mark = variable + 1;
+            for (int i = 0; i < index.getDefiningNodeCount(variable); i++) {
+                int node = index.getDefiningNode(variable, i);
+                queued[node] = mark;
+                workList.push(node);
+            }
+            while (!workList.isEmpty()) {
+                int node = workList.pop();
+                for (int j = 0; j < dominators.getFrontierSize(node); j++) {
+                    int frontier = dominators.getFrontier(node, j);
+                    if (hasPhi[frontier] == mark) {
+                        continue;
+                    }
+                    hasPhi[frontier] = mark;
+                    phiNodes.add(frontier);
+                    phiVariables.add(variable);
+                    if (queued[frontier] != mark) {
+                        queued[frontier] = mark;
+                        workList.push(frontier);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the dominator tree, keeping the current value of every variable on a stack per variable.
+     */
+    private void rename(DominatorTree<T> dominators) {
+        int root = dominators.getRoot();
+        if (root < 0) {
+            return;
+        }
+        int n = graph.size();
+        int firstPhi = variableCount + definitionCount;
+
+        // Predecessor slots per node: the operand index a node fills in each phi of its successors.
+        int[] slotOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            for (int k = 0; k < graph.getPredecessorCount(node); k++) {
+                slotOffsets[graph.getPredecessor(node, k) + 1]++;
+            }
+        }
+        for (int node = 0; node < n; node++) {
+            slotOffsets[node + 1] += slotOffsets[node];
+        }
+        int[] slotTargets = new int[slotOffsets[n]];
+        int[] slotIndices = new int[slotOffsets[n]];
+        int[] slotFill = Arrays.copyOf(slotOffsets, n);
+        for (int node = 0; node < n; node++) {
+            for (int k = 0; k < graph.getPredecessorCount(node); k++) {
+                int slot = slotFill[graph.getPredecessor(node, k)]++;
+                slotTargets[slot] = node;
+                slotIndices[slot] = k;
+            }
+        }
+
+        IntArrayList[] current = new IntArrayList[variableCount];
+        for (int variable = 0; variable < variableCount; variable++) {
+            current[variable] = new IntArrayList(4);
+            current[variable].push(variable);
+        }
+        // Variables pushed so far, popped again when the walk leaves the subtree of the node pushing them.
+        IntArrayList pushed = new IntArrayList();
+        IntArrayList stack = new IntArrayList();
+        IntArrayList pushedBefore = new IntArrayList();
+        int[] nextChild = new int[n];
+        stack.push(root);
+        pushedBefore.push(0);
+        enter(root, firstPhi, current, pushed, slotOffsets, slotTargets, slotIndices);
+
+        while (!stack.isEmpty()) {
+            int node = stack.peek();
+            if (nextChild[node] < dominators.getChildCount(node)) {
+                int child = dominators.getChild(node, nextChild[node]++);
+                stack.push(child);
+                pushedBefore.push(pushed.size());
+                enter(child, firstPhi, current, pushed, slotOffsets, slotTargets, slotIndices);
+                continue;
+            }
+            stack.pop();
+            int before = pushedBefore.pop();
+            while (pushed.size() > before) {
+                current[pushed.pop()].pop();
+            }
+        }
+    }
+
+    private void enter(int node, int firstPhi, IntArrayList[] current, IntArrayList pushed,
+                       int[] slotOffsets, int[] slotTargets, int[] slotIndices) {
+        reachable[node] = true;
+        for (int value = firstPhi + nodePhiOffsets[node]; value < firstPhi + nodePhiOffsets[node + 1]; value++) {
+            current[valueVariables[value]].push(value);
+            pushed.push(valueVariables[value]);
+        }
+        for (int use = nodeUseOffsets[node]; use < nodeUseOffsets[node + 1]; use++) {
+            useValues[use] = current[useVariables[use]].peek();
+        }
+        for (int i = nodeDefinitionOffsets[node]; i < nodeDefinitionOffsets[node + 1]; i++) {
+            int value = variableCount + i;
+            current[valueVariables[value]].push(value);
+            pushed.push(valueVariables[value]);
+        }
+        for (int slot = slotOffsets[node]; slot < slotOffsets[node + 1]; slot++) {
+            int successor = slotTargets[slot];
+            for (int phi = nodePhiOffsets[successor]; phi < nodePhiOffsets[successor + 1]; phi++) {
+                phiOperands[phiOperandOffsets[phi] + slotIndices[slot]] =
+                        current[valueVariables[firstPhi + phi]].peek();
+            }
+        }
+    }
+
+    /**
+     * Groups the positions of {@code reads} by the value read, skipping {@code -1}. With {@code phiOffsets},
+     * positions are mapped to the value of the phi whose operand they are.
+     */
+    private int[] invert(int[] reads, int[] offsets, int[] phiOffsets) {
+        int valueCount = offsets.length - 1;
+        for (int value : reads) {
+            if (value >= 0) {
+                offsets[value + 1]++;
+            }
+        }
+        for (int value = 0; value < valueCount; value++) {
+            offsets[value + 1] += offsets[value];
+        }
+        int[] result = new int[offsets[valueCount]];
+        int[] fill = Arrays.copyOf(offsets, valueCount);
+        if (phiOffsets == null) {
+            for (int position = 0; position < reads.length; position++) {
+                if (reads[position] >= 0) {
+                    result[fill[reads[position]]++] = position;
+                }
+            }
+            return result;
+        }
+        int firstPhi = variableCount + definitionCount;
+        for (int phi = 0; phi + 1 < phiOffsets.length; phi++) {
+            for (int position = phiOffsets[phi]; position < phiOffsets[phi + 1]; position++) {
+                if (reads[position] >= 0) {
+                    result[fill[reads[position]]++] = firstPhi + phi;
+                }
+            }
+        }
+        return result;
+    }
+
+    public DefUseIndex<T> getIndex() {
+        return index;
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public int getValueCount() {
+        return valueVariables.length;
+    }
+
+    /**
+     * @param node id of the node.
+     * @return {@code true} if the node is reachable from the entry node, so its uses and definitions are renamed.
+     */
+    public boolean isReachable(int node) {
+        return reachable[node];
+    }
+
+    public boolean isInitialValue(int value) {
+        return value < variableCount;
+    }
+
+    public boolean isDefinition(int value) {
+        return value >= variableCount && value < variableCount + definitionCount;
+    }
+
+    public boolean isPhi(int value) {
+        return value >= variableCount + definitionCount;
+    }
+
+    /**
+     * @param value id of the value.
+     * @return id of the variable the value is of.
+     */
+    public int getVariable(int value) {
+        return valueVariables[value];
+    }
+
+    /**
+     * @param value id of the value.
+     * @return id of the node defining the value, holding the phi, or the entry node for an initial value.
+     */
+    public int getNode(int value) {
+        return valueNodes[value];
+    }
+
+    public int getPhiCount() {
+        return phiOperandOffsets.length - 1;
+    }
+
+    /**
+     * @param node id of the node.
+     * @return number of values defined at the node, not counting phis.
+     */
+    public int getDefinitionCount(int node) {
+        return nodeDefinitionOffsets[node + 1] - nodeDefinitionOffsets[node];
+    }
+
+    /**
+     * @param node  id of the node.
+     * @param index index among the definitions of the node, which are ordered by variable.
+     * @return id of the value.
+     */
+    public int getDefinition(int node, int index) {
+        return variableCount + nodeDefinitionOffsets[node] + index;
+    }
+
+    public int getPhiCount(int node) {
+        return nodePhiOffsets[node + 1] - nodePhiOffsets[node];
+    }
+
+    /**
+     * @param node  id of the node.
+     * @param index index among the phis of the node, which are ordered by variable.
+     * @return id of the value.
+     */
+    public int getPhi(int node, int index) {
+        return variableCount + definitionCount + nodePhiOffsets[node] + index;
+    }
+
+    /**
+     * @param phi id of the phi value.
+     * @return number of operands, equal to the number of predecessors of its node.
+     */
+    public int getOperandCount(int phi) {
+        int i = phi - variableCount - definitionCount;
+        return phiOperandOffsets[i + 1] - phiOperandOffsets[i];
+    }
+
+    /**
+     * @param phi   id of the phi value.
+     * @param index index of the predecessor of the node of the phi.
+     * @return id of the value flowing from the predecessor, or {@code -1} if it is not reachable.
+     */
+    public int getOperand(int phi, int index) {
+        return phiOperands[phiOperandOffsets[phi - variableCount - definitionCount] + index];
+    }
+
+    public int getUseCount() {
+        return useValues.length;
+    }
+
+    /**
+     * @param node id of the node.
+     * @return id of the first use at the node; uses of a node are consecutive and ordered by variable.
+     */
+    public int getFirstUse(int node) {
+        return nodeUseOffsets[node];
+    }
+
+    public int getUseCount(int node) {
+        return nodeUseOffsets[node + 1] - nodeUseOffsets[node];
+    }
+
+    /**
+     * @param use id of the use.
+     * @return id of the node using the variable.
+     */
+    public int getUseNode(int use) {
+        return useNodes[use];
+    }
+
+    /**
+     * @param use id of the use.
+     * @return id of the variable used.
+     */
+    public int getUseVariable(int use) {
+        return useVariables[use];
+    }
+
+    /**
+     * @param use id of the use.
+     * @return id of the value the use reads, or {@code -1} if its node is not reachable.
+     */
+    public int getUseValue(int use) {
+        return useValues[use];
+    }
+
+    /**
+     * @param node     id of the node.
+     * @param variable id of the variable.
+     * @return id of the value of the variable read at the node, or {@code -1} if the node does not use it.
+     */
+    public int getValueUsed(int node, int variable) {
+        for (int use = nodeUseOffsets[node]; use < nodeUseOffsets[node + 1]; use++) {
+            if (useVariables[use] == variable) {
+                return useValues[use];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param value id of the value.
+     * @return number of uses reading the value, not counting phi operands.
+     */
+    public int getReadingUseCount(int value) {
+        return readingUseOffsets[value + 1] - readingUseOffsets[value];
+    }
+
+    /**
+     * @param value id of the value.
+     * @param index index among the uses reading the value.
+     * @return id of the use.
+     */
+    public int getReadingUse(int value, int index) {
+        return readingUses[readingUseOffsets[value] + index];
+    }
+
+    /**
+     * @param value id of the value.
+     * @return number of phi operands reading the value.
+     */
+    public int getReadingPhiCount(int value) {
+        return readingPhiOffsets[value + 1] - readingPhiOffsets[value];
+    }
+
+    /**
+     * @param value id of the value.
+     * @param index index among the phi operands reading the value.
+     * @return id of the phi value, repeated if the value is read by several of its operands.
+     */
+    public int getReadingPhi(int value, int index) {
+        return readingPhis[readingPhiOffsets[value] + index];
+    }
+
+    /**
+     * @param value id of the value.
+     * @return name of the variable followed by the value id, e.g. {@code x_12}.
+     */
+    public String getName(int value) {
+        return index.getVariables().getName(valueVariables[value]) + "_" + value;
+    }
+}
@@ -0,0 +1,69 @@
+package dataflow;
+
+import java.util.*;
+
+/**
+ * Dense numbering of variable names, used to index bit sets of dataflow facts.
+ */
+public class VariableNumbering {
+    private final String[] names;
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Constructor. Variables are numbered in lexicographic order, so the numbering is stable between runs.
+     *
+     * @param variables all the variables of a method.
+     */
+    public VariableNumbering(Collection<String> variables) {
+        names = new TreeSet<>(variables).toArray(new String[0]);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param name variable name.
+     * @return id of the variable, or {@code -1} if it is not numbered.
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @param variables variable names, possibly {@code null}.
+     * @return {@code BitSet} with the ids of the numbered variables among the given ones.
+     */
+    public BitSet toBitSet(Collection<String> variables) {
+        BitSet result = new BitSet(names.length);
+        if (variables != null) {
+            for (String variable : variables) {
+                int id = getId(variable);
+                if (id >= 0) {
+                    result.set(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param bits ids of variables.
+     * @return {@code Set} of the variable names.
+     */
+    public Set<String> toNames(BitSet bits) {
+        Set<String> result = new TreeSet<>();
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            result.add(names[id]);
+        }
+        return result;
+    }
+}
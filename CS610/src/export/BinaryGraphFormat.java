@@ -0,0 +1,17 @@
+package export;
+
+/**
+ * Constants of the binary edge-list format.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION}, followed by any number of graphs. Each graph is
+ * written as: name, number of nodes, node names, id of the entry node (or {@code -1}), number of labels,
+ * labels, number of edges, and a (source id, target id, label id) triple per edge. Integers are big-endian,
+ * strings are a UTF-8 length followed by UTF-8 bytes, with length {@code -1} standing for {@code null}.
+ * Label id {@code -1} means the edge has no label.
+ */
+final class BinaryGraphFormat {
+    static final int MAGIC = 0x43464742;
+    static final int VERSION = 1;
+
+    private BinaryGraphFormat() {}
+}
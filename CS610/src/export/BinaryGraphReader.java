@@ -0,0 +1,88 @@
+package export;
+
+import util.DirectedGraph;
+import util.Pair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of graphs written by {@link BinaryGraphWriter}. Graphs are loaded one at a time, so files with many
+ * graphs can be streamed.
+ */
+public class BinaryGraphReader implements Closeable {
+    private final ChannelInput input;
+
+    public BinaryGraphReader(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    public BinaryGraphReader(ReadableByteChannel channel) throws IOException {
+        input = new ChannelInput(channel, ByteBufferPool.SHARED);
+        if (input.getInt() != BinaryGraphFormat.MAGIC) {
+            input.close();
+            throw new IOException("Not a binary graph file");
+        }
+        int version = input.getInt();
+        if (version != BinaryGraphFormat.VERSION) {
+            input.close();
+            throw new IOException("Unsupported binary graph version " + version);
+        }
+    }
+
+    /**
+     * Reads the next graph.
+     *
+     * @return {@code Pair} of the graph name and the graph, or {@code null} if there are no more graphs.
+     */
+    public Pair<String, DirectedGraph<String>> readGraph() throws IOException {
+        if (input.atEnd()) {
+            return null;
+        }
+        String name = input.getString();
+
+        String[] nodes = new String[input.getInt()];
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node] = input.getString();
+        }
+        int entry = input.getInt();
+
+        String[] labels = new String[input.getInt()];
+        for (int label = 0; label < labels.length; label++) {
+            labels[label] = input.getString();
+        }
+
+        DirectedGraph<String> graph = new DirectedGraph<>();
+        int edgeCount = input.getInt();
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int[] edgeLabels = new int[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            sources[edge] = input.getInt();
+            targets[edge] = input.getInt();
+            edgeLabels[edge] = input.getInt();
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            for (int edge = 0; edge < edgeCount; edge++) {
+                // Edges of the entry node go first, so that it becomes the entry node of the read graph.
+                if ((sources[edge] == entry) == (pass == 0)) {
+                    graph.addEdge(nodes[sources[edge]], nodes[targets[edge]],
+                            edgeLabels[edge] < 0 ? null : labels[edgeLabels[edge]]);
+                }
+            }
+        }
+        for (String node : nodes) {
+            graph.addNode(node);
+        }
+        return new Pair<>(name, graph);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
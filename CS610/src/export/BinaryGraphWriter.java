@@ -0,0 +1,77 @@
+package export;
+
+import util.CompactDirectedGraph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming writer of graphs in a compact binary edge-list format, see {@link BinaryGraphFormat}.
+ * Graphs written by this class are read back with {@link BinaryGraphReader}.
+ */
+public class BinaryGraphWriter implements Closeable {
+    private final ChannelOutput output;
+
+    /**
+     * Constructor. Creates or truncates the file.
+     *
+     * @param file output file.
+     */
+    public BinaryGraphWriter(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public BinaryGraphWriter(WritableByteChannel channel) throws IOException {
+        output = new ChannelOutput(channel, ByteBufferPool.SHARED);
+        output.putInt(BinaryGraphFormat.MAGIC);
+        output.putInt(BinaryGraphFormat.VERSION);
+    }
+
+    /**
+     * Writes a graph.
+     *
+     * @param name  name of the graph, e.g. method signature.
+     * @param graph graph to be written.
+     */
+    public void writeGraph(String name, CompactDirectedGraph<String> graph) throws IOException {
+        output.putString(name);
+
+        output.putInt(graph.size());
+        for (int node = 0; node < graph.size(); node++) {
+            output.putString(graph.getNode(node));
+        }
+        output.putInt(graph.getEntry());
+
+        String[] labels = graph.getLabels();
+        output.putInt(labels.length);
+        for (String label : labels) {
+            output.putString(label);
+        }
+
+        output.putInt(graph.getEdgeCount());
+        for (int from = 0; from < graph.size(); from++) {
+            for (int j = 0; j < graph.getSuccessorCount(from); j++) {
+                output.putInt(from);
+                output.putInt(graph.getSuccessor(from, j));
+                output.putInt(graph.getSuccessorLabelId(from, j));
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes written so far.
+     */
+    public long position() {
+        return output.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,57 @@
+package export;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of direct byte buffers of a fixed capacity, shared between writers so that exporting many graphs does
+ * not allocate a buffer per file.
+ */
+public class ByteBufferPool {
+    /**
+     * Pool shared by the writers and readers of this package.
+     */
+    public static final ByteBufferPool SHARED = new ByteBufferPool(64 * 1024, 16);
+
+    private final int bufferCapacity;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor.
+     *
+     * @param bufferCapacity capacity of every buffer, in bytes.
+     * @param maxPooled      maximal number of idle buffers kept within the pool.
+     */
+    public ByteBufferPool(int bufferCapacity, int maxPooled) {
+        this.bufferCapacity = bufferCapacity;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return cleared buffer, either pooled or newly allocated.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferCapacity);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer buffer obtained from {@link #acquire()}.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferCapacity && buffers.size() < maxPooled) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+}
@@ -0,0 +1,89 @@
+package export;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered input from a channel through a pooled byte buffer, counterpart of {@link ChannelOutput}.
+ */
+class ChannelInput implements Closeable {
+    private final ReadableByteChannel channel;
+    private final ByteBufferPool pool;
+    private ByteBuffer buffer;
+
+    ChannelInput(ReadableByteChannel channel, ByteBufferPool pool) {
+        this.channel = channel;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+        buffer.flip();
+    }
+
+    /**
+     * Makes sure that at least {@code count} bytes are buffered.
+     *
+     * @return {@code false} if the channel ended before.
+     */
+    private boolean fill(int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < count) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * @return {@code true} if there are no more bytes to be read.
+     */
+    boolean atEnd() throws IOException {
+        return !fill(1);
+    }
+
+    int getInt() throws IOException {
+        if (!fill(4)) {
+            throw new EOFException();
+        }
+        return buffer.getInt();
+    }
+
+    /**
+     * @return string written by {@link ChannelOutput#putString(String)}, possibly {@code null}.
+     */
+    String getString() throws IOException {
+        int length = getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (!fill(1)) {
+                throw new EOFException();
+            }
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        pool.release(buffer);
+        buffer = null;
+        channel.close();
+    }
+}
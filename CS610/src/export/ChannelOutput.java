@@ -0,0 +1,137 @@
+package export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered output to a channel through a pooled byte buffer. Characters are encoded as UTF-8 straight into the
+ * buffer, without intermediate strings or byte arrays.
+ */
+class ChannelOutput implements Closeable {
+    private final WritableByteChannel channel;
+    private final ByteBufferPool pool;
+    private ByteBuffer buffer;
+    private long position = 0;
+
+    ChannelOutput(WritableByteChannel channel, ByteBufferPool pool) {
+        this.channel = channel;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    /**
+     * @return number of bytes written so far, including the buffered ones.
+     */
+    long position() {
+        return position + buffer.position();
+    }
+
+    void putByte(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) value);
+    }
+
+    void putInt(int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes characters encoded as UTF-8.
+     *
+     * @param text characters to be written.
+     */
+    void putChars(CharSequence text) throws IOException {
+        putChars(text, 0, text.length());
+    }
+
+    /**
+     * Writes a range of characters encoded as UTF-8.
+     *
+     * @param text  characters to be written.
+     * @param start index of the first character, inclusive.
+     * @param end   index of the last character, exclusive.
+     */
+    void putChars(CharSequence text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                putByte(c);
+            } else if (c < 0x800) {
+                putByte(0xC0 | (c >> 6));
+                putByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                putByte(0xF0 | (codePoint >> 18));
+                putByte(0x80 | ((codePoint >> 12) & 0x3F));
+                putByte(0x80 | ((codePoint >> 6) & 0x3F));
+                putByte(0x80 | (codePoint & 0x3F));
+            } else {
+                putByte(0xE0 | (c >> 12));
+                putByte(0x80 | ((c >> 6) & 0x3F));
+                putByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes, or {@code -1} for {@code null}.
+     *
+     * @param text string to be written, possibly {@code null}.
+     */
+    void putString(String text) throws IOException {
+        if (text == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(utf8Length(text));
+        putChars(text);
+    }
+
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+}
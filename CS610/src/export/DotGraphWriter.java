@@ -0,0 +1,223 @@
+package export;
+
+import util.CompactDirectedGraph;
+import util.DirectedGraph;
+import util.Pair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming writer of control flow graphs in DOT format.
+ * <p>
+ * Any number of graphs can be written into one output; each becomes a separate {@code digraph}. Edges are
+ * encoded directly into a pooled buffer of a file channel, so no string is built per edge.
+ */
+public class DotGraphWriter implements Closeable {
+    private static final String NODE_SHAPES = "node [shape = rectangle]; entry exit;\n" + "node [shape = circle];\n";
+
+    /**
+     * Order of CFG nodes: {@code entry} first, then lines and basic blocks by their numbers, e.g. {@code "9"}
+     * before {@code "12"} before {@code "12-15"}, then other nodes by name, and {@code exit} last.
+     */
+    public static final Comparator<String> LINE_ORDER = (first, second) -> {
+        int category = Integer.compare(category(first), category(second));
+        if (category != 0) {
+            return category;
+        }
+        int firstDigits = leadingDigits(first);
+        int secondDigits = leadingDigits(second);
+        if (firstDigits > 0 && secondDigits > 0) {
+            int number = Long.compare(Long.parseLong(first.substring(0, firstDigits)),
+                    Long.parseLong(second.substring(0, secondDigits)));
+            if (number != 0) {
+                return number;
+            }
+            return first.substring(firstDigits).compareTo(second.substring(secondDigits));
+        }
+        return first.compareTo(second);
+    };
+
+    private final ChannelOutput output;
+
+    /**
+     * Constructor. Creates or truncates the file.
+     *
+     * @param file output file.
+     */
+    public DotGraphWriter(Path file) throws IOException {
+        this(file, ByteBufferPool.SHARED);
+    }
+
+    public DotGraphWriter(Path file, ByteBufferPool pool) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), pool);
+    }
+
+    /**
+     * Constructor. The channel is closed together with the writer.
+     *
+     * @param channel output channel, e.g. over an in-memory stream.
+     * @param pool    pool of the output buffers.
+     */
+    public DotGraphWriter(WritableByteChannel channel, ByteBufferPool pool) {
+        output = new ChannelOutput(channel, pool);
+    }
+
+    /**
+     * Writes a graph. Name is written as is when it is a plain identifier, otherwise it is quoted.
+     *
+     * @param name  name of the {@code digraph}, e.g. method signature.
+     * @param graph graph to be written.
+     */
+    public void writeGraph(String name, CompactDirectedGraph<String> graph) throws IOException {
+        writeHeader(name);
+        for (int from = 0; from < graph.size(); from++) {
+            for (int j = 0; j < graph.getSuccessorCount(from); j++) {
+                writeEdge(graph.getNode(from), graph.getNode(graph.getSuccessor(from, j)),
+                        graph.getSuccessorLabel(from, j));
+            }
+        }
+        output.putChars("\n}\n");
+    }
+
+    /**
+     * Writes a graph with its nodes, and the edges of every node, in a stable order, so the output depends only on
+     * the nodes and edges of the graph and not on the order they were added in. Edges of a node are ordered by
+     * their targets, then by their labels.
+     *
+     * @param name      name of the {@code digraph}, e.g. method signature.
+     * @param graph     graph to be written.
+     * @param nodeOrder order of the nodes, e.g. {@link #LINE_ORDER}.
+     */
+    public void writeGraph(String name, CompactDirectedGraph<String> graph, Comparator<String> nodeOrder)
+            throws IOException {
+        int n = graph.size();
+        Integer[] nodes = new Integer[n];
+        for (int node = 0; node < n; node++) {
+            nodes[node] = node;
+        }
+        Arrays.sort(nodes, (first, second) -> nodeOrder.compare(graph.getNode(first), graph.getNode(second)));
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[nodes[i]] = i;
+        }
+        Comparator<String> labelOrder = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        writeHeader(name);
+        for (int from : nodes) {
+            Integer[] edges = new Integer[graph.getSuccessorCount(from)];
+            for (int j = 0; j < edges.length; j++) {
+                edges[j] = j;
+            }
+            Arrays.sort(edges, (first, second) -> {
+                int target = Integer.compare(ranks[graph.getSuccessor(from, first)],
+                        ranks[graph.getSuccessor(from, second)]);
+                return target != 0 ? target : labelOrder.compare(graph.getSuccessorLabel(from, first),
+                        graph.getSuccessorLabel(from, second));
+            });
+            for (int j : edges) {
+                writeEdge(graph.getNode(from), graph.getNode(graph.getSuccessor(from, j)),
+                        graph.getSuccessorLabel(from, j));
+            }
+        }
+        output.putChars("\n}\n");
+    }
+
+    /**
+     * Writes a graph. Name is written as is when it is a plain identifier, otherwise it is quoted.
+     *
+     * @param name  name of the {@code digraph}, e.g. method signature.
+     * @param graph graph to be written.
+     */
+    public void writeGraph(String name, DirectedGraph<String> graph) throws IOException {
+        writeHeader(name);
+        for (Map.Entry<String, Set<Pair<String, String>>> entry : graph.getSuccessors().entrySet()) {
+            for (Pair<String, String> toPair : entry.getValue()) {
+                writeEdge(entry.getKey(), toPair.getFirst() /* node */, toPair.getSecond() /* label */);
+            }
+        }
+        output.putChars("\n}\n");
+    }
+
+    private static int category(String node) {
+        if ("entry".equals(node)) {
+            return 0;
+        }
+        if ("exit".equals(node)) {
+            return 3;
+        }
+        return leadingDigits(node) > 0 ? 1 : 2;
+    }
+
+    private static int leadingDigits(String node) {
+        int digits = 0;
+        // At most 18 digits, which always fit into a long.
+        while (digits < node.length() && digits < 18
+                && node.charAt(digits) >= '0' && node.charAt(digits) <= '9') {
+            digits++;
+        }
+        return digits;
+    }
+
+    private void writeHeader(String name) throws IOException {
+        output.putChars("digraph ");
+        writeIdentifier(name);
+        output.putChars(" {\n");
+        output.putChars(NODE_SHAPES);
+    }
+
+    private void writeEdge(String from, String to, String label) throws IOException {
+        output.putByte('\t');
+        writeIdentifier(from);
+        output.putChars(" -> ");
+        writeIdentifier(to);
+        if (label != null) {
+            output.putChars(" [label = ");
+            writeQuoted(label);
+            output.putByte(']');
+        }
+        output.putChars(";\n");
+    }
+
+    private void writeIdentifier(String identifier) throws IOException {
+        for (int i = 0; i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_')) {
+                writeQuoted(identifier);
+                return;
+            }
+        }
+        output.putChars(identifier);
+    }
+
+    private void writeQuoted(String text) throws IOException {
+        output.putByte('"');
+        // Runs of characters which need no escaping are written at once.
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\\' && c != '\n') {
+                continue;
+            }
+            output.putChars(text, start, i);
+            output.putChars(c == '\n' ? "\\n" : c == '"' ? "\\\"" : "\\\\");
+            start = i + 1;
+        }
+        output.putChars(text, start, text.length());
+        output.putByte('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
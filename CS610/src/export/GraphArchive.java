@@ -0,0 +1,124 @@
+package export;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reader of an archive written by {@link GraphArchiveWriter}.
+ * <p>
+ * The index is read once; a single graph is then read by seeking to its offset within its shard, without reading
+ * or decompressing anything else. Shards are opened on first use and reads are positional, so graphs can be read
+ * from several threads at once.
+ */
+public class GraphArchive implements Closeable {
+    private final Path directory;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, FileChannel> shards = new HashMap<>();
+
+    /**
+     * Constructor. Reads the index of the archive.
+     *
+     * @param directory directory of the archive.
+     */
+    public GraphArchive(Path directory) throws IOException {
+        this.directory = directory;
+        try (BufferedReader index = Files.newBufferedReader(directory.resolve(GraphArchiveWriter.INDEX_FILE),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = index.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    throw new IOException("Malformed index line of archive " + directory + ": " + line);
+                }
+                entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+            }
+        }
+    }
+
+    /**
+     * @return names of the graphs, in archive order.
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Reads a single graph.
+     *
+     * @param name name of the graph.
+     * @return DOT of the graph, or {@code null} if the archive has no such graph.
+     */
+    public String read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(entry.length);
+        FileChannel shard = shard(entry.shard);
+        while (bytes.hasRemaining()) {
+            if (shard.read(bytes, entry.offset + bytes.position()) < 0) {
+                throw new EOFException("Shard " + entry.shard + " ends within graph " + name);
+            }
+        }
+        if (!entry.shard.endsWith(".gz")) {
+            return new String(bytes.array(), StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream dot = new ByteArrayOutputStream(entry.length * 4);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes.array()))) {
+            byte[] chunk = new byte[8 * 1024];
+            int count;
+            while ((count = gzip.read(chunk)) > 0) {
+                dot.write(chunk, 0, count);
+            }
+        }
+        return dot.toString("UTF-8");
+    }
+
+    private synchronized FileChannel shard(String shardName) throws IOException {
+        FileChannel shard = shards.get(shardName);
+        if (shard == null) {
+            shard = FileChannel.open(directory.resolve(shardName), StandardOpenOption.READ);
+            shards.put(shardName, shard);
+        }
+        return shard;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (FileChannel shard : shards.values()) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        shards.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static class Entry {
+        final String shard;
+        final long offset;
+        final int length;
+
+        Entry(String shard, long offset, int length) {
+            this.shard = shard;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package export;
+
+import util.CompactDirectedGraph;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Parallel writer of an archive of DOT graphs, split into shard files and indexed by graph name.
+ * <p>
+ * Graphs are rendered by a pool of workers, each into a buffer of its own, and appended by a single writer thread
+ * in the order they were submitted. Every graph is rendered with {@link DotGraphWriter#LINE_ORDER}, so the same
+ * graph always gives the same bytes. Files of the archive directory:
+ * <ul>
+ * <li>{@code graphs-00000.dot}, {@code graphs-00001.dot}, ... - shards, each a concatenation of {@code digraph}s;
+ * the next shard is started before a graph would take the current one over the shard size,</li>
+ * <li>{@code index.tsv} - a {@code <name>\t<shard>\t<offset>\t<length>} line per graph, in archive order.</li>
+ * </ul>
+ * Compressed shards are named {@code graphs-00000.dot.gz} and every graph within them is a gzip member of its
+ * own: a whole shard decompresses with any gzip tool, and a single graph decompresses on its own from its offset.
+ * Archives are read with {@link GraphArchive}.
+ */
+public class GraphArchiveWriter implements Closeable {
+    public static final String INDEX_FILE = "index.tsv";
+
+    /**
+     * Default size of a shard, in bytes.
+     */
+    public static final long DEFAULT_SHARD_SIZE = 64L * 1024 * 1024;
+
+    private static final Pattern SHARD_NAME = Pattern.compile("graphs-\\d{5,}\\.dot(\\.gz)?");
+
+    private static final Future<Rendered> END = CompletableFuture.completedFuture(null);
+
+    private final Path directory;
+    private final boolean compressed;
+    private final long shardSize;
+    private final ExecutorService renderers;
+    private final BlockingQueue<Future<Rendered>> pending;
+    private final Thread writer;
+    private final ByteBufferPool pool;
+    private final ThreadLocal<RenderBuffers> buffers = ThreadLocal.withInitial(RenderBuffers::new);
+
+    private volatile IOException failure = null;
+    private boolean closed = false;
+    private int graphCount = 0;
+    private int shardCount = 0;
+    private long byteCount = 0;
+
+    /**
+     * Constructor. Creates the directory if needed and starts the writer thread.
+     *
+     * @param directory  directory of the archive; shards and the index of an earlier archive there are deleted, so
+     *                   no stale shards are left beyond those of this one.
+     * @param compressed if {@code true}, every graph is compressed with gzip.
+     * @param shardSize  size after which the next shard is started, in bytes.
+     * @param threads    number of workers rendering graphs.
+     */
+    public GraphArchiveWriter(Path directory, boolean compressed, long shardSize, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads has to be positive, was " + threads);
+        }
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("Shard size has to be positive, was " + shardSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        deleteArchive(directory);
+        this.compressed = compressed;
+        this.shardSize = shardSize;
+        this.renderers = Executors.newFixedThreadPool(threads);
+        // Bounds the graphs rendered, but not yet written.
+        this.pending = new ArrayBlockingQueue<>(threads * 4);
+        this.pool = new ByteBufferPool(16 * 1024, threads);
+        this.writer = new Thread(this::write, "graph-archive-writer");
+        writer.start();
+    }
+
+    /**
+     * Submits a graph to be rendered and appended to the archive. Blocks while too many graphs are waiting to be
+     * written. The graph must not change until it is written.
+     *
+     * @param name  name of the graph, e.g. method signature; without tabs and line breaks.
+     * @param graph graph to be written.
+     * @throws IOException if writing an earlier graph failed.
+     */
+    public void writeGraph(String name, CompactDirectedGraph<String> graph) throws IOException {
+        if (name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Name of a graph can not contain tabs or line breaks: " + name);
+        }
+        if (closed) {
+            throw new IOException("Archive " + directory + " is closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            pending.put(renderers.submit(() -> render(name, graph)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while submitting " + name);
+        }
+    }
+
+    private Rendered render(String name, CompactDirectedGraph<String> graph) throws IOException {
+        RenderBuffers local = buffers.get();
+        local.dot.reset();
+        try (DotGraphWriter dot = new DotGraphWriter(Channels.newChannel(local.dot), pool)) {
+            dot.writeGraph(name, graph, DotGraphWriter.LINE_ORDER);
+        }
+        if (!compressed) {
+            return new Rendered(name, local.dot.toByteArray());
+        }
+        local.compressed.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(local.compressed, 8 * 1024)) {
+            local.dot.writeTo(gzip);
+        }
+        return new Rendered(name, local.compressed.toByteArray());
+    }
+
+    /**
+     * Appends rendered graphs in submission order. After a failure, the rest are drained without being written,
+     * so submitting threads never block on a dead writer.
+     */
+    private void write() {
+        FileChannel shard = null;
+        String shardName = null;
+        long offset = 0;
+        try (Writer index = Files.newBufferedWriter(directory.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+            while (true) {
+                Future<Rendered> next = pending.take();
+                if (next == END) {
+                    break;
+                }
+                Rendered rendered;
+                try {
+                    rendered = next.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Rendering of a graph failed", e.getCause());
+                }
+                if (shard == null || (offset > 0 && offset + rendered.bytes.length > shardSize)) {
+                    if (shard != null) {
+                        shard.close();
+                    }
+                    shardName = shardName(shardCount++, compressed);
+                    shard = FileChannel.open(directory.resolve(shardName), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                    offset = 0;
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(rendered.bytes);
+                while (bytes.hasRemaining()) {
+                    shard.write(bytes);
+                }
+                index.write(rendered.name + '\t' + shardName + '\t' + offset + '\t' + rendered.bytes.length + '\n');
+                offset += rendered.bytes.length;
+                byteCount += rendered.bytes.length;
+                graphCount++;
+            }
+        } catch (IOException e) {
+            failure = e;
+            drain();
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Writer of archive " + directory + " interrupted");
+        } finally {
+            if (shard != null) {
+                try {
+                    shard.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            while (pending.take() != END) {
+                // Discarded.
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteArchive(Path directory) throws IOException {
+        Files.deleteIfExists(directory.resolve(INDEX_FILE));
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory,
+                file -> SHARD_NAME.matcher(file.getFileName().toString()).matches())) {
+            for (Path shard : shards) {
+                Files.delete(shard);
+            }
+        }
+    }
+
+    private static String shardName(int shard, boolean compressed) {
+        return String.format("graphs-%05d.dot%s", shard, compressed ? ".gz" : "");
+    }
+
+    /**
+     * @return number of graphs written so far; final once the archive is closed.
+     */
+    public int getGraphCount() {
+        return graphCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return number of bytes written into the shards so far; final once the archive is closed.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Waits until all the submitted graphs are written, then closes the shards and the index.
+     *
+     * @throws IOException if writing any graph failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            pending.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing archive " + directory);
+        } finally {
+            renderers.shutdownNow();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Buffers of a rendering worker, reused for all the graphs it renders.
+     */
+    private static class RenderBuffers {
+        final ByteArrayOutputStream dot = new ByteArrayOutputStream(16 * 1024);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(4 * 1024);
+    }
+
+    private static class Rendered {
+        final String name;
+        final byte[] bytes;
+
+        Rendered(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+}
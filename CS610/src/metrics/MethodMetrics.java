@@ -0,0 +1,128 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Metrics of the construction of a single CFG: time spent per {@link Phase}, size of the graph, and bytes
+ * allocated by the constructing thread.
+ * <p>
+ * Phases are timed with {@link #startPhase(Phase)}, which ends the previous phase, and {@link #finish(int, int)}.
+ * An instance is used by a single thread.
+ */
+public class MethodMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String methodSignature;
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private Phase currentPhase = null;
+    private long phaseStart;
+
+    private final long allocationStart;
+    private long allocatedBytes = -1;
+
+    private int nodeCount;
+    private int edgeCount;
+
+    /**
+     * Constructor, starts counting of allocated bytes.
+     *
+     * @param methodSignature signature of the method whose CFG is constructed.
+     */
+    public MethodMetrics(String methodSignature) {
+        this.methodSignature = methodSignature;
+        this.allocationStart = currentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, or {@code -1} if the JVM does not support it.
+     */
+    public static long currentThreadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ends the current phase, if any, and starts the given one.
+     *
+     * @param phase phase to be timed.
+     */
+    public void startPhase(Phase phase) {
+        endPhase();
+        currentPhase = phase;
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase, if any.
+     */
+    public void endPhase() {
+        if (currentPhase != null) {
+            phaseNanos[currentPhase.ordinal()] += System.nanoTime() - phaseStart;
+            currentPhase = null;
+        }
+    }
+
+    /**
+     * Adds time spent on a phase which was timed elsewhere, e.g. a body retrieved before the construction.
+     *
+     * @param phase phase the time was spent on.
+     * @param nanos time spent, in nanoseconds.
+     */
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Ends the current phase and records the size of the constructed graph and the allocated bytes.
+     *
+     * @param nodeCount number of nodes of the CFG.
+     * @param edgeCount number of edges of the CFG.
+     */
+    public void finish(int nodeCount, int edgeCount) {
+        endPhase();
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        long allocationEnd = currentThreadAllocatedBytes();
+        if (allocationStart >= 0 && allocationEnd >= 0) {
+            allocatedBytes = allocationEnd - allocationStart;
+        }
+    }
+
+    public String getMethodSignature() {
+        return methodSignature;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return bytes allocated during the construction, or {@code -1} if the JVM does not support it.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,54 @@
+package metrics;
+
+/**
+ * Phases of the analysis pipeline which are timed separately.
+ */
+public enum Phase {
+    /**
+     * Loading of classes into the Soot {@code Scene}, once per run.
+     */
+    LOAD_SCENE("load_scene", true),
+    /**
+     * Restoring of CFGs from a cache, once per run.
+     */
+    RESTORE("restore", true),
+    /**
+     * Creation of the Jimple body of a method.
+     */
+    RETRIEVE_BODY("retrieve_body", false),
+    /**
+     * Creation of the unit graph of a method, done when edges are taken from it or when debug logging is enabled.
+     * It is the {@code EnhancedUnitGraph}, or the brief one when edges are taken from a method without traps.
+     */
+    UNIT_GRAPH("unit_graph", false),
+    /**
+     * Walk over the units of a method which adds the edges and collects defined variables.
+     */
+    EDGES("edges", false),
+    /**
+     * Definitions of parameters and collection of used variables.
+     */
+    DEF_USE("def_use", false);
+
+    private final String key;
+    private final boolean runWide;
+
+    Phase(String key, boolean runWide) {
+        this.key = key;
+        this.runWide = runWide;
+    }
+
+    /**
+     * @return name of the phase within the trace output.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return {@code true} if the phase is timed once per run, rather than per method.
+     */
+    public boolean isRunWide() {
+        return runWide;
+    }
+}
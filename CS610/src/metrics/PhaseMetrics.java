@@ -0,0 +1,88 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a whole run, aggregated over all the constructed CFGs. Safe to be updated from multiple threads.
+ */
+public class PhaseMetrics {
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder methodCount = new LongAdder();
+    private final LongAdder nodeCount = new LongAdder();
+    private final LongAdder edgeCount = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    public PhaseMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds metrics of a single CFG.
+     *
+     * @param metrics metrics of a finished construction.
+     */
+    public void record(MethodMetrics metrics) {
+        for (Phase phase : Phase.values()) {
+            phaseNanos[phase.ordinal()].add(metrics.getPhaseNanos(phase));
+        }
+        methodCount.increment();
+        nodeCount.add(metrics.getNodeCount());
+        edgeCount.add(metrics.getEdgeCount());
+        if (metrics.getAllocatedBytes() > 0) {
+            allocatedBytes.add(metrics.getAllocatedBytes());
+        }
+    }
+
+    /**
+     * Adds time of a phase which is not related to a single method, e.g. {@link Phase#LOAD_SCENE}.
+     *
+     * @param phase phase of the pipeline.
+     * @param nanos time spent within the phase.
+     */
+    public void record(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * @param phase phase of the pipeline.
+     * @return time spent within the phase, summed over all the threads.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getMethodCount() {
+        return methodCount.sum();
+    }
+
+    public long getNodeCount() {
+        return nodeCount.sum();
+    }
+
+    public long getEdgeCount() {
+        return edgeCount.sum();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            total += getPhaseNanos(phase);
+        }
+        for (Phase phase : Phase.values()) {
+            long nanos = getPhaseNanos(phase);
+            builder.append(String.format("%-14s %10.3f s %6.1f%%%n", phase.getKey(), nanos / 1e9,
+                    total == 0 ? 0 : 100.0 * nanos / total));
+        }
+        builder.append(String.format("%d methods, %d nodes, %d edges, %.1f MB allocated",
+                getMethodCount(), getNodeCount(), getEdgeCount(), getAllocatedBytes() / (1024.0 * 1024.0)));
+        return builder.toString();
+    }
+}
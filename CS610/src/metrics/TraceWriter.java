@@ -0,0 +1,90 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Structured trace of a run as JSON lines: one object per constructed CFG, with the time per phase in
+ * nanoseconds, the size of the graph and the allocated bytes, and one object per run-wide phase.
+ * <p>
+ * Example lines:
+ * <pre>
+ * {"event":"method","method":"&lt;A: void main(java.lang.String[])&gt;","nodes":12,"edges":14,
+ *  "allocated_bytes":81920,"retrieve_body_nanos":1204000,...,"edges_nanos":95000,"def_use_nanos":21000}
+ * {"event":"phase","phase":"load_scene","nanos":2100000000}
+ * </pre>
+ * Writes are synchronized, so a single writer can be shared by multiple threads.
+ */
+public class TraceWriter implements Closeable {
+    private final Writer writer;
+
+    /**
+     * Constructor.
+     *
+     * @param file output file, overwritten if it exists.
+     */
+    public TraceWriter(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    public TraceWriter(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+    }
+
+    /**
+     * Writes metrics of a single CFG.
+     *
+     * @param metrics metrics of a finished construction.
+     */
+    public synchronized void write(MethodMetrics metrics) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"event\":\"method\",\"method\":");
+        appendString(line, metrics.getMethodSignature());
+        line.append(",\"nodes\":").append(metrics.getNodeCount());
+        line.append(",\"edges\":").append(metrics.getEdgeCount());
+        line.append(",\"allocated_bytes\":").append(metrics.getAllocatedBytes());
+        for (Phase phase : Phase.values()) {
+            if (phase.isRunWide()) {
+                continue;
+            }
+            line.append(",\"").append(phase.getKey()).append("_nanos\":").append(metrics.getPhaseNanos(phase));
+        }
+        line.append("}\n");
+        writer.write(line.toString());
+    }
+
+    /**
+     * Writes time of a run-wide phase.
+     *
+     * @param phase phase of the pipeline.
+     * @param nanos time spent within the phase.
+     */
+    public synchronized void write(Phase phase, long nanos) throws IOException {
+        writer.write("{\"event\":\"phase\",\"phase\":\"" + phase.getKey() + "\",\"nanos\":" + nanos + "}\n");
+    }
+
+    private static void appendString(StringBuilder line, String text) {
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
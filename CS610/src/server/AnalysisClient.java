@@ -0,0 +1,201 @@
+package server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Client of an {@link AnalysisServer} measuring the latency of CFG requests.
+ * <p>
+ * It asks the server for the methods of the application classes, then requests the CFG of each of them in
+ * rounds, keeping up to a given number of requests in flight. Latency of a request is measured from sending it
+ * until its response is read, so it includes queueing behind earlier requests of the pipeline. The first round
+ * runs against a cold body cache; later rounds show the warm {@code Scene}.
+ */
+public class AnalysisClient implements Closeable {
+    private final Socket socket;
+    private final BufferedInputStream input;
+    private final OutputStream output;
+
+    public AnalysisClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        input = new BufferedInputStream(socket.getInputStream());
+        output = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Sends a request without waiting for its response.
+     *
+     * @param request single line request.
+     */
+    public synchronized void send(String request) throws IOException {
+        output.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void flush() throws IOException {
+        output.flush();
+    }
+
+    /**
+     * Reads the response to the oldest request not answered yet.
+     *
+     * @return payload of the response.
+     * @throws IOException if the server answered with an error, or the connection was closed.
+     */
+    public byte[] receive() throws IOException {
+        String header = readLine();
+        if (header == null) {
+            throw new EOFException("Connection closed by the server");
+        }
+        if (!header.startsWith("ok ")) {
+            throw new IOException(header);
+        }
+        byte[] payload = new byte[Integer.parseInt(header.substring(3))];
+        int read = 0;
+        while (read < payload.length) {
+            int count = input.read(payload, read, payload.length - read);
+            if (count < 0) {
+                throw new EOFException("Connection closed within a response");
+            }
+            read += count;
+        }
+        return payload;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                return line.size() == 0 ? null : line.toString("UTF-8");
+            }
+            line.write(b);
+        }
+        return line.toString("UTF-8");
+    }
+
+    /**
+     * Sends a request and waits for its response.
+     *
+     * @param request single line request.
+     * @return payload of the response as text.
+     */
+    public String request(String request) throws IOException {
+        send(request);
+        flush();
+        return new String(receive(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            send("quit");
+            flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Requests all the methods once, keeping up to {@code depth} requests in flight.
+     *
+     * @param requests single line requests.
+     * @param depth    number of requests in flight.
+     * @param errors   receives the number of requests answered with an error, at index 0.
+     * @return latency of every request, in nanoseconds.
+     */
+    public long[] run(List<String> requests, int depth, int[] errors) throws IOException, InterruptedException {
+        AtomicLongArray sent = new AtomicLongArray(requests.size());
+        long[] latencies = new long[requests.size()];
+        Semaphore window = new Semaphore(depth);
+        IOException[] failure = new IOException[1];
+
+        Thread sender = new Thread(() -> {
+            try {
+                for (int i = 0; i < requests.size(); i++) {
+                    window.acquire();
+                    sent.set(i, System.nanoTime());
+                    send(requests.get(i));
+                    flush();
+                }
+            } catch (IOException e) {
+                failure[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "analysis-client-sender");
+        sender.start();
+
+        boolean received = false;
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                try {
+                    receive();
+                } catch (EOFException e) {
+                    throw e;
+                } catch (IOException e) {
+                    errors[0]++;
+                }
+                latencies[i] = System.nanoTime() - sent.get(i);
+                window.release();
+            }
+            received = true;
+        } finally {
+            if (!received) {
+                // No more permits are released, so the sender may wait for the window forever.
+                sender.interrupt();
+            }
+            sender.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("Usage: AnalysisClient <port> [rounds] [pipeline depth] [cfg or blocks]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : AnalysisServer.DEFAULT_PIPELINE_DEPTH;
+        String kind = args.length > 3 ? args[3] : "cfg";
+
+        try (AnalysisClient client = new AnalysisClient(port)) {
+            List<String> requests = new ArrayList<>();
+            for (String method : client.request("methods").split("\n")) {
+                if (!method.isEmpty()) {
+                    requests.add(kind + " " + method.replace('\t', ' '));
+                }
+            }
+            System.out.printf("%d methods, pipeline depth %d%n", requests.size(), depth);
+
+            for (int round = 1; round <= rounds; round++) {
+                int[] errors = {0};
+                long start = System.nanoTime();
+                long[] latencies = client.run(requests, depth, errors);
+                long elapsed = System.nanoTime() - start;
+                Arrays.sort(latencies);
+                System.out.printf("round %d: %d requests (%d errors), p50 %.2f ms, p99 %.2f ms, max %.2f ms,"
+                                + " %.0f requests/sec%n", round, latencies.length, errors[0],
+                        percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 100),
+                        latencies.length / (elapsed / 1e9));
+            }
+            System.out.print(client.request("stats"));
+        }
+    }
+}
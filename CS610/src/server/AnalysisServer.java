@@ -0,0 +1,284 @@
+package server;
+
+import cfg.BatchCFG;
+import cfg.CFG;
+import export.ByteBufferPool;
+import export.DotGraphWriter;
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import util.CompactDirectedGraph;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived analysis daemon answering CFG requests of local clients, e.g. IDE plugins, over a socket.
+ * <p>
+ * The {@code Scene} is loaded once at start up and stays warm for all the requests; bodies of recently requested
+ * methods are kept by a {@link BodyCache}. The server listens on the loopback address only.
+ * <p>
+ * The protocol is line based. Every request is a single line:
+ * <ul>
+ * <li>{@code cfg <class> <method name or subsignature>} - DOT of the CFG with a node per line,</li>
+ * <li>{@code blocks <class> <method name or subsignature>} - DOT of the CFG with a node per basic block,</li>
+ * <li>{@code methods} - concrete methods of the application classes, a {@code <class>\t<subsignature>} line
+ * each,</li>
+ * <li>{@code stats} - counts of requests and of the body cache,</li>
+ * <li>{@code quit} - closes the connection once the earlier requests are answered.</li>
+ * </ul>
+ * Every response is either {@code ok <byte count>\n} followed by that many bytes of UTF-8 payload, or a single
+ * line {@code error <message>\n}.
+ * <p>
+ * Requests are pipelined: a client can send any number of requests without waiting for responses. Requests of a
+ * connection are answered concurrently by a shared pool of workers, and their responses are written in request
+ * order. At most {@link #DEFAULT_PIPELINE_DEPTH} requests per connection are in progress; further requests are
+ * not read until earlier responses are written.
+ */
+public class AnalysisServer implements Closeable {
+    /**
+     * Default number of requests per connection in progress at once.
+     */
+    public static final int DEFAULT_PIPELINE_DEPTH = 64;
+
+    private static final Future<byte[]> END = CompletableFuture.completedFuture(null);
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final BodyCache bodies;
+    private final int pipelineDepth;
+    private final ByteBufferPool pool = new ByteBufferPool(16 * 1024, 64);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Constructor. Binds the server; the {@code Scene} has to be loaded before the first request.
+     *
+     * @param port          port on the loopback address, or {@code 0} for any free port.
+     * @param threads       number of workers answering requests.
+     * @param bodies        cache of the retrieved bodies.
+     * @param pipelineDepth number of requests per connection in progress at once.
+     */
+    public AnalysisServer(int port, int threads, BodyCache bodies, int pipelineDepth) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads has to be positive, was " + threads);
+        }
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("Pipeline depth has to be positive, was " + pipelineDepth);
+        }
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.bodies = bodies;
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * @return port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            socket.setTcpNoDelay(true);
+            connections.execute(new Connection(socket)::read);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * A client connection: requests are read by one task and responses written by another, in request order.
+     */
+    private class Connection {
+        private final Socket socket;
+        private final BlockingQueue<Future<byte[]>> pending = new ArrayBlockingQueue<>(pipelineDepth);
+        private volatile boolean closed = false;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void read() {
+            connections.execute(this::write);
+            // The reader is not closed here, since that would close the socket before the responses are written.
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String request = line.trim();
+                    if (request.isEmpty()) {
+                        continue;
+                    }
+                    if ("quit".equals(request)) {
+                        break;
+                    }
+                    if (!enqueue(workers.submit(() -> answer(request)))) {
+                        return;
+                    }
+                }
+            } catch (IOException | RejectedExecutionException e) {
+                // Connection or server closed; the writer closes the socket.
+            } finally {
+                enqueue(END);
+            }
+        }
+
+        private boolean enqueue(Future<byte[]> response) {
+            try {
+                while (!closed) {
+                    if (pending.offer(response, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        void write() {
+            try (OutputStream output = new BufferedOutputStream(socket.getOutputStream())) {
+                while (true) {
+                    Future<byte[]> response = pending.take();
+                    if (response == END) {
+                        break;
+                    }
+                    output.write(response.get());
+                    // Responses ready at once are sent together.
+                    if (pending.isEmpty()) {
+                        output.flush();
+                    }
+                }
+            } catch (IOException | InterruptedException | ExecutionException e) {
+                // Client went away, or the server is closing.
+            } finally {
+                closed = true;
+                pending.clear();
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already closed.
+                }
+            }
+        }
+    }
+
+    private byte[] answer(String request) {
+        requests.incrementAndGet();
+        try {
+            String[] parts = request.split("\\s+", 3);
+            switch (parts[0]) {
+                case "cfg":
+                case "blocks":
+                    if (parts.length < 3) {
+                        throw new IllegalArgumentException("Expected " + parts[0] + " <class> <method>");
+                    }
+                    return ok(graph(parts[1], parts[2], "blocks".equals(parts[0])));
+                case "methods":
+                    return ok(methods());
+                case "stats":
+                    return ok(String.format("%d requests, %d errors; %s%n", requests.get(), errors.get(), bodies)
+                            .getBytes(StandardCharsets.UTF_8));
+                default:
+                    throw new IllegalArgumentException("Unknown request " + parts[0]);
+            }
+        } catch (RuntimeException | IOException e) {
+            errors.incrementAndGet();
+            String message = String.valueOf(e.getMessage()).replace('\n', ' ');
+            return ("error " + message + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private byte[] graph(String className, String method, boolean basicBlocks) throws IOException {
+        SootMethod sootMethod;
+        synchronized (CFG.SCENE_LOCK) {
+            SootClass sootClass = Scene.v().getSootClassUnsafe(className, false);
+            if (sootClass == null || sootClass.isPhantom()) {
+                throw new IllegalArgumentException("No class " + className + " within the scene");
+            }
+            sootMethod = CFG.findMethod(sootClass, method);
+        }
+        if (!sootMethod.isConcrete()) {
+            throw new IllegalArgumentException("Method " + sootMethod.getSignature() + " has no body");
+        }
+        Body body = bodies.retrieve(sootMethod);
+        CFG cfg = new CFG(sootMethod, body, true);
+        CompactDirectedGraph<String> graph = basicBlocks ? cfg.getBasicBlocks().getGraph() : cfg.getCompactGraph();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DotGraphWriter writer = new DotGraphWriter(Channels.newChannel(bytes), pool)) {
+            writer.writeGraph(cfg.getMethodSignature(), graph);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] methods() {
+        StringBuilder result = new StringBuilder();
+        synchronized (CFG.SCENE_LOCK) {
+            for (SootMethod method : BatchCFG.applicationMethods()) {
+                result.append(method.getDeclaringClass().getName()).append('\t')
+                        .append(method.getSubSignature()).append('\n');
+            }
+        }
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ok(byte[] payload) {
+        byte[] header = ("ok " + payload.length + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] response = new byte[header.length + payload.length];
+        System.arraycopy(header, 0, response, 0, header.length);
+        System.arraycopy(payload, 0, response, header.length, payload.length);
+        return response;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("Usage: AnalysisServer <class directory or jar> [port] [threads] [cached bodies]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int cachedBodies = args.length > 3 ? Integer.parseInt(args[3]) : BodyCache.DEFAULT_CAPACITY;
+
+        long start = System.nanoTime();
+        CFG.loadScene(args[0]);
+        System.out.printf("Loaded scene in %.2f s%n", (System.nanoTime() - start) / 1e9);
+
+        try (AnalysisServer server = new AnalysisServer(port, threads, new BodyCache(cachedBodies),
+                DEFAULT_PIPELINE_DEPTH)) {
+            System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                    + server.getPort());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package server;
+
+import cfg.CFG;
+import soot.Body;
+import soot.MethodSource;
+import soot.SootMethod;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the Jimple bodies of a long-lived {@code Scene}.
+ * <p>
+ * Soot keeps the active body of every method it was retrieved for, so a process answering requests over a whole
+ * code base would eventually hold all of them. This cache keeps the bodies of the most recently requested
+ * methods; when it is full, the least recently requested body is released from its method, and retrieved again
+ * on its next request. Soot drops the source of a method once its body is retrieved, so the cache keeps the
+ * source and restores it on release. A body which was already active before its first request is kept, since
+ * it could not be retrieved again. All the access goes through {@link CFG#SCENE_LOCK}.
+ */
+public class BodyCache {
+    /**
+     * Default number of bodies kept.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<SootMethod, Cached> bodies;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of bodies kept.
+     */
+    public BodyCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity has to be positive, was " + capacity);
+        }
+        this.bodies = new LinkedHashMap<SootMethod, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SootMethod, Cached> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                release(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public BodyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the body of a method, retrieving it if it is not cached.
+     *
+     * @param method concrete method of a class loaded within the {@code Scene}.
+     * @return active body of the method.
+     */
+    public Body retrieve(SootMethod method) {
+        synchronized (CFG.SCENE_LOCK) {
+            Cached cached = bodies.get(method);
+            if (cached != null) {
+                hits++;
+                return cached.body;
+            }
+            misses++;
+            MethodSource source = method.hasActiveBody() ? null : method.getSource();
+            Body body = method.retrieveActiveBody();
+            bodies.put(method, new Cached(body, source));
+            return body;
+        }
+    }
+
+    /**
+     * Releases all the cached bodies.
+     */
+    public void clear() {
+        synchronized (CFG.SCENE_LOCK) {
+            for (Map.Entry<SootMethod, Cached> entry : bodies.entrySet()) {
+                release(entry.getKey(), entry.getValue());
+            }
+            bodies.clear();
+        }
+    }
+
+    private void release(SootMethod method, Cached cached) {
+        evictions++;
+        if (cached.source != null && method.hasActiveBody() && method.getActiveBody() == cached.body) {
+            method.releaseActiveBody();
+            method.setSource(cached.source);
+        }
+    }
+
+    public int size() {
+        synchronized (CFG.SCENE_LOCK) {
+            return bodies.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (CFG.SCENE_LOCK) {
+            return String.format("%d bodies cached, %d hits, %d misses, %d evictions",
+                    bodies.size(), hits, misses, evictions);
+        }
+    }
+
+    private static class Cached {
+        private final Body body;
+        // Source of the method, or null if its body was active before it was cached.
+        private final MethodSource source;
+
+        Cached(Body body, MethodSource source) {
+            this.body = body;
+            this.source = source;
+        }
+    }
+}
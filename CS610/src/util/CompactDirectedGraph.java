@@ -0,0 +1,351 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Immutable rooted directed graph with nodes mapped to dense integer ids.
+ * <p>
+ * Successors and predecessors are stored in compressed sparse row form: edges of a node {@code n} occupy
+ * positions {@code offsets[n]} to {@code offsets[n + 1]} of the target and label arrays. Edge labels are
+ * interned, so every distinct label is stored once.
+ * <p>
+ * Instances are created through {@link Builder} or {@link #from(DirectedGraph)}.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class CompactDirectedGraph<T> {
+    /**
+     * Label id of an edge without a label.
+     */
+    public static final int NO_LABEL = -1;
+
+    private final Object[] nodes;
+    private final Map<T, Integer> ids;
+    private final String[] labels;
+
+    private final int[] successorOffsets;
+    private final int[] successorTargets;
+    private final int[] successorLabels;
+
+    private final int[] predecessorOffsets;
+    private final int[] predecessorSources;
+    private final int[] predecessorLabels;
+
+    private final int entry;
+
+    private CompactDirectedGraph(Object[] nodes, Map<T, Integer> ids, String[] labels,
+                                 int[] successorOffsets, int[] successorTargets, int[] successorLabels,
+                                 int[] predecessorOffsets, int[] predecessorSources, int[] predecessorLabels,
+                                 int entry) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.labels = labels;
+        this.successorOffsets = successorOffsets;
+        this.successorTargets = successorTargets;
+        this.successorLabels = successorLabels;
+        this.predecessorOffsets = predecessorOffsets;
+        this.predecessorSources = predecessorSources;
+        this.predecessorLabels = predecessorLabels;
+        this.entry = entry;
+    }
+
+    /**
+     * Creates compact copy of a given graph.
+     *
+     * @param graph input graph.
+     * @return {@code CompactDirectedGraph} with the same nodes, edges and entry node.
+     */
+    public static <T> CompactDirectedGraph<T> from(DirectedGraph<T> graph) {
+        Builder<T> builder = new Builder<>();
+        if (graph.getEntryNode() != null) {
+            builder.addNode(graph.getEntryNode());
+        }
+        for (Map.Entry<T, Set<Pair<T, String>>> entry : graph.getSuccessors().entrySet()) {
+            builder.addNode(entry.getKey());
+            for (Pair<T, String> pairTo : entry.getValue()) {
+                builder.addEdge(entry.getKey(), pairTo.getFirst() /* to */, pairTo.getSecond() /* label */);
+            }
+        }
+        builder.setEntryNode(graph.getEntryNode());
+        return builder.build();
+    }
+
+    /**
+     * @return number of nodes.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @return number of edges.
+     */
+    public int getEdgeCount() {
+        return successorTargets.length;
+    }
+
+    /**
+     * @return id of the entry node, or {@code -1} for an empty graph.
+     */
+    public int getEntry() {
+        return entry;
+    }
+
+    public T getEntryNode() {
+        return entry < 0 ? null : getNode(entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getNode(int id) {
+        return (T) nodes[id];
+    }
+
+    /**
+     * @param node node of the graph.
+     * @return id of the node, or {@code -1} if the node is not in the graph.
+     */
+    public int getId(T node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    public int getSuccessorCount(int node) {
+        return successorOffsets[node + 1] - successorOffsets[node];
+    }
+
+    public int getSuccessor(int node, int index) {
+        return successorTargets[successorOffsets[node] + index];
+    }
+
+    public String getSuccessorLabel(int node, int index) {
+        return label(successorLabels[successorOffsets[node] + index]);
+    }
+
+    /**
+     * @return id of the label within {@link #getLabels()}, or {@link #NO_LABEL}.
+     */
+    public int getSuccessorLabelId(int node, int index) {
+        return successorLabels[successorOffsets[node] + index];
+    }
+
+    public int getPredecessorCount(int node) {
+        return predecessorOffsets[node + 1] - predecessorOffsets[node];
+    }
+
+    public int getPredecessor(int node, int index) {
+        return predecessorSources[predecessorOffsets[node] + index];
+    }
+
+    public String getPredecessorLabel(int node, int index) {
+        return label(predecessorLabels[predecessorOffsets[node] + index]);
+    }
+
+    /**
+     * @return all the distinct edge labels, indexed by label id.
+     */
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    private String label(int labelId) {
+        return labelId == NO_LABEL ? null : labels[labelId];
+    }
+
+    /**
+     * Materializes successors in the same form as {@link DirectedGraph#getSuccessors()}.
+     * <b>Warning: Allocates a map entry and a pair per edge, meant only for interoperability.</b>
+     *
+     * @return {@code Map} from a node to its successors and edge labels.
+     */
+    public Map<T, Set<Pair<T, String>>> getSuccessors() {
+        return toMap(successorOffsets, successorTargets, successorLabels);
+    }
+
+    /**
+     * Materializes predecessors in the same form as {@link DirectedGraph#getPredecessors()}.
+     * <b>Warning: Allocates a map entry and a pair per edge, meant only for interoperability.</b>
+     *
+     * @return {@code Map} from a node to its predecessors and edge labels.
+     */
+    public Map<T, Set<Pair<T, String>>> getPredecessors() {
+        return toMap(predecessorOffsets, predecessorSources, predecessorLabels);
+    }
+
+    private Map<T, Set<Pair<T, String>>> toMap(int[] offsets, int[] adjacent, int[] edgeLabels) {
+        Map<T, Set<Pair<T, String>>> result = new HashMap<>();
+        for (int node = 0; node < nodes.length; node++) {
+            Set<Pair<T, String>> edges = new HashSet<>();
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                edges.add(new Pair<>(getNode(adjacent[edge]), label(edgeLabels[edge])));
+            }
+            result.put(getNode(node), edges);
+        }
+        return result;
+    }
+
+    /**
+     * Creates reversed graph. Node ids are preserved and adjacency arrays are shared, so no edge is copied.
+     *
+     * @param exit id of the node which becomes the entry of the reversed graph, or {@code -1}.
+     * @return reversed {@code CompactDirectedGraph}.
+     */
+    public CompactDirectedGraph<T> getReversedGraph(int exit) {
+        return new CompactDirectedGraph<>(nodes, ids, labels,
+                predecessorOffsets, predecessorSources, predecessorLabels,
+                successorOffsets, successorTargets, successorLabels,
+                exit);
+    }
+
+    /**
+     * Topological ordering of the directed graph. On cyclic graphs, back edges are ignored.
+     *
+     * @return {@code List} of nodes of generic type T in topological order.
+     */
+    public List<T> topologicalSort() {
+        DepthFirstOrder<T> order = getDepthFirstOrder();
+        return order.toNodes(order.getReversePostOrder());
+    }
+
+    /**
+     * @return depth-first orderings of the graph.
+     */
+    public DepthFirstOrder<T> getDepthFirstOrder() {
+        return new DepthFirstOrder<>(this);
+    }
+
+    /**
+     * @return strongly connected components of the graph.
+     */
+    public StronglyConnectedComponents<T> getStronglyConnectedComponents() {
+        return new StronglyConnectedComponents<>(this);
+    }
+
+    /**
+     * @return loops of the graph reachable from the entry node.
+     */
+    public LoopNestingForest<T> getLoopNestingForest() {
+        return new LoopNestingForest<>(this);
+    }
+
+    /**
+     * @return reachability index answering path queries between any two nodes.
+     */
+    public ReachabilityIndex<T> getReachabilityIndex() {
+        return new ReachabilityIndex<>(this);
+    }
+
+    /**
+     * Incremental builder of {@link CompactDirectedGraph}. Mirrors the mutating API of {@link DirectedGraph}.
+     *
+     * @param <T> type of information stored within a node.
+     */
+    public static class Builder<T> {
+        private final List<T> nodes = new ArrayList<>();
+        private final Map<T, Integer> ids = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private final Map<String, Integer> labelIds = new HashMap<>();
+
+        private final IntArrayList edgeSources = new IntArrayList();
+        private final IntArrayList edgeTargets = new IntArrayList();
+        private final IntArrayList edgeLabels = new IntArrayList();
+
+        private T entryNode = null;
+
+        /**
+         * Adding an edge to the graph.
+         *
+         * WARNING: Self edge is possible.
+         *
+         * @param nodeFrom node from.
+         * @param nodeTo node to.
+         * @param label if {@code null}. it means there is no label.
+         */
+        public void addEdge(T nodeFrom, T nodeTo, String label) {
+            if (entryNode == null) {
+                entryNode = nodeFrom;
+            }
+            edgeSources.add(addNode(nodeFrom));
+            edgeTargets.add(addNode(nodeTo));
+            edgeLabels.add(internLabel(label));
+        }
+
+        /**
+         * Adds a node unless already present.
+         *
+         * @param node node to be added.
+         * @return id of the node.
+         */
+        public int addNode(T node) {
+            Integer id = ids.get(node);
+            if (id == null) {
+                id = nodes.size();
+                ids.put(node, id);
+                nodes.add(node);
+            }
+            return id;
+        }
+
+        /**
+         * Overrides the entry node, which is by default the source of the first edge.
+         *
+         * @param node new entry node.
+         */
+        public void setEntryNode(T node) {
+            entryNode = node;
+        }
+
+        private int internLabel(String label) {
+            if (label == null) {
+                return NO_LABEL;
+            }
+            Integer id = labelIds.get(label);
+            if (id == null) {
+                id = labels.size();
+                labelIds.put(label, id);
+                labels.add(label);
+            }
+            return id;
+        }
+
+        public CompactDirectedGraph<T> build() {
+            int entry = entryNode == null ? -1 : addNode(entryNode);
+            int n = nodes.size();
+            int m = edgeSources.size();
+
+            int[] successorOffsets = new int[n + 1];
+            int[] successorTargets = new int[m];
+            int[] successorLabels = new int[m];
+            int[] predecessorOffsets = new int[n + 1];
+            int[] predecessorSources = new int[m];
+            int[] predecessorLabels = new int[m];
+
+            for (int edge = 0; edge < m; edge++) {
+                successorOffsets[edgeSources.get(edge) + 1]++;
+                predecessorOffsets[edgeTargets.get(edge) + 1]++;
+            }
+            for (int node = 0; node < n; node++) {
+                successorOffsets[node + 1] += successorOffsets[node];
+                predecessorOffsets[node + 1] += predecessorOffsets[node];
+            }
+
+            // Counting sort of the edges by source and by target, keeping insertion order within a node.
+            int[] successorFill = Arrays.copyOf(successorOffsets, n);
+            int[] predecessorFill = Arrays.copyOf(predecessorOffsets, n);
+            for (int edge = 0; edge < m; edge++) {
+                int from = edgeSources.get(edge);
+                int to = edgeTargets.get(edge);
+                int label = edgeLabels.get(edge);
+
+                successorTargets[successorFill[from]] = to;
+                successorLabels[successorFill[from]++] = label;
+                predecessorSources[predecessorFill[to]] = from;
+                predecessorLabels[predecessorFill[to]++] = label;
+            }
+
+            return new CompactDirectedGraph<>(nodes.toArray(), new HashMap<>(ids), labels.toArray(new String[0]),
+                    successorOffsets, successorTargets, successorLabels,
+                    predecessorOffsets, predecessorSources, predecessorLabels,
+                    entry);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rooted directed graph which multiple threads can add edges to at the same time, e.g. when per-method CFGs are
+ * merged into a single program-level graph.
+ * <p>
+ * Successor and predecessor maps are {@code ConcurrentHashMap}s of concurrent key sets, so adding edges locks only
+ * the bins being updated and reads never lock. The entry node is the source of the first edge added, decided
+ * atomically when several threads race for it.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class ConcurrentDirectedGraph<T> extends DirectedGraph<T> {
+    private final AtomicReference<T> entry = new AtomicReference<>();
+
+    public ConcurrentDirectedGraph() {
+        predecessors = new ConcurrentHashMap<>();
+        successors = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public T getEntryNode() {
+        return entry.get();
+    }
+
+    /**
+     * Sets the entry node, unless it has been set already.
+     *
+     * @param node node to become the entry node.
+     * @return {@code true} if the node became the entry node.
+     */
+    public boolean setEntryNodeIfAbsent(T node) {
+        return entry.compareAndSet(null, node);
+    }
+
+    /**
+     * Adding an edge to the graph. Safe to be called from multiple threads.
+     *
+     * WARNING: Self edge is possible.
+     *
+     * @param nodeFrom node from.
+     * @param nodeTo node to.
+     * @param label if {@code null}. it means there is no label.
+     */
+    @Override
+    public void addEdge(T nodeFrom, T nodeTo, String label) {
+        entry.compareAndSet(null, nodeFrom);
+
+        Set<Pair<T, String>> nodeFromSuccessors = adjacency(successors, nodeFrom);
+        adjacency(predecessors, nodeFrom);
+        adjacency(successors, nodeTo);
+        Set<Pair<T, String>> nodeToPredecessors = adjacency(predecessors, nodeTo);
+
+        nodeFromSuccessors.add(new Pair<>(nodeTo, label));
+        nodeToPredecessors.add(new Pair<>(nodeFrom, label));
+    }
+
+    @Override
+    public void addNode(T node) {
+        if (node != null) {
+            adjacency(predecessors, node);
+            adjacency(successors, node);
+        }
+    }
+
+    private static <T> Set<Pair<T, String>> adjacency(Map<T, Set<Pair<T, String>>> map, T node) {
+        Set<Pair<T, String>> set = map.get(node);
+        if (set == null) {
+            set = map.computeIfAbsent(node, key -> ConcurrentHashMap.newKeySet());
+        }
+        return set;
+    }
+}
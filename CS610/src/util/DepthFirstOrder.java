@@ -0,0 +1,178 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Depth-first orderings of a {@link CompactDirectedGraph}: pre-order, post-order and reverse post-order.
+ * <p>
+ * Traversal is iterative, using explicit primitive stacks, so arbitrarily long paths do not overflow the call
+ * stack. It starts from the entry node, followed by the remaining unvisited nodes in id order, hence the
+ * orderings are well defined for cyclic graphs as well. Edges closing a cycle during the traversal are
+ * reported as back edges; reverse post-order is a topological order of the graph without them.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class DepthFirstOrder<T> {
+    private final CompactDirectedGraph<T> graph;
+
+    private final int[] preOrder;
+    private final int[] postOrder;
+    private final int[] reversePostOrder;
+
+    private final int[] preOrderNumber;
+    private final int[] reversePostOrderNumber;
+
+    private int entryReachableCount = 0;
+
+    private final int[] backEdgeSources;
+    private final int[] backEdgeTargets;
+
+    public DepthFirstOrder(CompactDirectedGraph<T> graph) {
+        this.graph = graph;
+        int n = graph.size();
+
+        preOrder = new int[n];
+        postOrder = new int[n];
+        preOrderNumber = new int[n];
+        int preCount = 0;
+        int postCount = 0;
+
+        // 0 - not visited, 1 - on the stack, 2 - finished.
+        byte[] state = new byte[n];
+        // Next successor index to be explored, per node on the stack.
+        int[] nextSuccessor = new int[n];
+        IntArrayList stack = new IntArrayList();
+        IntArrayList backSources = new IntArrayList();
+        IntArrayList backTargets = new IntArrayList();
+
+        for (int i = -1; i < n; i++) {
+            int root = i < 0 ? graph.getEntry() : i;
+            if (root < 0 || state[root] != 0) {
+                continue;
+            }
+            state[root] = 1;
+            preOrderNumber[root] = preCount;
+            preOrder[preCount++] = root;
+            stack.push(root);
+
+            while (!stack.isEmpty()) {
+                int node = stack.peek();
+                if (nextSuccessor[node] < graph.getSuccessorCount(node)) {
+                    int successor = graph.getSuccessor(node, nextSuccessor[node]++);
+                    if (state[successor] == 0) {
+                        state[successor] = 1;
+                        preOrderNumber[successor] = preCount;
+                        preOrder[preCount++] = successor;
+                        stack.push(successor);
+                    } else if (state[successor] == 1) {
+                        backSources.add(node);
+                        backTargets.add(successor);
+                    }
+                } else {
+                    state[node] = 2;
+                    postOrder[postCount++] = stack.pop();
+                }
+            }
+            if (i < 0) {
+                entryReachableCount = postCount;
+            }
+        }
+
+        reversePostOrder = new int[n];
+        reversePostOrderNumber = new int[n];
+        for (int i = 0; i < n; i++) {
+            reversePostOrder[i] = postOrder[n - 1 - i];
+            reversePostOrderNumber[reversePostOrder[i]] = i;
+        }
+
+        backEdgeSources = backSources.toArray();
+        backEdgeTargets = backTargets.toArray();
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    /**
+     * <b>Warning: Returned array is shared, it must not be modified.</b>
+     *
+     * @return node ids in pre-order.
+     */
+    public int[] getPreOrder() {
+        return preOrder;
+    }
+
+    /**
+     * <b>Warning: Returned array is shared, it must not be modified.</b>
+     *
+     * @return node ids in post-order.
+     */
+    public int[] getPostOrder() {
+        return postOrder;
+    }
+
+    /**
+     * <b>Warning: Returned array is shared, it must not be modified.</b>
+     *
+     * @return node ids in reverse post-order, which is a topological order when back edges are ignored.
+     */
+    public int[] getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    public int getPreOrderNumber(int node) {
+        return preOrderNumber[node];
+    }
+
+    public int getReversePostOrderNumber(int node) {
+        return reversePostOrderNumber[node];
+    }
+
+    /**
+     * Nodes reachable from the entry node are traversed first, so they occupy the first positions of pre-order
+     * and post-order, and the last positions of reverse post-order.
+     *
+     * @return number of nodes reachable from the entry node.
+     */
+    public int getEntryReachableCount() {
+        return entryReachableCount;
+    }
+
+    public int getBackEdgeCount() {
+        return backEdgeSources.length;
+    }
+
+    public int getBackEdgeSource(int index) {
+        return backEdgeSources[index];
+    }
+
+    public int getBackEdgeTarget(int index) {
+        return backEdgeTargets[index];
+    }
+
+    /**
+     * @return {@code true} if the traversal found no cycle, i.e. reverse post-order is a topological order.
+     */
+    public boolean isAcyclic() {
+        return backEdgeSources.length == 0;
+    }
+
+    /**
+     * @param order one of the orderings of this object.
+     * @return array-backed {@code List} view of the nodes in the given order.
+     */
+    public List<T> toNodes(int[] order) {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return graph.getNode(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return order.length;
+            }
+        };
+    }
+}
@@ -64,9 +64,10 @@ public class DirectedGraph<T> {
      */
     public DirectedGraph<T> getReversedGraph(DirectedGraph<T> inputGraph) {
         DirectedGraph<T> reversed = new DirectedGraph<>();
-        for (T from : inputGraph.successors.keySet()) {
+        Map<T, Set<Pair<T, String>>> inputSuccessors = inputGraph.getSuccessors();
+        for (T from : inputSuccessors.keySet()) {
             reversed.addNode(from);
-            for (Pair<T, String> pairTo : inputGraph.successors.get(from)) {
+            for (Pair<T, String> pairTo : inputSuccessors.get(from)) {
                 reversed.addEdge(pairTo.getFirst() /* to */, from, pairTo.getSecond() /* label */);
             }
         }
@@ -74,41 +75,43 @@ public class DirectedGraph<T> {
     }
 
     /**
-     * Topological ordering of the directed graph.
+     * Topological ordering of the directed graph. On cyclic graphs, back edges are ignored.
      *
      * @return {@code List} of nodes of generic type T in topological order.
      */
     public List<T> topologicalSort() {
-        Stack<T> stack = new Stack<>();
-
-        Set<T> visited = new HashSet<>();
-
-        for (T node : predecessors.keySet()) {
-            if (visited.contains(node)) {
-                continue;
-            }
-
-            topologicalSortUtil(node, visited, stack);
-        }
+        DepthFirstOrder<T> order = getDepthFirstOrder();
+        return order.toNodes(order.getReversePostOrder());
+    }
 
-        List<T> result = new LinkedList<>();
+    /**
+     * Depth-first orderings of the directed graph, starting from the entry node.
+     *
+     * @return {@link DepthFirstOrder} over a compact copy of the graph.
+     */
+    public DepthFirstOrder<T> getDepthFirstOrder() {
+        return CompactDirectedGraph.from(this).getDepthFirstOrder();
+    }
 
-        while (!stack.empty()) {
-            result.add(stack.pop());
-        }
+    /**
+     * @return {@link StronglyConnectedComponents} over a compact copy of the graph.
+     */
+    public StronglyConnectedComponents<T> getStronglyConnectedComponents() {
+        return CompactDirectedGraph.from(this).getStronglyConnectedComponents();
+    }
 
-        return result;
+    /**
+     * @return {@link LoopNestingForest} over a compact copy of the graph.
+     */
+    public LoopNestingForest<T> getLoopNestingForest() {
+        return CompactDirectedGraph.from(this).getLoopNestingForest();
     }
 
-    private void topologicalSortUtil(T node, Set<T> visited, Stack<T> stack) {
-        visited.add(node);
-        for (Pair<T, String> successor : successors.get(node)) {
-            if (visited.contains(successor.getFirst() /* node */ )) {
-                continue;
-            }
-            topologicalSortUtil(successor.getFirst(), visited, stack);
-        }
-        stack.push(node);
+    /**
+     * @return {@link ReachabilityIndex} over a compact copy of the graph.
+     */
+    public ReachabilityIndex<T> getReachabilityIndex() {
+        return CompactDirectedGraph.from(this).getReachabilityIndex();
     }
 
 }
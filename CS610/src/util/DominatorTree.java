@@ -0,0 +1,244 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Dominator tree of a {@link CompactDirectedGraph}, rooted at its entry node.
+ * <p>
+ * Immediate dominators are computed with the iterative algorithm of Cooper, Harvey and Kennedy. The tree is
+ * numbered in pre-order and post-order, so that {@link #dominates(int, int)} is an interval check in O(1).
+ * Dominance frontiers are computed eagerly.
+ * <p>
+ * Post-dominator tree is the dominator tree of the reversed graph rooted at the exit node, see
+ * {@link #postDominators(CompactDirectedGraph, int)}. Nodes not reachable from the root have no immediate
+ * dominator and are dominated by no node.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class DominatorTree<T> {
+    private final CompactDirectedGraph<T> graph;
+    private final int root;
+
+    private final int[] immediateDominators;
+
+    private final int[] childOffsets;
+    private final int[] children;
+
+    private final int[] preNumber;
+    private final int[] postNumber;
+
+    private final int[] frontierOffsets;
+    private final int[] frontiers;
+
+    /**
+     * Constructor.
+     *
+     * @param graph graph whose entry node becomes the root of the tree.
+     */
+    public DominatorTree(CompactDirectedGraph<T> graph) {
+        this.graph = graph;
+        this.root = graph.getEntry();
+        int n = graph.size();
+
+        immediateDominators = new int[n];
+        Arrays.fill(immediateDominators, -1);
+
+        // Post-order numbers of the nodes reachable from the root, -1 for the rest.
+        int[] postOrderNumber = new int[n];
+        Arrays.fill(postOrderNumber, -1);
+
+        int reachable = 0;
+        DepthFirstOrder<T> order = null;
+        if (root >= 0) {
+            order = graph.getDepthFirstOrder();
+            reachable = order.getEntryReachableCount();
+            for (int i = 0; i < reachable; i++) {
+                postOrderNumber[order.getPostOrder()[i]] = i;
+            }
+            immediateDominators[root] = root;
+        }
+
+        boolean changed = root >= 0;
+        while (changed) {
+            changed = false;
+            // Reverse post-order of the reachable nodes, skipping the root.
+            for (int i = reachable - 2; i >= 0; i--) {
+                int node = order.getPostOrder()[i];
+                int newDominator = -1;
+                for (int j = 0; j < graph.getPredecessorCount(node); j++) {
+                    int predecessor = graph.getPredecessor(node, j);
+                    if (immediateDominators[predecessor] < 0) {
+                        continue;
+                    }
+                    newDominator = newDominator < 0
+                            ? predecessor
+                            : intersect(predecessor, newDominator, postOrderNumber);
+                }
+                if (immediateDominators[node] != newDominator) {
+                    immediateDominators[node] = newDominator;
+                    changed = true;
+                }
+            }
+        }
+
+        // Children of every node, in compressed sparse row form.
+        childOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            if (node != root && immediateDominators[node] >= 0) {
+                childOffsets[immediateDominators[node] + 1]++;
+            }
+        }
+        for (int node = 0; node < n; node++) {
+            childOffsets[node + 1] += childOffsets[node];
+        }
+        children = new int[childOffsets[n]];
+        int[] fill = Arrays.copyOf(childOffsets, n);
+        for (int node = 0; node < n; node++) {
+            if (node != root && immediateDominators[node] >= 0) {
+                children[fill[immediateDominators[node]]++] = node;
+            }
+        }
+
+        preNumber = new int[n];
+        postNumber = new int[n];
+        Arrays.fill(preNumber, -1);
+        Arrays.fill(postNumber, -1);
+        if (root >= 0) {
+            numberTree();
+        }
+
+        // Dominance frontiers, collected per node and then compacted.
+        IntArrayList[] frontier = new IntArrayList[n];
+        for (int node = 0; node < n; node++) {
+            if (immediateDominators[node] < 0 || graph.getPredecessorCount(node) < 2) {
+                continue;
+            }
+            for (int j = 0; j < graph.getPredecessorCount(node); j++) {
+                int runner = graph.getPredecessor(node, j);
+                if (immediateDominators[runner] < 0) {
+                    continue;
+                }
+                while (runner != immediateDominators[node]) {
+                    if (frontier[runner] == null) {
+                        frontier[runner] = new IntArrayList(4);
+                    }
+                    // A node is added to the frontiers while walking from each of its predecessors in turn.
+                    if (frontier[runner].isEmpty() || frontier[runner].peek() != node) {
+                        frontier[runner].add(node);
+                    }
+                    runner = immediateDominators[runner];
+                }
+            }
+        }
+        frontierOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            frontierOffsets[node + 1] = frontierOffsets[node] + (frontier[node] == null ? 0 : frontier[node].size());
+        }
+        frontiers = new int[frontierOffsets[n]];
+        for (int node = 0; node < n; node++) {
+            for (int j = 0; frontier[node] != null && j < frontier[node].size(); j++) {
+                frontiers[frontierOffsets[node] + j] = frontier[node].get(j);
+            }
+        }
+    }
+
+    /**
+     * Creates post-dominator tree of a graph.
+     *
+     * @param graph graph over which the tree is computed.
+     * @param exit  id of the exit node, which becomes the root of the tree.
+     * @return {@code DominatorTree} of the reversed graph; its frontiers are post-dominance frontiers.
+     */
+    public static <T> DominatorTree<T> postDominators(CompactDirectedGraph<T> graph, int exit) {
+        return new DominatorTree<>(graph.getReversedGraph(exit));
+    }
+
+    private int intersect(int first, int second, int[] postOrderNumber) {
+        while (first != second) {
+            while (postOrderNumber[first] < postOrderNumber[second]) {
+                first = immediateDominators[first];
+            }
+            while (postOrderNumber[second] < postOrderNumber[first]) {
+                second = immediateDominators[second];
+            }
+        }
+        return first;
+    }
+
+    private void numberTree() {
+        int counter = 0;
+        int[] nextChild = new int[graph.size()];
+        IntArrayList stack = new IntArrayList();
+        stack.push(root);
+        preNumber[root] = counter++;
+        while (!stack.isEmpty()) {
+            int node = stack.peek();
+            if (nextChild[node] < getChildCount(node)) {
+                int child = getChild(node, nextChild[node]++);
+                preNumber[child] = counter++;
+                stack.push(child);
+            } else {
+                postNumber[stack.pop()] = counter++;
+            }
+        }
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return id of the root node, or {@code -1} for an empty graph.
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * @param node id of the node.
+     * @return id of the immediate dominator, the root itself for the root, or {@code -1} if unreachable.
+     */
+    public int getImmediateDominator(int node) {
+        return immediateDominators[node];
+    }
+
+    public int getChildCount(int node) {
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    public int getChild(int node, int index) {
+        return children[childOffsets[node] + index];
+    }
+
+    /**
+     * @param dominator id of the first node.
+     * @param node      id of the second node.
+     * @return {@code true} if every path from the root to {@code node} passes through {@code dominator}.
+     */
+    public boolean dominates(int dominator, int node) {
+        return preNumber[dominator] >= 0 && preNumber[node] >= 0
+                && preNumber[dominator] <= preNumber[node] && postNumber[node] <= postNumber[dominator];
+    }
+
+    public boolean strictlyDominates(int dominator, int node) {
+        return dominator != node && dominates(dominator, node);
+    }
+
+    public boolean dominates(T dominator, T node) {
+        int dominatorId = graph.getId(dominator);
+        int nodeId = graph.getId(node);
+        return dominatorId >= 0 && nodeId >= 0 && dominates(dominatorId, nodeId);
+    }
+
+    /**
+     * @param node id of the node.
+     * @return number of nodes in the dominance frontier of the node.
+     */
+    public int getFrontierSize(int node) {
+        return frontierOffsets[node + 1] - frontierOffsets[node];
+    }
+
+    public int getFrontier(int node, int index) {
+        return frontiers[frontierOffsets[node] + index];
+    }
+}
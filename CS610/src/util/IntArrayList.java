@@ -0,0 +1,74 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive integers. Also used as a stack.
+ */
+public class IntArrayList {
+    private int[] elements;
+    private int size = 0;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        elements = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int element) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = element;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return elements[index];
+    }
+
+    public void set(int index, int element) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        elements[index] = element;
+    }
+
+    public void push(int element) {
+        add(element);
+    }
+
+    public int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Pop from an empty list");
+        }
+        return elements[--size];
+    }
+
+    public int peek() {
+        if (size == 0) {
+            throw new IllegalStateException("Peek into an empty list");
+        }
+        return elements[size - 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,431 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Loop nesting forest of a {@link CompactDirectedGraph}, computed by Havlak's algorithm.
+ * <p>
+ * Loops are identified from the depth-first spanning tree rooted at the entry node, in almost linear time using
+ * union-find. Reducible loops are the natural loops of their headers. An irreducible loop, entered at more than
+ * one node, is reported with the entry visited first by the traversal as its header and is marked as such.
+ * A node with a self edge and no other cycle through it is a loop of its own. Nodes not reachable from the entry
+ * node belong to no loop.
+ * <p>
+ * Loops are numbered so that an inner loop has a lower id than the loop containing it. The nodes of every loop are
+ * kept contiguous, so the body of a loop, including its inner loops, is a range of {@link #getBodyNode(int, int)},
+ * and membership is checked in O(1). Exit edges are collected on the first request per loop.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class LoopNestingForest<T> {
+    private final CompactDirectedGraph<T> graph;
+
+    private final int[] headers;
+    private final int[] parents;
+    private final int[] depths;
+    private final boolean[] irreducible;
+
+    // Innermost loop per node, -1 for none.
+    private final int[] innermostLoops;
+
+    // Nodes grouped by loop, inner loops nested within the range of their parent.
+    private final int[] bodyNodes;
+    private final int[] bodyStart;
+    private final int[] bodyEnd;
+    private final int[] bodyPositions;
+
+    private final int[][] exitSources;
+    private final int[][] exitTargets;
+
+    public LoopNestingForest(CompactDirectedGraph<T> graph) {
+        this.graph = graph;
+        int n = graph.size();
+
+        // Pre-order numbering of the depth-first spanning tree, and the last pre-order number of every subtree.
+        DepthFirstOrder<T> order = graph.getDepthFirstOrder();
+        int reachable = graph.getEntry() < 0 ? 0 : order.getEntryReachableCount();
+        int[] preOrder = order.getPreOrder();
+        int[] number = new int[n];
+        Arrays.fill(number, -1);
+        for (int i = 0; i < reachable; i++) {
+            number[preOrder[i]] = i;
+        }
+        int[] last = lastDescendants(order, number, reachable);
+
+        // Predecessors split into back edge sources and the rest, by pre-order number.
+        IntArrayList[] backPredecessors = new IntArrayList[reachable];
+        IntArrayList[] otherPredecessors = new IntArrayList[reachable];
+        for (int w = 0; w < reachable; w++) {
+            backPredecessors[w] = new IntArrayList(2);
+            otherPredecessors[w] = new IntArrayList(2);
+            int node = preOrder[w];
+            for (int j = 0; j < graph.getPredecessorCount(node); j++) {
+                int v = number[graph.getPredecessor(node, j)];
+                if (v < 0) {
+                    continue;
+                }
+                if (w <= v && v <= last[w]) {
+                    backPredecessors[w].add(v);
+                } else {
+                    otherPredecessors[w].add(v);
+                }
+            }
+        }
+
+        int[] unionFind = new int[reachable];
+        for (int w = 0; w < reachable; w++) {
+            unionFind[w] = w;
+        }
+        int[] loopOfHeader = new int[reachable];
+        Arrays.fill(loopOfHeader, -1);
+        int[] innermost = new int[reachable];
+        Arrays.fill(innermost, -1);
+        int[] poolMark = new int[reachable];
+        Arrays.fill(poolMark, -1);
+
+        IntArrayList loopHeaders = new IntArrayList();
+        IntArrayList loopParents = new IntArrayList();
+        IntArrayList irreducibleLoops = new IntArrayList();
+        IntArrayList pool = new IntArrayList();
+        IntArrayList workList = new IntArrayList();
+
+        for (int w = reachable - 1; w >= 0; w--) {
+            pool.clear();
+            boolean selfLoop = false;
+            for (int j = 0; j < backPredecessors[w].size(); j++) {
+                int v = backPredecessors[w].get(j);
+                if (v == w) {
+                    selfLoop = true;
+                    continue;
+                }
+                int representative = find(unionFind, v);
+                if (poolMark[representative] != w) {
+                    poolMark[representative] = w;
+                    pool.add(representative);
+                }
+            }
+
+            boolean isIrreducible = false;
+            workList.clear();
+            for (int j = 0; j < pool.size(); j++) {
+                workList.push(pool.get(j));
+            }
+            while (!workList.isEmpty()) {
+                int x = workList.pop();
+                for (int j = 0; j < otherPredecessors[x].size(); j++) {
+                    int y = find(unionFind, otherPredecessors[x].get(j));
+                    if (y < w || y > last[w]) {
+                        // Entered from outside of the subtree of the header.
+                        isIrreducible = true;
+                        otherPredecessors[w].add(y);
+                    } else if (y != w && poolMark[y] != w) {
+                        poolMark[y] = w;
+                        pool.add(y);
+                        workList.push(y);
+                    }
+                }
+            }
+
+            if (pool.isEmpty() && !selfLoop) {
+                continue;
+            }
+            int loop = loopHeaders.size();
+            loopHeaders.add(preOrder[w]);
+            loopParents.add(-1);
+            irreducibleLoops.add(isIrreducible ? 1 : 0);
+            loopOfHeader[w] = loop;
+            innermost[w] = loop;
+            for (int j = 0; j < pool.size(); j++) {
+                int x = pool.get(j);
+                unionFind[x] = w;
+                if (loopOfHeader[x] >= 0) {
+                    loopParents.set(loopOfHeader[x], loop);
+                } else {
+                    innermost[x] = loop;
+                }
+            }
+        }
+
+        headers = loopHeaders.toArray();
+        parents = loopParents.toArray();
+        int loopCount = headers.length;
+        irreducible = new boolean[loopCount];
+        depths = new int[loopCount];
+        // Parents are created after their inner loops.
+        for (int loop = loopCount - 1; loop >= 0; loop--) {
+            irreducible[loop] = irreducibleLoops.get(loop) != 0;
+            depths[loop] = parents[loop] < 0 ? 1 : depths[parents[loop]] + 1;
+        }
+
+        innermostLoops = new int[n];
+        Arrays.fill(innermostLoops, -1);
+        for (int w = 0; w < reachable; w++) {
+            innermostLoops[preOrder[w]] = innermost[w];
+        }
+
+        bodyStart = new int[loopCount];
+        bodyEnd = new int[loopCount];
+        bodyPositions = new int[n];
+        Arrays.fill(bodyPositions, -1);
+        bodyNodes = layOutBodies();
+
+        exitSources = new int[loopCount][];
+        exitTargets = new int[loopCount][];
+    }
+
+    /**
+     * Subtrees of the spanning tree are ranges of pre-order numbers; finds the last number of every range.
+     */
+    private static <T> int[] lastDescendants(DepthFirstOrder<T> order, int[] number, int reachable) {
+        int[] postNumber = new int[number.length];
+        int[] postOrder = order.getPostOrder();
+        for (int i = 0; i < reachable; i++) {
+            postNumber[postOrder[i]] = i;
+        }
+        int[] preOrder = order.getPreOrder();
+
+        // Stack of the ancestors of the current node; an ancestor finishes after its descendants.
+        int[] last = new int[reachable];
+        IntArrayList ancestors = new IntArrayList();
+        for (int w = 0; w < reachable; w++) {
+            while (!ancestors.isEmpty() && postNumber[preOrder[ancestors.peek()]] < postNumber[preOrder[w]]) {
+                last[ancestors.pop()] = w - 1;
+            }
+            ancestors.push(w);
+        }
+        while (!ancestors.isEmpty()) {
+            last[ancestors.pop()] = reachable - 1;
+        }
+        return last;
+    }
+
+    private static int find(int[] unionFind, int x) {
+        int root = x;
+        while (unionFind[root] != root) {
+            root = unionFind[root];
+        }
+        while (unionFind[x] != root) {
+            int next = unionFind[x];
+            unionFind[x] = root;
+            x = next;
+        }
+        return root;
+    }
+
+    /**
+     * Places the nodes of every loop contiguously, its header first and its inner loops nested within.
+     */
+    private int[] layOutBodies() {
+        int loopCount = headers.length;
+        int n = graph.size();
+
+        // Children of every loop and nodes directly within every loop, in compressed sparse row form.
+        int[] childOffsets = new int[loopCount + 2];
+        for (int loop = 0; loop < loopCount; loop++) {
+            childOffsets[parents[loop] + 2]++;
+        }
+        for (int i = 0; i <= loopCount; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        int[] children = new int[loopCount];
+        int[] childFill = Arrays.copyOf(childOffsets, loopCount + 1);
+        for (int loop = 0; loop < loopCount; loop++) {
+            children[childFill[parents[loop] + 1]++] = loop;
+        }
+
+        int[] nodeOffsets = new int[loopCount + 1];
+        for (int node = 0; node < n; node++) {
+            if (innermostLoops[node] >= 0 && headers[innermostLoops[node]] != node) {
+                nodeOffsets[innermostLoops[node] + 1]++;
+            }
+        }
+        for (int loop = 0; loop < loopCount; loop++) {
+            nodeOffsets[loop + 1] += nodeOffsets[loop];
+        }
+        int[] directNodes = new int[nodeOffsets[loopCount]];
+        int[] nodeFill = Arrays.copyOf(nodeOffsets, loopCount);
+        for (int node = 0; node < n; node++) {
+            if (innermostLoops[node] >= 0 && headers[innermostLoops[node]] != node) {
+                directNodes[nodeFill[innermostLoops[node]]++] = node;
+            }
+        }
+
+        int size = 0;
+        for (int node = 0; node < n; node++) {
+            if (innermostLoops[node] >= 0) {
+                size++;
+            }
+        }
+        int[] result = new int[size];
+        int position = 0;
+        int[] nextChild = new int[loopCount];
+        IntArrayList stack = new IntArrayList();
+        // Children of the virtual root are the outermost loops.
+        for (int j = childOffsets[0]; j < childOffsets[1]; j++) {
+            stack.push(children[j]);
+            while (!stack.isEmpty()) {
+                int loop = stack.peek();
+                if (nextChild[loop] == 0) {
+                    bodyStart[loop] = position;
+                    bodyPositions[headers[loop]] = position;
+                    result[position++] = headers[loop];
+                    for (int k = nodeOffsets[loop]; k < nodeOffsets[loop + 1]; k++) {
+                        bodyPositions[directNodes[k]] = position;
+                        result[position++] = directNodes[k];
+                    }
+                }
+                int childIndex = childOffsets[loop + 1] + nextChild[loop];
+                if (childIndex < childOffsets[loop + 2]) {
+                    nextChild[loop]++;
+                    stack.push(children[childIndex]);
+                } else {
+                    // Marks the loop as visited even without children.
+                    nextChild[loop] = Math.max(nextChild[loop], 1);
+                    bodyEnd[loop] = position;
+                    stack.pop();
+                }
+            }
+        }
+        return result;
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    public int getLoopCount() {
+        return headers.length;
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @return id of the header node of the loop.
+     */
+    public int getHeader(int loop) {
+        return headers[loop];
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @return id of the loop directly containing the loop, or {@code -1} for an outermost loop.
+     */
+    public int getParent(int loop) {
+        return parents[loop];
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @return nesting depth of the loop, {@code 1} for an outermost loop.
+     */
+    public int getDepth(int loop) {
+        return depths[loop];
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @return {@code true} if the loop can be entered at more than one node.
+     */
+    public boolean isIrreducible(int loop) {
+        return irreducible[loop];
+    }
+
+    /**
+     * @param node id of the node.
+     * @return id of the innermost loop containing the node, or {@code -1} if it is within no loop.
+     */
+    public int getInnermostLoop(int node) {
+        return innermostLoops[node];
+    }
+
+    /**
+     * @param node id of the node.
+     * @return number of loops containing the node.
+     */
+    public int getLoopDepth(int node) {
+        return innermostLoops[node] < 0 ? 0 : depths[innermostLoops[node]];
+    }
+
+    /**
+     * @param node id of the node.
+     * @return {@code true} if the node is the header of a loop.
+     */
+    public boolean isHeader(int node) {
+        return innermostLoops[node] >= 0 && headers[innermostLoops[node]] == node;
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @return number of nodes of the loop, including the nodes of its inner loops.
+     */
+    public int getBodySize(int loop) {
+        return bodyEnd[loop] - bodyStart[loop];
+    }
+
+    /**
+     * @param loop  id of the loop.
+     * @param index index within the body; index {@code 0} is the header.
+     * @return id of the node.
+     */
+    public int getBodyNode(int loop, int index) {
+        return bodyNodes[bodyStart[loop] + index];
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @param node id of the node.
+     * @return {@code true} if the node is within the loop or one of its inner loops.
+     */
+    public boolean contains(int loop, int node) {
+        int position = bodyPositions[node];
+        return position >= bodyStart[loop] && position < bodyEnd[loop];
+    }
+
+    /**
+     * @param loop id of the loop.
+     * @return number of edges leaving the loop.
+     */
+    public int getExitCount(int loop) {
+        collectExits(loop);
+        return exitSources[loop].length;
+    }
+
+    /**
+     * @param loop  id of the loop.
+     * @param index index among the exit edges.
+     * @return id of the node within the loop which the edge leaves from.
+     */
+    public int getExitSource(int loop, int index) {
+        collectExits(loop);
+        return exitSources[loop][index];
+    }
+
+    /**
+     * @param loop  id of the loop.
+     * @param index index among the exit edges.
+     * @return id of the node outside of the loop which the edge leads to.
+     */
+    public int getExitTarget(int loop, int index) {
+        collectExits(loop);
+        return exitTargets[loop][index];
+    }
+
+    private synchronized void collectExits(int loop) {
+        if (exitSources[loop] != null) {
+            return;
+        }
+        IntArrayList sources = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+        for (int i = bodyStart[loop]; i < bodyEnd[loop]; i++) {
+            int node = bodyNodes[i];
+            for (int j = 0; j < graph.getSuccessorCount(node); j++) {
+                int successor = graph.getSuccessor(node, j);
+                if (!contains(loop, successor)) {
+                    sources.add(node);
+                    targets.add(successor);
+                }
+            }
+        }
+        exitTargets[loop] = targets.toArray();
+        exitSources[loop] = sources.toArray();
+    }
+}
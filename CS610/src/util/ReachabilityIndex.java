@@ -0,0 +1,428 @@
+package util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Precomputed reachability over a {@link CompactDirectedGraph}: answers whether there is a path from one node to
+ * another without traversing the graph per query. Every node reaches itself.
+ * <p>
+ * The graph is condensed into its {@link StronglyConnectedComponents}, whose component ids are a reverse
+ * topological order, so a component can only reach components of lower or equal ids. Over the condensation:
+ * <ul>
+ * <li>up to {@link #MAX_MATRIX_COMPONENTS} components by default, the transitive closure is kept as a bit matrix and every
+ * query is a single bit test,</li>
+ * <li>above that, every component gets {@link #LABEL_COUNT} interval labels from depth-first traversals in
+ * different successor orders. A component reaching another one contains its intervals in all its own, so most
+ * negative queries are answered by the labels alone; the rest are answered by a search of the condensation,
+ * pruned by the labels.</li>
+ * </ul>
+ * Batches of queries answer queries of the same source from a single traversal once they are frequent enough.
+ * Queries of the bit matrix are thread-safe; searches of the condensation are serialized.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class ReachabilityIndex<T> {
+    /**
+     * Default maximal number of components for which the transitive closure is kept, at most 2 MiB of bits.
+     */
+    public static final int MAX_MATRIX_COMPONENTS = 4096;
+
+    /**
+     * Number of interval labels per component, when there is no bit matrix.
+     */
+    public static final int LABEL_COUNT = 2;
+
+    // Queries of a batch with the same source from which their answers come from a single traversal.
+    private static final int BATCH_TRAVERSAL_QUERIES = 32;
+
+    private final CompactDirectedGraph<T> graph;
+    private final StronglyConnectedComponents<T> components;
+
+    // Distinct successor components per component, in compressed sparse row form.
+    private final int[] successorOffsets;
+    private final int[] successors;
+
+    // Transitive closure, a row of words per component; null if there are labels instead.
+    private final long[] closure;
+    private final int words;
+
+    // Interval [low, post] per label and component; null if there is a bit matrix.
+    private final int[][] lows;
+    private final int[][] posts;
+    // Marks of the components visited by a search; a search marks with a new stamp, so marks need no clearing.
+    private final int[] visited;
+    private int stamp = 0;
+
+    public ReachabilityIndex(CompactDirectedGraph<T> graph) {
+        this(graph.getStronglyConnectedComponents());
+    }
+
+    public ReachabilityIndex(StronglyConnectedComponents<T> components) {
+        this(components, MAX_MATRIX_COMPONENTS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param components          strongly connected components of the graph.
+     * @param maxMatrixComponents maximal number of components for which the transitive closure is kept.
+     */
+    public ReachabilityIndex(StronglyConnectedComponents<T> components, int maxMatrixComponents) {
+        this.graph = components.getGraph();
+        this.components = components;
+        int count = components.getComponentCount();
+
+        successorOffsets = new int[count + 1];
+        IntArrayList targets = new IntArrayList();
+        int[] seen = new int[count];
+        Arrays.fill(seen, -1);
+        for (int component = 0; component < count; component++) {
+            for (int i = 0; i < components.getComponentSize(component); i++) {
+                int node = components.getComponentNode(component, i);
+                for (int j = 0; j < graph.getSuccessorCount(node); j++) {
+                    int target = components.getComponent(graph.getSuccessor(node, j));
+                    if (target != component && seen[target] != component) {
+                        seen[target] = component;
+                        targets.add(target);
+                    }
+                }
+            }
+            successorOffsets[component + 1] = targets.size();
+        }
+        successors = targets.toArray();
+
+        if (count <= maxMatrixComponents) {
+            words = (count + 63) >>> 6;
+            closure = new long[count * words];
+            // Successors have lower ids, so their rows are complete before they are merged.
+            for (int component = 0; component < count; component++) {
+                int row = component * words;
+                closure[row + (component >>> 6)] |= 1L << component;
+                for (int k = successorOffsets[component]; k < successorOffsets[component + 1]; k++) {
+                    int successorRow = successors[k] * words;
+                    for (int w = 0; w <= successors[k] >>> 6; w++) {
+                        closure[row + w] |= closure[successorRow + w];
+                    }
+                }
+            }
+            lows = null;
+            posts = null;
+            visited = null;
+        } else {
+            words = 0;
+            closure = null;
+            lows = new int[LABEL_COUNT][];
+            posts = new int[LABEL_COUNT][];
+            for (int label = 0; label < LABEL_COUNT; label++) {
+                label(label);
+            }
+            visited = new int[count];
+        }
+    }
+
+    /**
+     * Assigns post-order intervals by a depth-first traversal of the condensation. Labels alternate the order in
+     * which roots and successors are visited, so they complement each other.
+     */
+    private void label(int label) {
+        int count = components.getComponentCount();
+        boolean descending = (label & 1) == 1;
+        int[] low = new int[count];
+        int[] post = new int[count];
+        boolean[] done = new boolean[count];
+        int[] nextSuccessor = new int[count];
+        IntArrayList stack = new IntArrayList();
+        int counter = 0;
+
+        for (int i = 0; i < count; i++) {
+            int root = descending ? i : count - 1 - i;
+            if (done[root]) {
+                continue;
+            }
+            done[root] = true;
+            low[root] = Integer.MAX_VALUE;
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                int component = stack.peek();
+                int first = successorOffsets[component];
+                int degree = successorOffsets[component + 1] - first;
+                if (nextSuccessor[component] < degree) {
+                    int k = nextSuccessor[component]++;
+                    int successor = successors[descending ? first + degree - 1 - k : first + k];
+                    if (!done[successor]) {
+                        done[successor] = true;
+                        low[successor] = Integer.MAX_VALUE;
+                        stack.push(successor);
+                    } else {
+                        low[component] = Math.min(low[component], low[successor]);
+                    }
+                    continue;
+                }
+                stack.pop();
+                post[component] = counter++;
+                low[component] = Math.min(low[component], post[component]);
+                if (!stack.isEmpty()) {
+                    int parent = stack.peek();
+                    low[parent] = Math.min(low[parent], low[component]);
+                }
+            }
+        }
+        lows[label] = low;
+        posts[label] = post;
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    public StronglyConnectedComponents<T> getStronglyConnectedComponents() {
+        return components;
+    }
+
+    /**
+     * @return {@code true} if queries are answered by a transitive closure bit matrix.
+     */
+    public boolean hasMatrix() {
+        return closure != null;
+    }
+
+    /**
+     * @param from id of the source node.
+     * @param to   id of the target node.
+     * @return {@code true} if there is a path from the source to the target, or they are the same node.
+     */
+    public boolean reaches(int from, int to) {
+        return componentReaches(components.getComponent(from), components.getComponent(to));
+    }
+
+    /**
+     * @param from source node.
+     * @param to   target node.
+     * @return {@code true} if there is a path from the source to the target, or they are the same node;
+     * {@code false} if either is not a node of the graph.
+     */
+    public boolean reaches(T from, T to) {
+        int fromId = graph.getId(from);
+        int toId = graph.getId(to);
+        return fromId >= 0 && toId >= 0 && reaches(fromId, toId);
+    }
+
+    private boolean componentReaches(int from, int to) {
+        if (from == to) {
+            return true;
+        }
+        if (from < to) {
+            return false;
+        }
+        if (closure != null) {
+            return (closure[from * words + (to >>> 6)] & (1L << to)) != 0;
+        }
+        if (!labelsContain(from, to)) {
+            return false;
+        }
+        return search(from, to);
+    }
+
+    private boolean labelsContain(int from, int to) {
+        for (int label = 0; label < LABEL_COUNT; label++) {
+            if (lows[label][to] < lows[label][from] || posts[label][to] > posts[label][from]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Depth-first search of the condensation, entering only components whose labels contain the target's and
+     * whose ids are not below it.
+     */
+    private synchronized boolean search(int from, int to) {
+        int mark = nextStamp();
+        IntArrayList stack = new IntArrayList();
+        stack.push(from);
+        visited[from] = mark;
+        while (!stack.isEmpty()) {
+            int component = stack.pop();
+            for (int k = successorOffsets[component]; k < successorOffsets[component + 1]; k++) {
+                int successor = successors[k];
+                if (successor == to) {
+                    return true;
+                }
+                if (visited[successor] != mark && successor > to && labelsContain(successor, to)) {
+                    visited[successor] = mark;
+                    stack.push(successor);
+                }
+            }
+        }
+        return false;
+    }
+
+    private int nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Answers a batch of queries; query {@code i} asks whether {@code sources[i]} reaches {@code targets[i]}.
+     * Without a bit matrix, sources of many queries are traversed once and their queries answered from it.
+     *
+     * @param sources ids of the source nodes.
+     * @param targets ids of the target nodes, as many as sources.
+     * @return answer of every query.
+     */
+    public boolean[] reaches(int[] sources, int[] targets) {
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException(
+                    "Expected as many targets as sources, got " + targets.length + " and " + sources.length);
+        }
+        boolean[] result = new boolean[sources.length];
+        if (closure != null) {
+            for (int i = 0; i < sources.length; i++) {
+                result[i] = reaches(sources[i], targets[i]);
+            }
+            return result;
+        }
+
+        // Queries grouped by source component, by counting sort.
+        int count = components.getComponentCount();
+        int[] offsets = new int[count + 1];
+        for (int source : sources) {
+            offsets[components.getComponent(source) + 1]++;
+        }
+        for (int component = 0; component < count; component++) {
+            offsets[component + 1] += offsets[component];
+        }
+        int[] fill = Arrays.copyOf(offsets, count);
+        int[] queries = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            queries[fill[components.getComponent(sources[i])]++] = i;
+        }
+
+        BitSet reached = null;
+        for (int component = 0; component < count; component++) {
+            int first = offsets[component];
+            int last = offsets[component + 1];
+            if (last - first >= BATCH_TRAVERSAL_QUERIES) {
+                reached = reachableComponents(component, reached);
+                for (int q = first; q < last; q++) {
+                    result[queries[q]] = reached.get(components.getComponent(targets[queries[q]]));
+                }
+            } else {
+                for (int q = first; q < last; q++) {
+                    result[queries[q]] = componentReaches(component, components.getComponent(targets[queries[q]]));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param from      id of the source component.
+     * @param reachable set to be cleared and reused, or {@code null}.
+     * @return components reachable from the source, including itself.
+     */
+    private BitSet reachableComponents(int from, BitSet reachable) {
+        BitSet result = reachable == null ? new BitSet(components.getComponentCount()) : reachable;
+        result.clear();
+        if (closure != null) {
+            for (int w = 0; w < words; w++) {
+                long bits = closure[from * words + w];
+                while (bits != 0) {
+                    result.set((w << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return result;
+        }
+        IntArrayList stack = new IntArrayList();
+        stack.push(from);
+        result.set(from);
+        while (!stack.isEmpty()) {
+            int component = stack.pop();
+            for (int k = successorOffsets[component]; k < successorOffsets[component + 1]; k++) {
+                if (!result.get(successors[k])) {
+                    result.set(successors[k]);
+                    stack.push(successors[k]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param from id of the source node.
+     * @return ids of the nodes reachable from the source, including itself.
+     */
+    public BitSet getReachableNodes(int from) {
+        BitSet reachable = reachableComponents(components.getComponent(from), null);
+        BitSet result = new BitSet(graph.size());
+        for (int c = reachable.nextSetBit(0); c >= 0; c = reachable.nextSetBit(c + 1)) {
+            addNodes(c, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the nodes lying on paths from one node to another, e.g. the lines between a statement and the exit.
+     *
+     * @param from id of the source node.
+     * @param to   id of the target node.
+     * @return ids of the nodes reachable from the source which reach the target, including both if the source
+     * reaches the target, otherwise empty.
+     */
+    public BitSet getNodesBetween(int from, int to) {
+        BitSet result = new BitSet(graph.size());
+        int source = components.getComponent(from);
+        int target = components.getComponent(to);
+        if (!componentReaches(source, target)) {
+            return result;
+        }
+        // Components between have ids between the target's and the source's. Successors have lower ids, so
+        // whether a component reaches the target is known for all its successors when it is visited.
+        BitSet reachable = reachableComponents(source, null);
+        BitSet reaching = new BitSet(source + 1);
+        reaching.set(target);
+        for (int component = target; component <= source; component++) {
+            for (int k = successorOffsets[component]; k < successorOffsets[component + 1]; k++) {
+                if (reaching.get(successors[k])) {
+                    reaching.set(component);
+                    break;
+                }
+            }
+            if (reachable.get(component) && reaching.get(component)) {
+                addNodes(component, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param from source node.
+     * @param to   target node.
+     * @return nodes lying on paths from the source to the target, empty if either is not a node of the graph.
+     */
+    public Set<T> getNodesBetween(T from, T to) {
+        Set<T> result = new HashSet<>();
+        int fromId = graph.getId(from);
+        int toId = graph.getId(to);
+        if (fromId >= 0 && toId >= 0) {
+            BitSet between = getNodesBetween(fromId, toId);
+            for (int node = between.nextSetBit(0); node >= 0; node = between.nextSetBit(node + 1)) {
+                result.add(graph.getNode(node));
+            }
+        }
+        return result;
+    }
+
+    private void addNodes(int component, BitSet nodes) {
+        for (int i = 0; i < components.getComponentSize(component); i++) {
+            nodes.set(components.getComponentNode(component, i));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a {@link CompactDirectedGraph}, computed by Tarjan's algorithm in linear time.
+ * <p>
+ * The traversal is iterative, using explicit primitive stacks. Components are numbered in the order in which
+ * Tarjan's algorithm completes them, which is a reverse topological order of the condensation: every edge
+ * between two different components goes from a higher component id to a lower one.
+ *
+ * @param <T> type of information stored within a node.
+ */
+public class StronglyConnectedComponents<T> {
+    private final CompactDirectedGraph<T> graph;
+
+    private final int[] components;
+    private final int[] componentOffsets;
+    private final int[] componentNodes;
+    private final boolean[] cyclic;
+
+    public StronglyConnectedComponents(CompactDirectedGraph<T> graph) {
+        this.graph = graph;
+        int n = graph.size();
+
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        int[] nextSuccessor = new int[n];
+        IntArrayList stack = new IntArrayList();
+        IntArrayList callStack = new IntArrayList();
+
+        components = new int[n];
+        // Nodes in the order in which their components are completed.
+        int[] completed = new int[n];
+        IntArrayList offsets = new IntArrayList();
+        offsets.add(0);
+        int completedCount = 0;
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            index[root] = lowLink[root] = counter++;
+            stack.push(root);
+            onStack[root] = true;
+            callStack.push(root);
+
+            while (!callStack.isEmpty()) {
+                int node = callStack.peek();
+                if (nextSuccessor[node] < graph.getSuccessorCount(node)) {
+                    int successor = graph.getSuccessor(node, nextSuccessor[node]++);
+                    if (index[successor] < 0) {
+                        index[successor] = lowLink[successor] = counter++;
+                        stack.push(successor);
+                        onStack[successor] = true;
+                        callStack.push(successor);
+                    } else if (onStack[successor]) {
+                        lowLink[node] = Math.min(lowLink[node], index[successor]);
+                    }
+                    continue;
+                }
+
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    int parent = callStack.peek();
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    int component = offsets.size() - 1;
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        components[member] = component;
+                        completed[completedCount++] = member;
+                    } while (member != node);
+                    offsets.add(completedCount);
+                }
+            }
+        }
+
+        componentOffsets = offsets.toArray();
+        componentNodes = completed;
+
+        cyclic = new boolean[componentOffsets.length - 1];
+        for (int node = 0; node < n; node++) {
+            for (int j = 0; j < graph.getSuccessorCount(node); j++) {
+                if (components[graph.getSuccessor(node, j)] == components[node]) {
+                    cyclic[components[node]] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    public CompactDirectedGraph<T> getGraph() {
+        return graph;
+    }
+
+    public int getComponentCount() {
+        return cyclic.length;
+    }
+
+    /**
+     * @param node id of the node.
+     * @return id of the component containing the node.
+     */
+    public int getComponent(int node) {
+        return components[node];
+    }
+
+    public int getComponentSize(int component) {
+        return componentOffsets[component + 1] - componentOffsets[component];
+    }
+
+    public int getComponentNode(int component, int index) {
+        return componentNodes[componentOffsets[component] + index];
+    }
+
+    /**
+     * @param component id of the component.
+     * @return {@code true} if the component contains a cycle, i.e. it has more than one node or a self edge.
+     */
+    public boolean isCyclic(int component) {
+        return cyclic[component];
+    }
+
+    /**
+     * @return {@code true} if no component contains a cycle.
+     */
+    public boolean isAcyclic() {
+        for (boolean componentCyclic : cyclic) {
+            if (componentCyclic) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
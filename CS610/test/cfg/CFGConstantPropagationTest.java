@@ -0,0 +1,123 @@
+package cfg;
+
+import cache.CfgCache;
+import dataflow.SsaForm;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import soot.jimple.DoubleConstant;
+import soot.jimple.IntConstant;
+import soot.jimple.LongConstant;
+import soot.jimple.NullConstant;
+import soot.jimple.StringConstant;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CFGConstantPropagationTest extends FixtureTest {
+    @BeforeClass
+    public static void setUp() throws Exception {
+        load("Constants",
+                "public class Constants {",
+                "    static int straight(boolean c, int n) {",
+                "        int x = 0;",
+                "        if (c) {",
+                "            x = n;",
+                "        }",
+                "        return x;",
+                "    }",
+                "    static int conditionalAssignment(boolean c) {",
+                "        int x = 0; if (c) x = 5;",
+                "        int y = x;",
+                "        return y;",
+                "    }",
+                "    static int branches(boolean c) {",
+                "        int x; if (c) { x = 5; } else { x = 6; }",
+                "        return x;",
+                "    }",
+                "    static String values(boolean c, String p) {",
+                "        int x = 7;",
+                "        long l = 8L;",
+                "        double d = 1.5;",
+                "        String s = \"a\";",
+                "        Object o = null;",
+                "        int y = x;",
+                "        if (c) {",
+                "            x = 1; l = 2L; d = 2.5; s = p; o = p; y = 3;",
+                "        }",
+                "        return s + x + l + d + o + y;",
+                "    }",
+                "}");
+    }
+
+    /**
+     * @return constant of the variable at the end of the line, or {@code null} if it is not constant.
+     */
+    private static Object constantDefined(String method, int line, String variable) {
+        return constantDefined(cfg(method), line, variable);
+    }
+
+    private static Object constantDefined(CFG cfg, int line, String variable) {
+        SsaForm<String> ssa = cfg.getSsaForm();
+        int node = node(cfg, line);
+        int variableId = cfg.getDefUseIndex().getVariables().getId(variable);
+        for (int i = 0; i < ssa.getDefinitionCount(node); i++) {
+            int definition = ssa.getDefinition(node, i);
+            if (ssa.getVariable(definition) == variableId) {
+                return cfg.getConstantPropagation().getConstant(definition);
+            }
+        }
+        throw new AssertionError(variable + " is not defined at line " + line);
+    }
+
+    private static Object constantUsed(String method, int line, String variable) {
+        return constantUsed(cfg(method), line, variable);
+    }
+
+    private static Object constantUsed(CFG cfg, int line, String variable) {
+        return cfg.getConstantPropagation().getConstantUsed(node(cfg, line),
+                cfg.getDefUseIndex().getVariables().getId(variable));
+    }
+
+    @Test
+    public void lineAssigningConstantOnceDefinesConstant() {
+        assertEquals(IntConstant.v(0), constantDefined("straight", 3, "x"));
+        assertNull(constantUsed("straight", 7, "x"));
+    }
+
+    @Test
+    public void conditionalAssignmentWithinLineIsNotConstant() {
+        assertNull(constantDefined("conditionalAssignment", 10, "x"));
+        // Soot folds the copy into y, so the return reads x.
+        assertNull(constantUsed("conditionalAssignment", 12, "x"));
+    }
+
+    @Test
+    public void branchesWithinLineAreNotConstant() {
+        assertNull(constantDefined("branches", 15, "x"));
+        assertNull(constantUsed("branches", 16, "x"));
+    }
+
+    @Test
+    public void restoredCfgHasTheSameConstants() throws IOException {
+        CFG cfg = cfg("values");
+        Path file = FOLDER.newFolder().toPath().resolve("entry");
+        CfgCache.write(file, Collections.singletonList(cfg.toCachedMethod()));
+        CFG[] restored = {new CFG(cfg.toCachedMethod()),
+                new CFG(CfgCache.read(file).read(cfg.getMethodSignature()))};
+
+        String[] variables = {"x", "l", "d", "s", "o", "y"};
+        Object[] constants = {IntConstant.v(7), LongConstant.v(8), DoubleConstant.v(1.5), StringConstant.v("a"),
+                NullConstant.v(), IntConstant.v(7)};
+        for (int i = 0; i < variables.length; i++) {
+            assertEquals(constants[i], constantDefined(cfg, 19 + i, variables[i]));
+            for (CFG restoredCfg : restored) {
+                assertEquals(constants[i], constantDefined(restoredCfg, 19 + i, variables[i]));
+                assertNull(constantUsed(restoredCfg, 28, variables[i]));
+            }
+        }
+    }
+}
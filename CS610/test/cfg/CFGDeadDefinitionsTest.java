@@ -0,0 +1,57 @@
+package cfg;
+
+import dataflow.DeadDefinitions;
+import dataflow.SsaForm;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CFGDeadDefinitionsTest extends FixtureTest {
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // Within the default package, so a static field is named without any '.'.
+        load("Stores",
+                "public class Stores {",
+                "    static int f;",
+                "    int g;",
+                "    static void storeStatic(int v) {",
+                "        f = v;",
+                "    }",
+                "    void storeInstance(int v) {",
+                "        g = v;",
+                "    }",
+                "    static void storeElement(int[] a, int v) {",
+                "        a[0] = v;",
+                "    }",
+                "}");
+    }
+
+    /**
+     * @return whether the only definition of the line is dead.
+     */
+    private static boolean isDead(String method, int line) {
+        CFG cfg = cfg(method);
+        DeadDefinitions<String> deadDefinitions = cfg.getDeadDefinitions();
+        SsaForm<String> ssa = deadDefinitions.getSsaForm();
+        int node = node(cfg, line);
+        assertEquals(1, ssa.getDefinitionCount(node));
+        return deadDefinitions.isDead(ssa.getDefinition(node, 0));
+    }
+
+    @Test
+    public void staticFieldStoreIsNotDead() {
+        assertFalse(isDead("storeStatic", 5));
+    }
+
+    @Test
+    public void instanceFieldStoreIsNotDead() {
+        assertFalse(isDead("storeInstance", 8));
+    }
+
+    @Test
+    public void arrayElementStoreIsNotDead() {
+        assertFalse(isDead("storeElement", 11));
+    }
+}
@@ -0,0 +1,163 @@
+package cfg;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.CompactDirectedGraph;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CFGUnitGraphTest extends FixtureTest {
+    @BeforeClass
+    public static void setUp() throws Exception {
+        load("TryCatch",
+                "public class TryCatch {",
+                "    static int parseAll(String[] args) {",
+                "        int sum = 0;",
+                "        for (int i = 0; i < args.length; i++) {",
+                "            try {",
+                "                sum += Integer.parseInt(args[i]);",
+                "            } catch (NumberFormatException e) {",
+                "                sum--;",
+                "            }",
+                "        }",
+                "        return sum;",
+                "    }",
+                "    static int branchIntoTry(boolean c, String s) {",
+                "        int r = 0;",
+                "        if (c) {",
+                "            r = 1;",
+                "        }",
+                "        try {",
+                "            r += Integer.parseInt(s);",
+                "        } catch (NumberFormatException e) {",
+                "            r = -1;",
+                "        }",
+                "        return r;",
+                "    }",
+                "    static int switchIntoTry(int k, String s) {",
+                "        int r = 0;",
+                "        switch (k) {",
+                "            case 1:",
+                "                r = 1;",
+                "            case 2:",
+                "                try {",
+                "                    r += Integer.parseInt(s);",
+                "                } catch (NumberFormatException e) {",
+                "                    r = -1;",
+                "                }",
+                "                break;",
+                "            default:",
+                "                r = 3;",
+                "        }",
+                "        return r;",
+                "    }",
+                "    static int uncaughtThrow(int k) {",
+                "        try {",
+                "            if (k < 0) {",
+                "                throw new IllegalStateException();",
+                "            }",
+                "            k++;",
+                "        } catch (IllegalArgumentException e) {",
+                "            k = 0;",
+                "        }",
+                "        return k;",
+                "    }",
+                "    static int caughtThrow(int k) {",
+                "        try {",
+                "            if (k < 0) {",
+                "                throw new IllegalStateException();",
+                "            }",
+                "            k++;",
+                "        } catch (RuntimeException e) {",
+                "            k = 0;",
+                "        }",
+                "        return k;",
+                "    }",
+                "    static int catchAll(int k) {",
+                "        try {",
+                "            if (k < 0) {",
+                "                throw new IllegalStateException();",
+                "            }",
+                "            k++;",
+                "        } catch (Throwable e) {",
+                "            k = 0;",
+                "        }",
+                "        return k;",
+                "    }",
+                "}");
+    }
+
+    /**
+     * @return edges of the CFG as {@code from->to[label]}.
+     */
+    private static Set<String> edges(String method) {
+        CompactDirectedGraph<String> graph = cfg(method, ConstructionMode.UNIT_GRAPH).getCompactGraph();
+        Set<String> edges = new TreeSet<>();
+        for (int node = 0; node < graph.size(); node++) {
+            for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+                edges.add(graph.getNode(node) + "->" + graph.getNode(graph.getSuccessor(node, i))
+                        + "[" + graph.getSuccessorLabel(node, i) + "]");
+            }
+        }
+        return edges;
+    }
+
+    private static Set<String> handlerEdges(Set<String> edges) {
+        Set<String> result = new TreeSet<>();
+        for (String edge : edges) {
+            if (edge.endsWith("[NumberFormatException]")) {
+                result.add(edge);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void handlerIsEnteredFromTheLinesOfTheTryBlock() {
+        Set<String> edges = edges("parseAll");
+        assertEquals(Collections.singleton("6->8[NumberFormatException]"), handlerEdges(edges));
+        assertTrue(edges.toString(), edges.contains("4->6[!>=]"));
+        assertTrue(edges.toString(), edges.contains("4->11[>=]"));
+    }
+
+    @Test
+    public void branchIntoTryBlockKeepsItsLabels() {
+        Set<String> edges = edges("branchIntoTry");
+        assertTrue(edges.toString(), edges.contains("15->19[==]"));
+        assertTrue(edges.toString(), edges.contains("15->16[!==]"));
+        assertEquals(Collections.singleton("19->21[NumberFormatException]"), handlerEdges(edges));
+    }
+
+    @Test
+    public void caseIntoTryBlockKeepsItsLabel() {
+        Set<String> edges = edges("switchIntoTry");
+        assertTrue(edges.toString(), edges.contains("27->29[1]"));
+        assertTrue(edges.toString(), edges.contains("27->32[2]"));
+        assertTrue(edges.toString(), edges.contains("27->38[default]"));
+        assertEquals(Collections.singleton("32->34[NumberFormatException]"), handlerEdges(edges));
+    }
+
+    @Test
+    public void throwNotCaughtByItsTrapsAlsoLeavesTheMethod() {
+        Set<String> edges = edges("uncaughtThrow");
+        assertTrue(edges.toString(), edges.contains("45->49[IllegalArgumentException]"));
+        assertTrue(edges.toString(), edges.contains("45->exit[throw]"));
+    }
+
+    @Test
+    public void throwCaughtBySuperclassStaysWithinTheMethod() {
+        Set<String> edges = edges("caughtThrow");
+        assertTrue(edges.toString(), edges.contains("56->60[RuntimeException]"));
+        assertFalse(edges.toString(), edges.contains("56->exit[throw]"));
+
+        edges = edges("catchAll");
+        assertTrue(edges.toString(), edges.contains("67->71[Throwable]"));
+        assertFalse(edges.toString(), edges.contains("67->exit[throw]"));
+    }
+}
@@ -0,0 +1,40 @@
+package cfg;
+
+import org.junit.ClassRule;
+import org.junit.rules.TemporaryFolder;
+import soot.SootClass;
+
+import java.io.IOException;
+
+/**
+ * Base of the tests on the CFGs of the methods of one fixture class, which a subclass loads in its
+ * {@link org.junit.BeforeClass} method.
+ */
+public abstract class FixtureTest {
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static SootClass fixture;
+
+    /**
+     * Compiles and loads the fixture class, see {@link Fixtures#load}.
+     */
+    static void load(String className, String... lines) throws IOException {
+        fixture = Fixtures.load(FOLDER, className, lines);
+    }
+
+    static CFG cfg(String method) {
+        return new CFG(fixture.getMethodByName(method));
+    }
+
+    static CFG cfg(String method, ConstructionMode mode) {
+        return new CFG(fixture.getMethodByName(method), null, false, mode);
+    }
+
+    /**
+     * @return id of the line within the compact graph of the CFG.
+     */
+    static int node(CFG cfg, int line) {
+        return cfg.getCompactGraph().getId(Integer.toString(line));
+    }
+}
@@ -0,0 +1,62 @@
+package cfg;
+
+import org.junit.rules.TemporaryFolder;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Compiles fixture classes from source, with debug information, and loads them into a fresh Soot scene.
+ */
+final class Fixtures {
+    private Fixtures() {}
+
+    /**
+     * @param folder    folder for the source and the class files.
+     * @param className name of the class, within the default package.
+     * @param lines     source of the class, element {@code i} being line {@code i + 1}.
+     * @return loaded class.
+     */
+    static SootClass load(TemporaryFolder folder, String className, String... lines) throws IOException {
+        File directory = folder.newFolder();
+        compile(directory, className, lines);
+
+        G.reset();
+        CFG.loadClasses(directory.getPath(), Collections.singletonList(className));
+        return Scene.v().getSootClass(className);
+    }
+
+    /**
+     * Compiles a class, replacing the class file of an earlier compilation.
+     *
+     * @param directory directory for the source and the class file.
+     * @param className name of the class, within the default package.
+     * @param lines     source of the class, element {@code i} being line {@code i + 1}.
+     * @return class file.
+     */
+    static Path compile(File directory, String className, String... lines) throws IOException {
+        File source = new File(directory, className + ".java");
+        Files.write(source.toPath(), String.join("\n", Arrays.asList(lines)).getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Tests have to be run on a JDK");
+        }
+        int result = compiler.run(null, null, null,
+                "-g", "-source", "1.8", "-target", "1.8", "-nowarn", "-d", directory.getPath(), source.getPath());
+        if (result != 0) {
+            throw new IllegalStateException("Compilation of " + source + " failed");
+        }
+        return directory.toPath().resolve(className + ".class");
+    }
+}
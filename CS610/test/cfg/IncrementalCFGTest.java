@@ -0,0 +1,109 @@
+package cfg;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import soot.G;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalCFGTest {
+    private static final String A = "<Sample: int a(int)>";
+    private static final String B = "<Sample: int b(int)>";
+    private static final String INIT = "<Sample: void <init>()>";
+
+    private static final String[] ORIGINAL = {
+            "public class Sample {",
+            "    static int a(int x) {",
+            "        return x;",
+            "    }",
+            "    static int b(int x) {",
+            "        return x + 1;",
+            "    }",
+            "}"};
+
+    // Changes b, keeping the lines of a.
+    private static final String[] CHANGED = {
+            "public class Sample {",
+            "    static int a(int x) {",
+            "        return x;",
+            "    }",
+            "    static int b(int x) {",
+            "        if (x < 0) {",
+            "            return 0;",
+            "        }",
+            "        return x + 1;",
+            "    }",
+            "}"};
+
+    // Removes a, keeping the lines of b.
+    private static final String[] REMOVED = {
+            "public class Sample {",
+            "",
+            "",
+            "",
+            "    static int b(int x) {",
+            "        if (x < 0) {",
+            "            return 0;",
+            "        }",
+            "        return x + 1;",
+            "    }",
+            "}"};
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private IncrementalCFG incremental;
+
+    @Before
+    public void setUp() throws Exception {
+        G.reset();
+        directory = folder.newFolder();
+        incremental = new IncrementalCFG(directory.getPath(), null);
+    }
+
+    private IncrementalCFG.Update update(String... lines) throws Exception {
+        Path classFile = Fixtures.compile(directory, "Sample", lines);
+        return incremental.update(Collections.singleton(classFile));
+    }
+
+    @Test
+    public void sameClassIsUpdatedTwiceWithinOneJvm() throws Exception {
+        IncrementalCFG.Update first = update(ORIGINAL);
+        assertEquals(3, first.getAdded().size());
+        assertEquals(-1, incremental.getCFG(B).getCompactGraph().getId("7"));
+
+        IncrementalCFG.Update second = update(CHANGED);
+        assertEquals(Collections.emptyList(), second.getFailed());
+        assertEquals(Collections.singletonList(B), second.getChanged());
+        assertEquals(2, second.getUnchanged());
+        assertTrue(incremental.getCFG(B).getCompactGraph().getId("7") >= 0);
+
+        IncrementalCFG.Update third = update(REMOVED);
+        assertEquals(Collections.emptyList(), third.getFailed());
+        assertEquals(Collections.singletonList(A), third.getRemoved());
+        assertNull(incremental.getCFG(A));
+        assertNotNull(incremental.getCFG(B));
+    }
+
+    @Test
+    public void deletedClassDropsItsMethods() throws Exception {
+        update(ORIGINAL);
+
+        IncrementalCFG.Update update = incremental.update(Collections.emptySet(),
+                Collections.singleton("Sample"));
+        assertEquals(3, update.getRemoved().size());
+        assertTrue(update.getRemoved().containsAll(Arrays.asList(A, B, INIT)));
+        assertTrue(incremental.getMethodSignatures().isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnalysisServerTest {
+    private AnalysisServer server;
+    private Thread serving;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new AnalysisServer(0, 2, new BodyCache(), AnalysisServer.DEFAULT_PIPELINE_DEPTH);
+        serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        serving.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        serving.join();
+    }
+
+    /**
+     * Sends the requests at once and reads the responses until the server closes the connection.
+     *
+     * @param halfClose whether the output is shut down after the requests.
+     * @return first line of every response.
+     */
+    private List<String> exchange(String requests, boolean halfClose) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(10_000);
+            OutputStream output = socket.getOutputStream();
+            output.write(requests.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            if (halfClose) {
+                socket.shutdownOutput();
+            }
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                received.write(buffer, 0, count);
+            }
+            return headers(new String(received.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> headers(String responses) {
+        List<String> headers = new ArrayList<>();
+        int position = 0;
+        while (position < responses.length()) {
+            int end = responses.indexOf('\n', position);
+            String header = responses.substring(position, end);
+            headers.add(header.split(" ")[0]);
+            position = end + 1;
+            if (header.startsWith("ok ")) {
+                position += Integer.parseInt(header.substring(3));
+            }
+        }
+        return headers;
+    }
+
+    @Test
+    public void quitAnswersPipelinedRequestsFirst() throws Exception {
+        List<String> responses = exchange("stats\nstats\nunknown\nstats\nquit\n", false);
+        assertEquals(4, responses.size());
+        assertEquals("error", responses.get(2));
+        assertEquals("ok", responses.get(3));
+    }
+
+    @Test
+    public void halfCloseAnswersPipelinedRequests() throws Exception {
+        assertEquals(3, exchange("stats\nstats\nstats\n", true).size());
+    }
+}
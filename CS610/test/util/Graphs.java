@@ -0,0 +1,21 @@
+package util;
+
+/**
+ * Builds small graphs for tests.
+ */
+final class Graphs {
+    private Graphs() {}
+
+    /**
+     * @param edges edges as {@code "from->to"}; the source of the first edge is the entry node.
+     * @return graph with the edges.
+     */
+    static CompactDirectedGraph<String> of(String... edges) {
+        CompactDirectedGraph.Builder<String> builder = new CompactDirectedGraph.Builder<>();
+        for (String edge : edges) {
+            String[] nodes = edge.split("->");
+            builder.addEdge(nodes[0], nodes[1], null);
+        }
+        return builder.build();
+    }
+}
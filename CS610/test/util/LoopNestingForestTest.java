@@ -0,0 +1,114 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoopNestingForestTest {
+
+    private static Set<String> body(LoopNestingForest<String> forest, int loop) {
+        Set<String> body = new HashSet<>();
+        for (int i = 0; i < forest.getBodySize(loop); i++) {
+            body.add(forest.getGraph().getNode(forest.getBodyNode(loop, i)));
+        }
+        return body;
+    }
+
+    private static Set<String> exits(LoopNestingForest<String> forest, int loop) {
+        CompactDirectedGraph<String> graph = forest.getGraph();
+        Set<String> exits = new HashSet<>();
+        for (int i = 0; i < forest.getExitCount(loop); i++) {
+            exits.add(graph.getNode(forest.getExitSource(loop, i)) + "->"
+                    + graph.getNode(forest.getExitTarget(loop, i)));
+        }
+        return exits;
+    }
+
+    private static Set<String> set(String... elements) {
+        return new HashSet<>(Arrays.asList(elements));
+    }
+
+    @Test
+    public void reducibleNestHasDepthsAndContiguousBodies() {
+        CompactDirectedGraph<String> graph = Graphs.of(
+                "entry->outer", "outer->inner", "inner->body", "body->inner", "body->latch", "latch->outer",
+                "outer->exit");
+        LoopNestingForest<String> forest = graph.getLoopNestingForest();
+        assertEquals(2, forest.getLoopCount());
+
+        int inner = forest.getInnermostLoop(graph.getId("body"));
+        int outer = forest.getParent(inner);
+        assertEquals(graph.getId("inner"), forest.getHeader(inner));
+        assertEquals(graph.getId("outer"), forest.getHeader(outer));
+        assertEquals(-1, forest.getParent(outer));
+        assertTrue("An inner loop has a lower id", inner < outer);
+        assertEquals(2, forest.getDepth(inner));
+        assertEquals(1, forest.getDepth(outer));
+        assertFalse(forest.isIrreducible(inner));
+        assertFalse(forest.isIrreducible(outer));
+
+        assertEquals(0, forest.getLoopDepth(graph.getId("entry")));
+        assertEquals(1, forest.getLoopDepth(graph.getId("latch")));
+        assertEquals(2, forest.getLoopDepth(graph.getId("body")));
+        assertEquals(0, forest.getLoopDepth(graph.getId("exit")));
+        assertTrue(forest.isHeader(graph.getId("inner")));
+        assertFalse(forest.isHeader(graph.getId("body")));
+
+        assertEquals(set("inner", "body"), body(forest, inner));
+        assertEquals(set("outer", "inner", "body", "latch"), body(forest, outer));
+        assertEquals(graph.getId("outer"), forest.getBodyNode(outer, 0));
+        assertEquals(graph.getId("inner"), forest.getBodyNode(inner, 0));
+        assertTrue(forest.contains(outer, graph.getId("body")));
+        assertFalse(forest.contains(inner, graph.getId("latch")));
+
+        // The inner body is a contiguous range within the outer body.
+        int first = -1;
+        for (int i = 0; i < forest.getBodySize(outer); i++) {
+            if (forest.getBodyNode(outer, i) == graph.getId("inner")) {
+                first = i;
+            }
+        }
+        assertNotEquals(-1, first);
+        for (int i = 0; i < forest.getBodySize(inner); i++) {
+            assertEquals(forest.getBodyNode(inner, i), forest.getBodyNode(outer, first + i));
+        }
+
+        assertEquals(set("body->latch"), exits(forest, inner));
+        assertEquals(set("outer->exit"), exits(forest, outer));
+    }
+
+    @Test
+    public void loopEnteredAtTwoNodesIsIrreducible() {
+        CompactDirectedGraph<String> graph = Graphs.of(
+                "entry->a", "entry->b", "a->b", "b->a", "a->exit");
+        LoopNestingForest<String> forest = graph.getLoopNestingForest();
+        assertEquals(1, forest.getLoopCount());
+        assertTrue(forest.isIrreducible(0));
+        assertEquals(set("a", "b"), body(forest, 0));
+        assertTrue(forest.isHeader(forest.getBodyNode(0, 0)));
+        assertEquals(forest.getHeader(0), forest.getBodyNode(0, 0));
+        assertEquals(1, forest.getLoopDepth(graph.getId("a")));
+        assertEquals(1, forest.getLoopDepth(graph.getId("b")));
+        assertEquals(set("a->exit"), exits(forest, 0));
+    }
+
+    @Test
+    public void selfLoopIsALoopOfItsOwn() {
+        CompactDirectedGraph<String> graph = Graphs.of("entry->s", "s->s", "s->exit");
+        LoopNestingForest<String> forest = graph.getLoopNestingForest();
+        assertEquals(1, forest.getLoopCount());
+        assertEquals(graph.getId("s"), forest.getHeader(0));
+        assertEquals(1, forest.getDepth(0));
+        assertFalse(forest.isIrreducible(0));
+        assertEquals(set("s"), body(forest, 0));
+        assertEquals(set("s->exit"), exits(forest, 0));
+        assertEquals(0, forest.getLoopDepth(graph.getId("entry")));
+    }
+}
@@ -0,0 +1,110 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReachabilityIndexTest {
+
+    /**
+     * @return random graph of nodes {@code 0} to {@code size - 1}, with cycles and nodes without edges.
+     */
+    private static CompactDirectedGraph<Integer> randomGraph(Random random, int size, int edges) {
+        CompactDirectedGraph.Builder<Integer> builder = new CompactDirectedGraph.Builder<>();
+        for (int node = 0; node < size; node++) {
+            builder.addNode(node);
+        }
+        for (int i = 0; i < edges; i++) {
+            builder.addEdge(random.nextInt(size), random.nextInt(size), null);
+        }
+        return builder.build();
+    }
+
+    private static BitSet reachable(CompactDirectedGraph<Integer> graph, int from) {
+        BitSet reachable = new BitSet(graph.size());
+        Deque<Integer> queue = new ArrayDeque<>();
+        reachable.set(from);
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+                int successor = graph.getSuccessor(node, i);
+                if (!reachable.get(successor)) {
+                    reachable.set(successor);
+                    queue.add(successor);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Compares every query of the index with a breadth-first search of the graph.
+     */
+    private static void assertMatchesSearch(CompactDirectedGraph<Integer> graph, ReachabilityIndex<Integer> index,
+                                            Random random) {
+        int size = graph.size();
+        BitSet[] reachable = new BitSet[size];
+        for (int node = 0; node < size; node++) {
+            reachable[node] = reachable(graph, node);
+        }
+
+        for (int from = 0; from < size; from++) {
+            assertEquals(reachable[from], index.getReachableNodes(from));
+            for (int to = 0; to < size; to++) {
+                assertEquals(from + "->" + to, reachable[from].get(to), index.reaches(from, to));
+
+                BitSet between = new BitSet(size);
+                if (reachable[from].get(to)) {
+                    for (int node = 0; node < size; node++) {
+                        if (reachable[from].get(node) && reachable[node].get(to)) {
+                            between.set(node);
+                        }
+                    }
+                }
+                assertEquals(from + "->" + to, between, index.getNodesBetween(from, to));
+            }
+        }
+
+        // Node 0 is the source of enough queries to be traversed once, the rest are answered one by one.
+        int[] sources = new int[4 * size];
+        int[] targets = new int[sources.length];
+        boolean[] expected = new boolean[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = i < 2 * size ? 0 : random.nextInt(size);
+            targets[i] = random.nextInt(size);
+            expected[i] = reachable[sources[i]].get(targets[i]);
+        }
+        assertArrayEquals(expected, index.reaches(sources, targets));
+    }
+
+    @Test
+    public void labelsMatchSearchOfRandomGraphs() {
+        Random random = new Random(610);
+        for (int i = 0; i < 50; i++) {
+            CompactDirectedGraph<Integer> graph = randomGraph(random, 1 + random.nextInt(60), random.nextInt(120));
+            ReachabilityIndex<Integer> index = new ReachabilityIndex<>(graph.getStronglyConnectedComponents(), 0);
+            assertFalse(index.hasMatrix());
+            assertMatchesSearch(graph, index, random);
+        }
+    }
+
+    @Test
+    public void matrixMatchesSearchOfRandomGraphs() {
+        Random random = new Random(610);
+        for (int i = 0; i < 50; i++) {
+            CompactDirectedGraph<Integer> graph = randomGraph(random, 1 + random.nextInt(60), random.nextInt(120));
+            ReachabilityIndex<Integer> index = new ReachabilityIndex<>(graph);
+            assertTrue(index.hasMatrix());
+            assertMatchesSearch(graph, index, random);
+        }
+    }
+}
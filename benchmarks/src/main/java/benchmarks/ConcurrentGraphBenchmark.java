@@ -0,0 +1,98 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import util.ConcurrentDirectedGraph;
+import util.DirectedGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Scaling of concurrent edge insertion into a single shared graph with the number of threads. The edges of a
+ * random graph are split into a slice per thread; {@code DirectedGraph} guarded by a single lock is the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentGraphBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"200000"})
+    public int edges;
+
+    private String[] names;
+    private int[] sources;
+    private int[] targets;
+
+    private ExecutorService workers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(610);
+        int nodes = edges / 4;
+        names = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            names[i] = Integer.toString(i);
+        }
+        sources = new int[edges];
+        targets = new int[edges];
+        for (int i = 0; i < edges; i++) {
+            sources[i] = random.nextInt(nodes);
+            targets[i] = random.nextInt(nodes);
+        }
+        workers = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    @Benchmark
+    public DirectedGraph<String> concurrentGraph() throws InterruptedException, ExecutionException {
+        ConcurrentDirectedGraph<String> graph = new ConcurrentDirectedGraph<>();
+        addInSlices(graph, graph);
+        return graph;
+    }
+
+    @Benchmark
+    public DirectedGraph<String> lockedGraph() throws InterruptedException, ExecutionException {
+        DirectedGraph<String> graph = new DirectedGraph<>();
+        addInSlices(graph, new Object());
+        return graph;
+    }
+
+    /**
+     * Adds all the edges, a slice per thread. Unless {@code lock} is the graph itself, every edge is added while
+     * holding {@code lock}.
+     */
+    private void addInSlices(DirectedGraph<String> graph, Object lock) throws InterruptedException, ExecutionException {
+        boolean locked = lock != graph;
+        List<Callable<Void>> slices = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) edges * t / threads);
+            int to = (int) ((long) edges * (t + 1) / threads);
+            slices.add(() -> {
+                for (int i = from; i < to; i++) {
+                    if (locked) {
+                        synchronized (lock) {
+                            graph.addEdge(names[sources[i]], names[targets[i]], null);
+                        }
+                    } else {
+                        graph.addEdge(names[sources[i]], names[targets[i]], null);
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> slice : workers.invokeAll(slices)) {
+            slice.get();
+        }
+    }
+}
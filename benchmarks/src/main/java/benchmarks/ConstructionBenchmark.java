@@ -0,0 +1,70 @@
+package benchmarks;
+
+import cfg.CFG;
+import cfg.ConstructionMode;
+import org.openjdk.jmh.annotations.*;
+import soot.G;
+import soot.Scene;
+import soot.SootMethod;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CFG construction and DOT export over synthetic methods. The Jimple body is retrieved during set up, so
+ * {@link #construct()} measures {@code CFG.construct()} alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+    @Param({"LARGE_SWITCH", "DEEP_NESTING", "STRAIGHT_LINE"})
+    public SyntheticClasses.Shape shape;
+
+    @Param({"64", "512"})
+    public int size;
+
+    private SootMethod method;
+    private CFG cfg;
+    private Path dotFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path classDirectory = SyntheticClasses.compile(shape, size);
+        G.reset();
+        CFG.loadScene(classDirectory.toString());
+        method = Scene.v().getSootClass(shape.getClassName()).getMethodByName("run");
+        cfg = new CFG(method);
+        dotFile = Files.createTempFile("cfg-benchmark", ".dot");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dotFile);
+    }
+
+    @Benchmark
+    public CFG construct() {
+        return new CFG(method);
+    }
+
+    @Benchmark
+    public CFG constructCompact() {
+        return new CFG(method, true);
+    }
+
+    @Benchmark
+    public CFG constructUnitGraph() {
+        return new CFG(method, null, false, ConstructionMode.UNIT_GRAPH);
+    }
+
+    @Benchmark
+    public void writeToDotty() throws IOException {
+        cfg.writeToDotty(dotFile.toString());
+    }
+}
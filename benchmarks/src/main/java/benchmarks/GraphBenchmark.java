@@ -0,0 +1,91 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import util.CompactDirectedGraph;
+import util.DirectedGraph;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph operations over random CFG-like graphs: a chain of line nodes with occasional forward and backward
+ * branches, keyed by strings as in {@code CFG}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    private String[] names;
+    private int[] sources;
+    private int[] targets;
+    private String[] labels;
+
+    private DirectedGraph<String> graph;
+    private CompactDirectedGraph<String> compactGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(610);
+        names = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            names[i] = Integer.toString(i);
+        }
+
+        int edges = nodes - 1 + nodes / 4;
+        sources = new int[edges];
+        targets = new int[edges];
+        labels = new String[edges];
+        for (int i = 0; i < nodes - 1; i++) {
+            sources[i] = i;
+            targets[i] = i + 1;
+        }
+        for (int i = nodes - 1; i < edges; i++) {
+            sources[i] = random.nextInt(nodes);
+            targets[i] = random.nextInt(nodes);
+            labels[i] = random.nextBoolean() ? "<" : ">=";
+        }
+
+        graph = addEdges();
+        compactGraph = CompactDirectedGraph.from(graph);
+    }
+
+    @Benchmark
+    public DirectedGraph<String> addEdges() {
+        DirectedGraph<String> result = new DirectedGraph<>();
+        for (int i = 0; i < sources.length; i++) {
+            result.addEdge(names[sources[i]], names[targets[i]], labels[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public CompactDirectedGraph<String> addEdgesCompact() {
+        CompactDirectedGraph.Builder<String> builder = new CompactDirectedGraph.Builder<>();
+        for (int i = 0; i < sources.length; i++) {
+            builder.addEdge(names[sources[i]], names[targets[i]], labels[i]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public DirectedGraph<String> getReversedGraph() {
+        return graph.getReversedGraph(graph);
+    }
+
+    @Benchmark
+    public List<String> topologicalSort() {
+        return graph.topologicalSort();
+    }
+
+    @Benchmark
+    public int[] topologicalSortCompact() {
+        return compactGraph.getDepthFirstOrder().getReversePostOrder();
+    }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import cfg.CFG;
+import org.openjdk.jmh.annotations.*;
+import soot.G;
+import soot.Scene;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading classes into a fresh Soot {@code Scene}, which every CFG construction used to pay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SootLoadingBenchmark {
+    private Path classDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        classDirectory = SyntheticClasses.compile(SyntheticClasses.Shape.STRAIGHT_LINE, 16);
+    }
+
+    @Benchmark
+    public int loadScene() {
+        G.reset();
+        CFG.loadScene(classDirectory.toString());
+        return Scene.v().getApplicationClasses().size();
+    }
+}
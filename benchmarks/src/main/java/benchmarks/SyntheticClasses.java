@@ -0,0 +1,105 @@
+package benchmarks;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates and compiles classes with a single synthetic method {@code run(int)} of a given shape. Every statement
+ * is on its own line, so the size of the method is also the number of nodes of its CFG.
+ */
+public final class SyntheticClasses {
+    public enum Shape {
+        /**
+         * Switch with a case per line.
+         */
+        LARGE_SWITCH("LargeSwitch"),
+        /**
+         * Nested if statements.
+         */
+        DEEP_NESTING("DeepNesting"),
+        /**
+         * Assignments without any branch.
+         */
+        STRAIGHT_LINE("StraightLine");
+
+        private final String className;
+
+        Shape(String className) {
+            this.className = className;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+    }
+
+    private SyntheticClasses() {}
+
+    /**
+     * Generates and compiles a class, with debug information, into a new temporary directory.
+     *
+     * @param shape shape of the method.
+     * @param size  number of cases, nesting levels or statements.
+     * @return directory with the compiled class.
+     */
+    public static Path compile(Shape shape, int size) throws IOException {
+        Path directory = Files.createTempDirectory("cfg-benchmark");
+        Path source = directory.resolve(shape.getClassName() + ".java");
+        Files.write(source, source(shape, size).getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Benchmarks have to be run on a JDK");
+        }
+        int result = compiler.run(null, null, null,
+                "-g", "-source", "1.8", "-target", "1.8", "-nowarn", "-d", directory.toString(), source.toString());
+        if (result != 0) {
+            throw new IllegalStateException("Compilation of " + source + " failed");
+        }
+        return directory;
+    }
+
+    static String source(Shape shape, int size) {
+        StringBuilder source = new StringBuilder();
+        source.append("public class ").append(shape.getClassName()).append(" {\n");
+        source.append("    public static int run(int x) {\n");
+        source.append("        int y = 0;\n");
+        switch (shape) {
+            case LARGE_SWITCH:
+                source.append("        switch (x) {\n");
+                for (int i = 0; i < size; i++) {
+                    source.append("            case ").append(i).append(":\n");
+                    source.append("                y = x * ").append(i).append(";\n");
+                    source.append("                break;\n");
+                }
+                source.append("            default:\n");
+                source.append("                y = -1;\n");
+                source.append("        }\n");
+                break;
+            case DEEP_NESTING:
+                for (int i = 0; i < size; i++) {
+                    source.append("        if (x > ").append(i).append(") {\n");
+                    source.append("            y = y + ").append(i).append(";\n");
+                }
+                for (int i = 0; i < size; i++) {
+                    source.append("        }\n");
+                }
+                break;
+            case STRAIGHT_LINE:
+                for (int i = 0; i < size; i++) {
+                    source.append("        y = y * 31 + x + ").append(i).append(";\n");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        source.append("        return y;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+}